@@ -17,6 +17,7 @@
 
 package org.apache.log4j;
 
+import org.apache.log4j.spi.EventFieldConsumer;
 import org.apache.log4j.spi.Filter;
 import org.apache.log4j.spi.ErrorHandler;
 import org.apache.log4j.spi.OptionHandler;
@@ -34,7 +35,8 @@ import org.apache.log4j.helpers.LogLog;
  * @since 0.8.1
  * @author Ceki G&uuml;lc&uuml; 
  * */
-public abstract class AppenderSkeleton implements Appender, OptionHandler {
+public abstract class AppenderSkeleton implements Appender, OptionHandler,
+                                                   EventFieldConsumer {
 
   /** The layout variable does not need to be set if the appender
       implementation has its own layout. */
@@ -228,13 +230,26 @@ public abstract class AppenderSkeleton implements Appender, OptionHandler {
   public
   synchronized 
   void doAppend(LoggingEvent event) {
+    if(isAppendable(event)) {
+      this.append(event);
+    }
+  }
+
+  /**
+     Check that this appender is open, that the event is as severe as
+     the threshold and that the filter chain does not deny it.
+
+     @since 1.3.6 */
+  protected
+  final
+  boolean isAppendable(LoggingEvent event) {
     if(closed) {
       LogLog.error("Attempted to append to closed appender named ["+name+"].");
-      return;
+      return false;
     }
     
     if(!isAsSevereAsThreshold(event.getLevel())) {
-      return;
+      return false;
     }
 
     Filter f = this.headFilter;
@@ -242,13 +257,12 @@ public abstract class AppenderSkeleton implements Appender, OptionHandler {
     FILTER_LOOP:
     while(f != null) {
       switch(f.decide(event)) {
-      case Filter.DENY: return;
+      case Filter.DENY: return false;
       case Filter.ACCEPT: break FILTER_LOOP;
       case Filter.NEUTRAL: f = f.getNext();
       }
     }
-    
-    this.append(event);    
+    return true;
   }
 
   /** 
@@ -301,4 +315,15 @@ public abstract class AppenderSkeleton implements Appender, OptionHandler {
   void setThreshold(Priority threshold) {
     this.threshold = threshold;
   }  
+
+  /**
+     Returns the fields of the events read by this appender, its layout
+     and its filters, see {@link EventFieldConsumer}. The base class
+     returns {@link EventFieldConsumer#ALL}.
+
+     @since 1.3.6 */
+  public
+  int getRequiredFields() {
+    return ALL;
+  }
 }
@@ -19,17 +19,29 @@
 //               Thomas Tuft Muller <ttm@online.no>
 package org.apache.log4j;
 
+import java.io.File;
+import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.LockSupport;
 
 import org.apache.log4j.helpers.AppenderAttachableImpl;
+import org.apache.log4j.helpers.EventSpool;
+import org.apache.log4j.helpers.LogLog;
+import org.apache.log4j.helpers.OptionConverter;
+import org.apache.log4j.helpers.RingBuffer;
 import org.apache.log4j.spi.AppenderAttachable;
+import org.apache.log4j.spi.ErrorCode;
+import org.apache.log4j.spi.EventFieldConsumer;
 import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.RetainingAppender;
 
 
 /**
@@ -45,6 +57,47 @@ import org.apache.log4j.spi.LoggingEvent;
  * The AsyncAppender uses a separate thread to serve the events in its buffer.
  * </p>
  * <p/>
+ * <p/>
+ * By default the buffer is a list guarded by its monitor. When the
+ * <b>RingBuffer</b> option is set, a lock-free {@link RingBuffer} is used
+ * instead and the <b>WaitStrategy</b> option selects how the dispatcher
+ * waits for events: "block" on a monitor, "park" for short periods,
+ * "yield" or "spin".
+ * </p>
+ * <p/>
+ * <p/>
+ * When the <b>SpoolFile</b> option is set, the events which do not fit in
+ * the buffer are written to an {@link EventSpool} mapped on that file, of
+ * at most <b>MaxSpoolSize</b> bytes, rather than blocking the calling
+ * thread or being discarded. The dispatcher replays the spooled events in
+ * order once the buffer is drained; until then later events are spooled
+ * as well. Only once the spool is full does the <b>Blocking</b> option
+ * apply.
+ * </p>
+ * <p/>
+ * <p/>
+ * When the <b>Shedding</b> option is set, an event which would be discarded
+ * evicts the oldest of the least severe events of the list buffer, if less
+ * severe than itself, so that under overload the events of the highest
+ * levels are kept. Discarded events are counted by level and by logger.
+ * </p>
+ * <p/>
+ * <p/>
+ * When the <b>Partitions</b> option is greater than one, the attached
+ * appenders are spread round-robin over as many partitions each served by
+ * its own dispatcher thread, so that slow appenders are driven
+ * concurrently while each appender is only ever driven by the dispatcher
+ * of its partition. Events are queued to every partition with an appender
+ * and dispatched in order. The other options apply to each partition.
+ * </p>
+ * <p/>
+ * <p/>
+ * The fields of an event which depend on the calling thread or are
+ * costly to compute are only copied before the event is queued if one of
+ * the attached appenders reads them, as told by {@link
+ * EventFieldConsumer}.
+ * </p>
+ * <p/>
  * <b>Important note:</b> The <code>AsyncAppender</code> can only be script
  * configured using the {@link org.apache.log4j.xml.DOMConfigurator}.
  * </p>
@@ -53,13 +106,50 @@ import org.apache.log4j.spi.LoggingEvent;
  * @author Curt Arnold
  * @since 0.9.1
  */
-public class AsyncAppender extends AppenderSkeleton
-  implements AppenderAttachable {
+public class AsyncAppender extends UnsynchronizedAppenderSkeleton
+  implements AppenderAttachable, RetainingAppender {
   /**
    * The default buffer size is set to 128 events.
    */
   public static final int DEFAULT_BUFFER_SIZE = 128;
 
+  /**
+   * Wait strategy where the dispatcher waits on a monitor, woken up by
+   * the producers.
+   * @since 1.3.6
+   */
+  public static final String WAIT_BLOCK = "block";
+
+  /**
+   * Wait strategy where the dispatcher parks for short periods.
+   * @since 1.3.6
+   */
+  public static final String WAIT_PARK = "park";
+
+  /**
+   * Wait strategy where the dispatcher yields the processor.
+   * @since 1.3.6
+   */
+  public static final String WAIT_YIELD = "yield";
+
+  /**
+   * Wait strategy where the dispatcher busy spins.
+   * @since 1.3.6
+   */
+  public static final String WAIT_SPIN = "spin";
+
+  /**
+   * Duration of the parks of the dispatcher with the "park" wait strategy
+   * and of the producers waiting for room in the ring buffer.
+   */
+  private static final long PARK_NANOS = 50000L;
+
+  /**
+   * The default maximum spool size is 10MB.
+   * @since 1.3.6
+   */
+  public static final long DEFAULT_MAX_SPOOL_SIZE = 10 * 1024 * 1024;
+
   /**
    * Event buffer, also used as monitor to protect itself and
    * discardMap from simulatenous modifications.
@@ -84,6 +174,12 @@ public class AsyncAppender extends AppenderSkeleton
    */
   private final AppenderAttachableImpl appenders;
 
+  /**
+   * Copy of the nested appenders read by append, replaced when
+   * appenders are added or removed.
+   */
+  private volatile Appender[] consumers = new Appender[0];
+
   /**
    * Dispatcher.
    */
@@ -99,6 +195,122 @@ public class AsyncAppender extends AppenderSkeleton
    */
   private boolean blocking = true;
 
+  /**
+   * Should a ring buffer be used once options are activated.
+   */
+  private boolean ringBuffer = false;
+
+  /**
+   * Wait strategy of the dispatcher in ring buffer mode.
+   */
+  private volatile String waitStrategy = WAIT_BLOCK;
+
+  /**
+   * Ring buffer, null until activated.
+   */
+  private volatile RingBuffer ring;
+
+  /**
+   * Set while the dispatcher waits on the buffer monitor in ring buffer
+   * mode, so that producers know they must notify it.
+   */
+  private volatile boolean dispatcherWaiting;
+
+  /**
+   * Set when events were discarded in ring buffer mode and the discard
+   * map needs to be emptied by the dispatcher.
+   */
+  private volatile boolean discardPending;
+
+  /**
+   * Path of the spool file, null if events are not spooled.
+   */
+  private String spoolFile;
+
+  /**
+   * Maximum size of the spool in bytes.
+   */
+  private long maxSpoolSize = DEFAULT_MAX_SPOOL_SIZE;
+
+  /**
+   * Spool of the events which did not fit in the buffer, null until
+   * activated. Guarded by buffer.
+   */
+  private EventSpool spool;
+
+  /**
+   * Set while the spool holds events, so that later events are spooled
+   * too and the dispatcher replays them.
+   */
+  private volatile boolean spilling;
+
+  /**
+   * Number of events written to the spool. Updated while synchronized
+   * on buffer.
+   */
+  private volatile long spilledCount;
+
+  /**
+   * Number of events replayed from the spool. Updated while synchronized
+   * on buffer.
+   */
+  private volatile long replayedCount;
+
+  /**
+   * Should queued events of lower levels be evicted to make room.
+   */
+  private boolean shedding = false;
+
+  /**
+   * Number of events of the list buffer, as int[1], keyed by level from
+   * the most severe, counted while shedding. Guarded by buffer.
+   */
+  private final TreeMap queuedLevels =
+    new TreeMap(DiscardSummary.SEVERITY_ORDER);
+
+  /**
+   * Number of discarded events. Updated while synchronized on buffer.
+   */
+  private volatile long discardedCount;
+
+  /**
+   * Number of discarded events, as long[1], keyed by level. Guarded by
+   * buffer.
+   */
+  private final Map levelDiscards = new HashMap();
+
+  /**
+   * Number of discarded events, as long[1], keyed by logger name.
+   * Guarded by buffer.
+   */
+  private final Map loggerDiscards = new HashMap();
+
+  /**
+   * Number of partitions.
+   */
+  private int partitionCount = 1;
+
+  /**
+   * Partitions, null until activated or if not partitioned.
+   */
+  private volatile AsyncAppender[] partitions;
+
+  /**
+   * Partitions with at least one appender, null if not partitioned.
+   */
+  private volatile AsyncAppender[] routes;
+
+  /**
+   * Partition of the next appender attached. Guarded by appenders.
+   */
+  private int nextPartition;
+
+  /**
+   * Are the attached appenders closed with this appender, false for
+   * partitions.
+   */
+  private boolean ownsAppenders = true;
+
   /**
    * Create new instance.
    */
@@ -129,7 +341,16 @@ public class AsyncAppender extends AppenderSkeleton
    */
   public void addAppender(final Appender newAppender) {
     synchronized (appenders) {
+      boolean attached = appenders.isAttached(newAppender);
       appenders.addAppender(newAppender);
+      appendersChanged();
+
+      AsyncAppender[] p = partitions;
+
+      if ((p != null) && !attached) {
+        assignAppender(p, newAppender);
+        updateRoutes(p);
+      }
     }
   }
 
@@ -137,6 +358,16 @@ public class AsyncAppender extends AppenderSkeleton
    * {@inheritDoc}
    */
   public void append(final LoggingEvent event) {
+    AsyncAppender[] p = routes;
+
+    if (p != null) {
+      for (int i = 0; i < p.length; i++) {
+        p[i].append(event);
+      }
+
+      return;
+    }
+
     //
     //   if dispatcher thread has died then
     //      append subsequent events synchronously
@@ -149,25 +380,69 @@ public class AsyncAppender extends AppenderSkeleton
       return;
     }
 
-    // Set the NDC and thread name for the calling thread as these
-    // LoggingEvent fields were not set at event creation time.
-    event.getNDC();
-    event.getThreadName();
+    // Set the fields read by the attached appenders which depend on
+    // the calling thread as they were not set at event creation time.
+    int fields = AppenderAttachableImpl.getRequiredFields(consumers);
+
+    if ((fields & EventFieldConsumer.NDC) != 0) {
+      event.getNDC();
+    }
+
+    if ((fields & EventFieldConsumer.THREAD_NAME) != 0) {
+      event.getThreadName();
+    }
+
     // Get a copy of this thread's MDC.
-    event.getMDCCopy();
-    if (locationInfo) {
+    if ((fields & EventFieldConsumer.MDC) != 0) {
+      event.getMDCCopy();
+    }
+
+    if (locationInfo && ((fields & EventFieldConsumer.LOCATION) != 0)) {
       event.getLocationInformation();
     }
-    event.getRenderedMessage();
-    event.getThrowableStrRep();
+
+    // Parameterized messages are formatted by the dispatcher thread,
+    // unless the message or an argument may change meanwhile.
+    if (((fields & EventFieldConsumer.MESSAGE) != 0)
+        && !isDeferrable(event)) {
+      event.getRenderedMessage();
+    }
+
+    if ((fields & EventFieldConsumer.THROWABLE) != 0) {
+      event.getThrowableStrRep();
+    }
+
+    RingBuffer r = ring;
+    if (r != null) {
+      appendToRing(r, event);
+      return;
+    }
+
+    boolean activated = false;
 
     synchronized (buffer) {
       while (true) {
+        //
+        //   the ring buffer may have been activated while waiting
+        //
+        if (ring != null) {
+          activated = true;
+          break;
+        }
+
         int previousSize = buffer.size();
 
-        if (previousSize < bufferSize) {
+        //
+        //   spooled events must be dispatched first,
+        //      later events are spooled behind them.
+        //
+        if ((previousSize < bufferSize) && !spilling) {
           buffer.add(event);
 
+          if (shedding) {
+            countQueued(event.getLevel(), 1);
+          }
+
           //
           //   if buffer had been empty
           //       signal all threads waiting on buffer
@@ -180,8 +455,13 @@ public class AsyncAppender extends AppenderSkeleton
           break;
         }
 
+        if (spill(event)) {
+          break;
+        }
+
         //
         //   Following code is only reachable if buffer is full
+        //      and the event could not be spooled
         //
         //
         //   if blocking and thread is not already interrupted
@@ -205,23 +485,370 @@ public class AsyncAppender extends AppenderSkeleton
 
         //
         //   if blocking is false or thread has been interrupted
-        //   add event to discard map.
+        //   evict a less severe event or add event to discard map.
         //
         if (discard) {
-          String loggerName = event.getLoggerName();
-          DiscardSummary summary = (DiscardSummary) discardMap.get(loggerName);
-
-          if (summary == null) {
-            summary = new DiscardSummary(event);
-            discardMap.put(loggerName, summary);
-          } else {
-            summary.add(event);
+          if (!shed(event)) {
+            addDiscard(event);
           }
 
           break;
         }
       }
     }
+
+    if (activated) {
+      appendToRing(ring, event);
+    }
+  }
+
+  /**
+   * Tell whether the message of event may be formatted by the dispatcher
+   * thread, that is whether it is parameterized and its pattern and
+   * arguments are immutable.
+   * @param event event.
+   * @return true if the formatting may be deferred.
+   */
+  private static boolean isDeferrable(final LoggingEvent event) {
+    Object[] parameters = event.getParameters();
+
+    if ((parameters == null)
+            || !AsyncLoggerDispatcher.isImmutable(event.getMessagePattern())) {
+      return false;
+    }
+
+    for (int i = 0; i < parameters.length; i++) {
+      if (!AsyncLoggerDispatcher.isImmutable(parameters[i])) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Attach an appender to the next partition, round-robin. Must be
+   * called while holding the appenders lock.
+   * @param p partitions.
+   * @param appender appender.
+   */
+  private void assignAppender(final AsyncAppender[] p, final Appender appender) {
+    p[nextPartition].addAppender(appender);
+    nextPartition = (nextPartition + 1) % p.length;
+  }
+
+  /**
+   * Route events to the partitions with at least one appender. Must be
+   * called while holding the appenders lock.
+   * @param p partitions.
+   */
+  private void updateRoutes(final AsyncAppender[] p) {
+    List r = new ArrayList(p.length);
+
+    for (int i = 0; i < p.length; i++) {
+      if (p[i].getAllAppenders() != null) {
+        r.add(p[i]);
+      }
+    }
+
+    routes = (AsyncAppender[]) r.toArray(new AsyncAppender[r.size()]);
+  }
+
+  /**
+   * Add event to the ring buffer, waiting for room if blocking.
+   * @param r ring buffer.
+   * @param event event.
+   */
+  private void appendToRing(final RingBuffer r, final LoggingEvent event) {
+    while (spilling || !r.offer(event)) {
+      if (spill(event)) {
+        break;
+      }
+
+      //
+      //   same conditions as for the list buffer, except that
+      //      producers park until the dispatcher makes room.
+      //
+      boolean discard = true;
+      if (blocking
+              && !Thread.interrupted()
+              && Thread.currentThread() != dispatcher
+              && !r.isClosed()) {
+        LockSupport.parkNanos(PARK_NANOS);
+        //
+        //   interrupt status is kept for the calling code.
+        //
+        discard = Thread.currentThread().isInterrupted();
+      }
+
+      if (discard) {
+        synchronized (buffer) {
+          addDiscard(event);
+          discardPending = true;
+        }
+        break;
+      }
+    }
+
+    if (dispatcherWaiting) {
+      synchronized (buffer) {
+        buffer.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Write event to the spool.
+   * @param event event.
+   * @return false if there is no spool or the event does not fit in it.
+   */
+  private boolean spill(final LoggingEvent event) {
+    synchronized (buffer) {
+      if ((spool == null) || !spool.write(event, locationInfo)) {
+        return false;
+      }
+
+      spilling = true;
+      spilledCount++;
+
+      //
+      //   the dispatcher may wait for the first spooled event.
+      //
+      if (spool.size() == 1) {
+        buffer.notifyAll();
+      }
+
+      return true;
+    }
+  }
+
+  /**
+   * Read spooled events. Must be called while synchronized on buffer.
+   * @param events array receiving the events.
+   * @param offset index of the first event in the array.
+   * @param length maximum number of events to read.
+   * @return number of events read.
+   */
+  private int replay(
+    final LoggingEvent[] events, final int offset, final int length) {
+    int count = 0;
+
+    if (spool != null) {
+      count = spool.read(events, offset, length);
+      replayedCount += count;
+    }
+
+    if ((spool == null) || spool.isEmpty()) {
+      spilling = false;
+
+      //
+      //   allow appends waiting for the spool to continue
+      //
+      buffer.notifyAll();
+    }
+
+    return count;
+  }
+
+  /**
+   * Replace the oldest of the least severe events of the list buffer
+   * by event if less severe, when shedding. Must be called while
+   * synchronized on buffer.
+   * @param event event to add.
+   * @return true if an event was evicted.
+   */
+  private boolean shed(final LoggingEvent event) {
+    if (!shedding || queuedLevels.isEmpty()) {
+      return false;
+    }
+
+    //
+    //   the buffer is only searched if it holds a less severe event
+    //
+    Level lowest = (Level) queuedLevels.lastKey();
+
+    if (lowest.toInt() >= event.getLevel().toInt()) {
+      return false;
+    }
+
+    for (int i = 0; i < buffer.size(); i++) {
+      LoggingEvent victim = (LoggingEvent) buffer.get(i);
+
+      if (victim.getLevel().toInt() == lowest.toInt()) {
+        buffer.remove(i);
+        countQueued(lowest, -1);
+        addDiscard(victim);
+        buffer.add(event);
+        countQueued(event.getLevel(), 1);
+
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Update the number of events of a level in the list buffer. Must be
+   * called while synchronized on buffer.
+   * @param level level.
+   * @param delta number of events added, negative if removed.
+   */
+  private void countQueued(final Level level, final int delta) {
+    int[] count = (int[]) queuedLevels.get(level);
+
+    if (count == null) {
+      queuedLevels.put(level, new int[] { delta });
+    } else if ((count[0] += delta) <= 0) {
+      queuedLevels.remove(level);
+    }
+  }
+
+  /**
+   * Add event to the discard map and count it. Must be called while
+   * synchronized on buffer.
+   * @param event discarded event.
+   */
+  private void addDiscard(final LoggingEvent event) {
+    String loggerName = event.getLoggerName();
+    discardedCount++;
+    increment(levelDiscards, event.getLevel());
+    increment(loggerDiscards, loggerName);
+
+    DiscardSummary summary = (DiscardSummary) discardMap.get(loggerName);
+
+    if (summary == null) {
+      summary = new DiscardSummary(event);
+      discardMap.put(loggerName, summary);
+    } else {
+      summary.add(event);
+    }
+  }
+
+  /**
+   * Increment a counter of a discard count map.
+   * @param counts map of long[1] counters.
+   * @param key key of the counter.
+   */
+  private static void increment(final Map counts, final Object key) {
+    long[] count = (long[]) counts.get(key);
+
+    if (count == null) {
+      count = new long[1];
+      counts.put(key, count);
+    }
+
+    count[0]++;
+  }
+
+  /**
+   * Switches to the ring buffer if the <b>RingBuffer</b> option is set.
+   * Events already in the list buffer are moved to the ring buffer. The
+   * ring buffer can not be deactivated.
+   * <p/>
+   * Creates the spool if the <b>SpoolFile</b> option is set. The spool
+   * can not be removed or moved once created.
+   * <p/>
+   * Creates the partitions if the <b>Partitions</b> option is greater
+   * than one, the options then apply to each partition and the
+   * partitions can not be changed.
+   * @since 1.3.6
+   */
+  public void activateOptions() {
+    if ((partitionCount > 1) || (partitions != null)) {
+      activatePartitions();
+
+      return;
+    }
+
+    synchronized (buffer) {
+      if ((spoolFile != null) && (spool == null) && !closed) {
+        try {
+          spool = new EventSpool(new File(spoolFile),
+                  (int) Math.min(maxSpoolSize, Integer.MAX_VALUE));
+        } catch (IOException e) {
+          errorHandler.error("Could not create spool file [" + spoolFile
+                  + "] for [" + name + "].", e, ErrorCode.FILE_OPEN_FAILURE);
+        }
+      } else if ((spool != null)
+              && !spool.getFile().getPath().equals(spoolFile)) {
+        LogLog.warn("The spool of [" + name + "] can not be changed.");
+      }
+
+      if (ringBuffer && ring == null) {
+        RingBuffer r = new RingBuffer(Math.max(bufferSize, buffer.size()));
+        for (int i = 0; i < buffer.size(); i++) {
+          r.offer((LoggingEvent) buffer.get(i));
+        }
+        buffer.clear();
+        queuedLevels.clear();
+        discardPending = !discardMap.isEmpty();
+        if (closed) {
+          r.close();
+        }
+        ring = r;
+        buffer.notifyAll();
+      } else if (!ringBuffer && ring != null) {
+        LogLog.warn("The ring buffer of [" + name + "] can not be deactivated.");
+      }
+
+      if (shedding && (ring != null)) {
+        LogLog.warn("Shedding is not supported by the ring buffer of ["
+                + name + "], events which do not fit are discarded.");
+      }
+    }
+  }
+
+  /**
+   * Create the partitions and spread the appenders of this appender
+   * over them, each appender attached to a single partition.
+   */
+  private void activatePartitions() {
+    synchronized (appenders) {
+      if (partitions != null) {
+        if (partitions.length != partitionCount) {
+          LogLog.warn("The partitions of [" + name + "] can not be changed.");
+        }
+
+        return;
+      }
+
+      if (closed) {
+        return;
+      }
+
+      AsyncAppender[] p = new AsyncAppender[partitionCount];
+
+      for (int i = 0; i < p.length; i++) {
+        AsyncAppender partition = new AsyncAppender();
+        partition.ownsAppenders = false;
+        partition.setName(name + "-" + i);
+        partition.setErrorHandler(errorHandler);
+        partition.setBufferSize(bufferSize);
+        partition.setBlocking(blocking);
+        partition.setLocationInfo(locationInfo);
+        partition.setRingBuffer(ringBuffer);
+        partition.setWaitStrategy(waitStrategy);
+        partition.setShedding(shedding);
+
+        if (spoolFile != null) {
+          partition.setSpoolFile(spoolFile + "." + i);
+          partition.setMaximumSpoolSize(maxSpoolSize);
+        }
+
+        partition.activateOptions();
+        p[i] = partition;
+      }
+
+      Enumeration iter = appenders.getAllAppenders();
+
+      while ((iter != null) && iter.hasMoreElements()) {
+        assignAppender(p, (Appender) iter.nextElement());
+      }
+
+      updateRoutes(p);
+      partitions = p;
+    }
   }
 
   /**
@@ -235,6 +862,9 @@ public class AsyncAppender extends AppenderSkeleton
      */
     synchronized (buffer) {
       closed = true;
+      if (ring != null) {
+        ring.close();
+      }
       buffer.notifyAll();
     }
 
@@ -247,6 +877,18 @@ public class AsyncAppender extends AppenderSkeleton
         + "dispatcher to finish.", e);
     }
 
+    AsyncAppender[] p = partitions;
+
+    if (p != null) {
+      for (int i = 0; i < p.length; i++) {
+        p[i].close();
+      }
+    }
+
+    if (!ownsAppenders) {
+      return;
+    }
+
     //
     //    close all attached appenders.
     //
@@ -315,12 +957,38 @@ public class AsyncAppender extends AppenderSkeleton
     return false;
   }
 
+  /**
+   * Events are queued for the dispatcher thread.
+   * @return true.
+   * @since 1.3.6
+   */
+  public boolean retainsEvents() {
+    return true;
+  }
+
   /**
    * Removes and closes all attached appenders.
    */
   public void removeAllAppenders() {
     synchronized (appenders) {
+      AsyncAppender[] p = partitions;
+
+      if (p != null) {
+        Enumeration iter = appenders.getAllAppenders();
+
+        while ((iter != null) && iter.hasMoreElements()) {
+          Appender appender = (Appender) iter.nextElement();
+
+          for (int i = 0; i < p.length; i++) {
+            p[i].removeAppender(appender);
+          }
+        }
+
+        updateRoutes(p);
+      }
+
       appenders.removeAllAppenders();
+      appendersChanged();
     }
   }
 
@@ -331,6 +999,17 @@ public class AsyncAppender extends AppenderSkeleton
   public void removeAppender(final Appender appender) {
     synchronized (appenders) {
       appenders.removeAppender(appender);
+      appendersChanged();
+
+      AsyncAppender[] p = partitions;
+
+      if ((p != null) && (appender != null)) {
+        for (int i = 0; i < p.length; i++) {
+          p[i].removeAppender(appender);
+        }
+
+        updateRoutes(p);
+      }
     }
   }
 
@@ -340,8 +1019,23 @@ public class AsyncAppender extends AppenderSkeleton
    */
   public void removeAppender(final String name) {
     synchronized (appenders) {
-      appenders.removeAppender(name);
+      removeAppender(appenders.getAppender(name));
+    }
+  }
+
+  /**
+   * Refreshes the copy of the nested appenders, called with the
+   * appenders lock held.
+   */
+  private void appendersChanged() {
+    List list = new ArrayList();
+    Enumeration iter = appenders.getAllAppenders();
+
+    while ((iter != null) && iter.hasMoreElements()) {
+      list.add(iter.nextElement());
     }
+
+    consumers = (Appender[]) list.toArray(new Appender[list.size()]);
   }
 
   /**
@@ -409,6 +1103,281 @@ public class AsyncAppender extends AppenderSkeleton
     }
   }
 
+  /**
+   * Sets whether a lock-free ring buffer should be used instead of the
+   * list buffer. The ring buffer is created when options are activated,
+   * with a capacity of <b>BufferSize</b> rounded up to a power of two.
+   *
+   * @since 1.3.6
+   * @param value true to use a ring buffer.
+   */
+  public void setRingBuffer(final boolean value) {
+    ringBuffer = value;
+  }
+
+  /**
+   * Gets whether a ring buffer is used once options are activated.
+   *
+   * @since 1.3.6
+   * @return true if a ring buffer is used.
+   */
+  public boolean getRingBuffer() {
+    return ringBuffer;
+  }
+
+  /**
+   * Sets how the dispatcher waits for events in ring buffer mode, one of
+   * "block", "park", "yield" or "spin". "block" waits on a monitor the
+   * producers notify, "park" sleeps for short periods, "yield" and "spin"
+   * keep a processor busy in exchange for the lowest latency.
+   *
+   * @since 1.3.6
+   * @param value wait strategy.
+   */
+  public void setWaitStrategy(final String value) {
+    String v = (value == null) ? "" : value.trim();
+    String strategy = null;
+    if (WAIT_BLOCK.equalsIgnoreCase(v)) {
+      strategy = WAIT_BLOCK;
+    } else if (WAIT_PARK.equalsIgnoreCase(v)) {
+      strategy = WAIT_PARK;
+    } else if (WAIT_YIELD.equalsIgnoreCase(v)) {
+      strategy = WAIT_YIELD;
+    } else if (WAIT_SPIN.equalsIgnoreCase(v)) {
+      strategy = WAIT_SPIN;
+    }
+
+    if (strategy != null) {
+      //
+      //   wake up the dispatcher if blocked so that it
+      //      waits according to the new strategy.
+      //
+      synchronized (buffer) {
+        waitStrategy = strategy;
+        buffer.notifyAll();
+      }
+    } else {
+      LogLog.warn("[" + value + "] should be one of " + WAIT_BLOCK + ", "
+              + WAIT_PARK + ", " + WAIT_YIELD + " or " + WAIT_SPIN + ".");
+    }
+  }
+
+  /**
+   * Gets how the dispatcher waits for events in ring buffer mode.
+   *
+   * @since 1.3.6
+   * @return wait strategy.
+   */
+  public String getWaitStrategy() {
+    return waitStrategy;
+  }
+
+  /**
+   * Sets the file of the spool receiving the events which do not fit in
+   * the buffer. The spool is created when options are activated; its
+   * content is replaced and the file is deleted when the appender is
+   * closed.
+   *
+   * @since 1.3.6
+   * @param file path of the spool file, null to discard or block.
+   */
+  public void setSpoolFile(final String file) {
+    spoolFile = (file == null) ? null : file.trim();
+  }
+
+  /**
+   * Gets the file of the spool.
+   *
+   * @since 1.3.6
+   * @return path of the spool file, may be null.
+   */
+  public String getSpoolFile() {
+    return spoolFile;
+  }
+
+  /**
+   * Sets the maximum size in bytes of the spool. Equivalent to
+   * {@link #setMaxSpoolSize} for the JavaBeans introspector.
+   *
+   * @since 1.3.6
+   * @param size maximum size in bytes.
+   */
+  public void setMaximumSpoolSize(final long size) {
+    maxSpoolSize = size;
+  }
+
+  /**
+   * Sets the maximum size of the spool, expressed in bytes, kilobytes,
+   * megabytes or gigabytes by suffixing the number with "KB", "MB" or
+   * "GB" as in RollingFileAppender. The spool is mapped with this size
+   * up to 2GB.
+   *
+   * @since 1.3.6
+   * @param value maximum size.
+   */
+  public void setMaxSpoolSize(final String value) {
+    maxSpoolSize = OptionConverter.toFileSize(value, maxSpoolSize);
+  }
+
+  /**
+   * Gets the maximum size in bytes of the spool.
+   *
+   * @since 1.3.6
+   * @return maximum size in bytes.
+   */
+  public long getMaximumSpoolSize() {
+    return maxSpoolSize;
+  }
+
+  /**
+   * Gets the number of events written to the spool.
+   *
+   * @since 1.3.6
+   * @return number of spooled events.
+   */
+  public long getSpilledCount() {
+    long count = spilledCount;
+    AsyncAppender[] p = partitions;
+
+    for (int i = 0; (p != null) && (i < p.length); i++) {
+      count += p[i].getSpilledCount();
+    }
+
+    return count;
+  }
+
+  /**
+   * Gets the number of events replayed from the spool.
+   *
+   * @since 1.3.6
+   * @return number of replayed events.
+   */
+  public long getReplayedCount() {
+    long count = replayedCount;
+    AsyncAppender[] p = partitions;
+
+    for (int i = 0; (p != null) && (i < p.length); i++) {
+      count += p[i].getReplayedCount();
+    }
+
+    return count;
+  }
+
+  /**
+   * Sets whether an event which would be discarded should instead evict
+   * the oldest of the least severe events of the buffer, if less severe
+   * than itself. Only the list buffer is searched, events which do not
+   * fit in the ring buffer are discarded as before and a warning is
+   * logged on activation if both options are set.
+   *
+   * @since 1.3.6
+   * @param value true to evict less severe events.
+   */
+  public void setShedding(final boolean value) {
+    synchronized (buffer) {
+      if (value && !shedding) {
+        for (int i = 0; i < buffer.size(); i++) {
+          countQueued(((LoggingEvent) buffer.get(i)).getLevel(), 1);
+        }
+      } else if (!value) {
+        queuedLevels.clear();
+      }
+
+      shedding = value;
+    }
+  }
+
+  /**
+   * Gets whether less severe events are evicted to make room.
+   *
+   * @since 1.3.6
+   * @return true if less severe events are evicted.
+   */
+  public boolean getShedding() {
+    return shedding;
+  }
+
+  /**
+   * Gets the number of events discarded, including evicted events.
+   *
+   * @since 1.3.6
+   * @return number of discarded events.
+   */
+  public long getDiscardedCount() {
+    long count = discardedCount;
+    AsyncAppender[] p = partitions;
+
+    for (int i = 0; (p != null) && (i < p.length); i++) {
+      count += p[i].getDiscardedCount();
+    }
+
+    return count;
+  }
+
+  /**
+   * Gets the number of events of a level discarded.
+   *
+   * @since 1.3.6
+   * @param level level.
+   * @return number of discarded events of the level.
+   */
+  public long getLevelDiscardedCount(final Level level) {
+    long count = 0;
+    AsyncAppender[] p = partitions;
+
+    for (int i = 0; (p != null) && (i < p.length); i++) {
+      count += p[i].getLevelDiscardedCount(level);
+    }
+
+    synchronized (buffer) {
+      long[] c = (long[]) levelDiscards.get(level);
+      return (c == null) ? count : count + c[0];
+    }
+  }
+
+  /**
+   * Gets the number of events of a logger discarded.
+   *
+   * @since 1.3.6
+   * @param loggerName logger name.
+   * @return number of discarded events of the logger.
+   */
+  public long getLoggerDiscardedCount(final String loggerName) {
+    long count = 0;
+    AsyncAppender[] p = partitions;
+
+    for (int i = 0; (p != null) && (i < p.length); i++) {
+      count += p[i].getLoggerDiscardedCount(loggerName);
+    }
+
+    synchronized (buffer) {
+      long[] c = (long[]) loggerDiscards.get(loggerName);
+      return (c == null) ? count : count + c[0];
+    }
+  }
+
+  /**
+   * Sets the number of partitions, each served by its own dispatcher
+   * thread and driving the appenders attached to it. Partitions are
+   * created when options are activated if there are more than one.
+   *
+   * @since 1.3.6
+   * @param count number of partitions.
+   */
+  public void setPartitions(final int count) {
+    partitionCount = (count < 1) ? 1 : count;
+  }
+
+  /**
+   * Gets the number of partitions.
+   *
+   * @since 1.3.6
+   * @return number of partitions.
+   */
+  public int getPartitions() {
+    return partitionCount;
+  }
+
   /**
    * Gets whether appender should block calling thread when buffer is full.
    * If false, messages will be counted by logger and a summary
@@ -425,6 +1394,17 @@ public class AsyncAppender extends AppenderSkeleton
    * Summary of discarded logging events for a logger.
    */
   private static final class DiscardSummary {
+    /**
+     * Orders levels from the most severe.
+     */
+    private static final Comparator SEVERITY_ORDER = new Comparator() {
+      public int compare(final Object o1, final Object o2) {
+        int l1 = ((Level) o1).toInt();
+        int l2 = ((Level) o2).toInt();
+        return (l1 > l2) ? -1 : ((l1 == l2) ? 0 : 1);
+      }
+    };
+
     /**
      * First event of the highest severity.
      */
@@ -435,6 +1415,11 @@ public class AsyncAppender extends AppenderSkeleton
      */
     private int count;
 
+    /**
+     * Count of messages discarded, as int[1], by level.
+     */
+    private final Map levelCounts = new TreeMap(SEVERITY_ORDER);
+
     /**
      * Create new instance.
      *
@@ -443,6 +1428,7 @@ public class AsyncAppender extends AppenderSkeleton
     public DiscardSummary(final LoggingEvent event) {
       maxEvent = event;
       count = 1;
+      levelCounts.put(event.getLevel(), new int[] { 1 });
     }
 
     /**
@@ -456,6 +1442,14 @@ public class AsyncAppender extends AppenderSkeleton
       }
 
       count++;
+
+      int[] levelCount = (int[]) levelCounts.get(event.getLevel());
+
+      if (levelCount == null) {
+        levelCounts.put(event.getLevel(), new int[] { 1 });
+      } else {
+        levelCount[0]++;
+      }
     }
 
     /**
@@ -469,6 +1463,20 @@ public class AsyncAppender extends AppenderSkeleton
           "Discarded {0} messages due to full event buffer including: {1}",
           new Object[] { new Integer(count), maxEvent.getMessage() });
 
+      if (levelCounts.size() > 1) {
+        StringBuffer buf = new StringBuffer(msg).append(" (");
+        Iterator iter = levelCounts.entrySet().iterator();
+
+        while (iter.hasNext()) {
+          Map.Entry entry = (Map.Entry) iter.next();
+          buf.append(entry.getKey()).append(": ");
+          buf.append(((int[]) entry.getValue())[0]);
+          buf.append(iter.hasNext() ? ", " : ")");
+        }
+
+        msg = buf.toString();
+      }
+
       return new LoggingEvent(
               "org.apache.log4j.AsyncAppender.DONT_REPORT_LOCATION",
               Logger.getLogger(maxEvent.getLoggerName()),
@@ -534,62 +1542,224 @@ public class AsyncAppender extends AppenderSkeleton
         //   loop until the AsyncAppender is closed.
         //
         while (isActive) {
-          LoggingEvent[] events = null;
+          RingBuffer ring = parent.ring;
+
+          if (ring == null) {
+            isActive = dispatchList();
+          } else {
+            dispatchRing(ring);
+            isActive = false;
+          }
+        }
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      } finally {
+        synchronized (buffer) {
+          if (parent.spool != null) {
+            parent.spool.close();
+          }
+        }
+      }
+    }
+
+    /**
+     * Wait for events in the list buffer and dispatch them.
+     *
+     * @return false if the AsyncAppender is closed.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    private boolean dispatchList() throws InterruptedException {
+      boolean isActive;
+      LoggingEvent[] events = null;
+      int count = 0;
+
+      //
+      //   extract pending events while synchronized
+      //       on buffer
+      //
+      synchronized (buffer) {
+        int bufferSize = buffer.size();
+        isActive = !parent.closed;
+
+        while ((bufferSize == 0) && !parent.spilling && isActive
+                && (parent.ring == null)) {
+          buffer.wait();
+          bufferSize = buffer.size();
+          isActive = !parent.closed;
+        }
 
+        if (bufferSize > 0) {
+          events = new LoggingEvent[bufferSize + discardMap.size()];
+          buffer.toArray(events);
+          count = bufferSize;
+        } else if (parent.spilling && (parent.ring == null)) {
           //
-          //   extract pending events while synchronized
-          //       on buffer
+          //   replay spooled events once the buffer is drained,
+          //      unless the ring buffer was activated meanwhile.
           //
-          synchronized (buffer) {
-            int bufferSize = buffer.size();
-            isActive = !parent.closed;
+          events = new LoggingEvent[parent.bufferSize + discardMap.size()];
+          count = parent.replay(events, 0, parent.bufferSize);
+        }
 
-            while ((bufferSize == 0) && isActive) {
-              buffer.wait();
-              bufferSize = buffer.size();
-              isActive = !parent.closed;
+        if (events != null) {
+          //
+          //   add events due to buffer overflow,
+          //      after the spooled events if any
+          //
+          if (!parent.spilling) {
+            for (
+              Iterator iter = discardMap.values().iterator();
+                iter.hasNext();) {
+              events[count++] = ((DiscardSummary) iter.next()).createEvent();
             }
 
-            if (bufferSize > 0) {
-              events = new LoggingEvent[bufferSize + discardMap.size()];
-              buffer.toArray(events);
-
-              //
-              //   add events due to buffer overflow
-              //
-              int index = bufferSize;
-
-              for (
-                Iterator iter = discardMap.values().iterator();
-                  iter.hasNext();) {
-                events[index++] = ((DiscardSummary) iter.next()).createEvent();
-              }
-
-              //
-              //    clear buffer and discard map
-              //
-              buffer.clear();
-              discardMap.clear();
-
-              //
-              //    allow blocked appends to continue
-              buffer.notifyAll();
-            }
+            discardMap.clear();
           }
 
           //
-          //   process events after lock on buffer is released.
+          //    clear buffer
+          //
+          buffer.clear();
+          parent.queuedLevels.clear();
+
           //
-          if (events != null) {
-            for (int i = 0; i < events.length; i++) {
-              synchronized (appenders) {
-                appenders.appendLoopOnAppenders(events[i]);
-              }
+          //    allow blocked appends to continue
+          buffer.notifyAll();
+        }
+      }
+
+      //
+      //   process events after lock on buffer is released.
+      //
+      if (events != null) {
+        dispatch(events, count);
+      }
+      return isActive || (events != null) || (parent.ring != null);
+    }
+
+    /**
+     * Dispatch the events of the ring buffer until it is closed and empty.
+     *
+     * @param ring ring buffer.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    private void dispatchRing(final RingBuffer ring)
+      throws InterruptedException {
+      LoggingEvent[] events = new LoggingEvent[ring.getCapacity()];
+
+      while (true) {
+        //
+        //   read before draining so that summaries are dispatched
+        //      after the events buffered when discarding began.
+        //
+        boolean discarded = parent.discardPending;
+        boolean spilled = parent.spilling;
+        int count = ring.drainTo(events);
+
+        if (count > 0) {
+          dispatch(events, count);
+        }
+
+        if (count == events.length) {
+          continue;
+        }
+
+        //
+        //   replay spooled events once the ring buffer is drained,
+        //      spilled is read before draining so that events offered
+        //      before spooling began are dispatched first.
+        //
+        if (spilled || parent.spilling) {
+          if (spilled && (count == 0)) {
+            synchronized (buffer) {
+              count = parent.replay(events, 0, events.length);
             }
+
+            dispatch(events, count);
           }
+
+          continue;
         }
-      } catch (InterruptedException ex) {
-        Thread.currentThread().interrupt();
+
+        if (discarded) {
+          LoggingEvent[] summaries;
+
+          synchronized (buffer) {
+            parent.discardPending = false;
+            summaries = new LoggingEvent[discardMap.size()];
+
+            int index = 0;
+
+            for (
+              Iterator iter = discardMap.values().iterator();
+                iter.hasNext();) {
+              summaries[index++] = ((DiscardSummary) iter.next()).createEvent();
+            }
+
+            discardMap.clear();
+          }
+
+          dispatch(summaries, summaries.length);
+        } else if (count == 0) {
+          if (ring.isClosed() && ring.isEmpty() && !parent.spilling) {
+            return;
+          }
+
+          waitForEvents(ring);
+        }
+      }
+    }
+
+    /**
+     * Wait for events according to the wait strategy of the parent.
+     *
+     * @param ring ring buffer.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    private void waitForEvents(final RingBuffer ring)
+      throws InterruptedException {
+      String strategy = parent.waitStrategy;
+
+      if (strategy == WAIT_BLOCK) {
+        synchronized (buffer) {
+          parent.dispatcherWaiting = true;
+
+          //
+          //   producers check dispatcherWaiting after publishing,
+          //      this check catches those which did not see it set.
+          //
+          if (ring.isEmpty() && !ring.isClosed() && !parent.discardPending
+                  && !parent.spilling && (parent.waitStrategy == WAIT_BLOCK)) {
+            buffer.wait();
+          }
+
+          parent.dispatcherWaiting = false;
+        }
+      } else if (strategy == WAIT_PARK) {
+        LockSupport.parkNanos(PARK_NANOS);
+
+        if (Thread.interrupted()) {
+          throw new InterruptedException();
+        }
+      } else if (strategy == WAIT_YIELD) {
+        Thread.yield();
+      }
+    }
+
+    /**
+     * Pass events to the attached appenders, in bulk to those implementing
+     * BatchAppender, clearing the references held by the array.
+     *
+     * @param events events.
+     * @param count number of events.
+     */
+    private void dispatch(final LoggingEvent[] events, final int count) {
+      synchronized (appenders) {
+        appenders.appendLoopOnAppenders(events, count);
+      }
+
+      for (int i = 0; i < count; i++) {
+        events[i] = null;
       }
     }
   }
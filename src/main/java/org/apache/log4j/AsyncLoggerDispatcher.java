@@ -0,0 +1,323 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.log4j;
+
+import java.util.Hashtable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.log4j.helpers.LogLog;
+import org.apache.log4j.helpers.ParameterFormatter;
+import org.apache.log4j.or.RendererMap;
+import org.apache.log4j.spi.EventFieldConsumer;
+import org.apache.log4j.spi.LoggerRepository;
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.RendererSupport;
+import org.apache.log4j.spi.ThrowableInformation;
+
+/**
+   Background dispatcher of the logging requests of asynchronous
+   loggers, see {@link Category#setAsync}.
+
+   <p>The calling thread only copies the fields of the request which
+   depend on it, the time stamp, the thread name, the NDC and the MDC,
+   into a preallocated slot of a ring. Messages and parameters which
+   are not immutable are rendered first. Fields which none of the
+   appenders of the logger reads, see {@link
+   org.apache.log4j.spi.EventFieldConsumer}, are neither copied nor
+   rendered. The dispatcher thread creates
+   the {@link LoggingEvent} and calls the appenders of the logger.
+
+   <p>Slots are claimed by incrementing the tail sequence with a
+   compare-and-set and published by writing their sequence, the
+   dispatcher releases them by advancing the head sequence. Callers
+   wait for a free slot when the ring is full. Stopping replaces the
+   tail sequence with {@link #CLOSED}, so that no slot is claimed once
+   the dispatcher drains the ring for the last time.
+
+   <p>Location information is not available to the appenders as the
+   event is created on another thread.
+
+   @since 1.3.6 */
+final class AsyncLoggerDispatcher implements Runnable {
+
+  /** Default number of slots. */
+  static final int DEFAULT_BUFFER_SIZE = 1024;
+
+  /** Duration of the parks of the callers waiting for a free slot. */
+  private static final long PARK_NANOS = 50000L;
+
+  /** Longest park of the dispatcher between two checks of the ring. */
+  private static final long IDLE_NANOS = 1000000L;
+
+  /** Tail sequence of a stopped dispatcher, no slot can be claimed. */
+  private static final long CLOSED = Long.MAX_VALUE;
+
+  private final Slot[] slots;
+  private final int mask;
+
+  /** Sequence of the next slot to claim. */
+  private final AtomicLong tail = new AtomicLong();
+
+  /** Sequence of the next slot to dispatch, only written by the dispatcher. */
+  private final AtomicLong head = new AtomicLong();
+
+  private final Thread thread;
+
+  /** Sequence following the last claimed slot, set before stopped. */
+  private volatile long end;
+
+  private volatile boolean stopped;
+
+  /** Set while the dispatcher is parked waiting for requests. */
+  private volatile boolean waiting;
+
+  AsyncLoggerDispatcher(int minCapacity) {
+    int capacity = 1;
+    while(capacity < minCapacity) {
+      capacity <<= 1;
+    }
+    slots = new Slot[capacity];
+    for(int i = 0; i < capacity; i++) {
+      slots[i] = new Slot(i - capacity);
+    }
+    mask = capacity - 1;
+    thread = new Thread(this, "AsyncLogger-Dispatcher");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+     Return true once stopped, requests are then refused.
+   */
+  boolean isStopped() {
+    return stopped;
+  }
+
+  /**
+     Queue a logging request for the dispatcher.
+
+     @param fields the fields of the event read by the appenders.
+     @return false if the request was not queued because the dispatcher
+     is stopped or the caller is the dispatcher thread itself, the
+     request must then be logged synchronously.
+   */
+  boolean publish(String fqcn, Category logger, Priority level,
+                  Object message, Object[] parameters, Throwable t,
+                  int fields) {
+    if(Thread.currentThread() == thread) {
+      return false;
+    }
+
+    if((fields & EventFieldConsumer.MESSAGE) == 0) {
+      // the message is not read, only keep what is immutable
+      if(!isImmutable(message)) {
+        message = null;
+      }
+      parameters = null;
+    } else if(!isImmutable(message)) {
+      message = render(logger, message);
+    }
+    if(parameters != null) {
+      for(int i = 0; i < parameters.length; i++) {
+        if(!isImmutable(parameters[i])) {
+          if(message != null) {
+            message = ParameterFormatter.format(String.valueOf(message), parameters);
+          }
+          parameters = null;
+          break;
+        }
+      }
+    }
+
+    long seq;
+    while(true) {
+      seq = tail.get();
+      if(seq == CLOSED) {
+        return false;
+      }
+      if(seq - head.get() >= slots.length) {
+        LockSupport.parkNanos(PARK_NANOS);
+      } else if(tail.compareAndSet(seq, seq + 1)) {
+        break;
+      }
+    }
+
+    Slot slot = slots[(int) seq & mask];
+    slot.fqcn = fqcn;
+    slot.logger = logger;
+    slot.level = level;
+    slot.message = message;
+    slot.parameters = parameters;
+    slot.throwable = t;
+    slot.timeStamp = System.currentTimeMillis();
+    if((fields & EventFieldConsumer.THREAD_NAME) != 0) {
+      slot.threadName = Thread.currentThread().getName();
+    }
+    if((fields & EventFieldConsumer.NDC) != 0) {
+      slot.ndc = NDC.get();
+    }
+    if((fields & EventFieldConsumer.MDC) != 0) {
+      Hashtable mdc = MDC.getContext();
+      // the clone is handed over to the event, see Slot.toEvent
+      slot.mdc = (mdc == null || mdc.isEmpty()) ? null : (Hashtable) mdc.clone();
+    }
+    slot.sequence = seq;
+
+    if(waiting) {
+      LockSupport.unpark(thread);
+    }
+    return true;
+  }
+
+  /**
+     Stop accepting requests and wait until the queued requests are
+     dispatched.
+   */
+  void stop() {
+    // the slots claimed before are dispatched, later claims fail
+    long last = tail.getAndSet(CLOSED);
+    if(last != CLOSED) {
+      end = last;
+    }
+    stopped = true;
+    LockSupport.unpark(thread);
+    if(Thread.currentThread() == thread) {
+      return;
+    }
+    try {
+      thread.join();
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      LogLog.error("Got an InterruptedException while waiting for the "
+                   + "asynchronous logger dispatcher to finish.", e);
+    }
+  }
+
+  public
+  void run() {
+    long next = 0;
+    while(true) {
+      if(dispatch(next)) {
+        next++;
+      } else if(stopped && end == next) {
+        return;
+      } else {
+        Slot slot = slots[(int) next & mask];
+        waiting = true;
+        // callers check waiting after publishing, this check catches
+        // those which did not see it set.
+        if(slot.sequence != next && !stopped) {
+          LockSupport.parkNanos(IDLE_NANOS);
+        }
+        waiting = false;
+      }
+    }
+  }
+
+  /**
+     Dispatch the request of sequence <code>next</code> if published.
+   */
+  private
+  boolean dispatch(long next) {
+    Slot slot = slots[(int) next & mask];
+    if(slot.sequence != next) {
+      return false;
+    }
+    LoggingEvent event = slot.toEvent();
+    Category logger = slot.logger;
+    slot.clear();
+    head.lazySet(next + 1);
+    try {
+      logger.callAppenders(event);
+    } catch(RuntimeException e) {
+      LogLog.error("Could not dispatch logging request of ["
+                   + logger.getName() + "].", e);
+    }
+    return true;
+  }
+
+  /**
+     Return true for the messages and parameters which may be rendered
+     by the dispatcher thread.
+   */
+  static
+  boolean isImmutable(Object o) {
+    return o == null || o instanceof String || o instanceof Integer
+      || o instanceof Long || o instanceof Boolean || o instanceof Character
+      || o instanceof Double || o instanceof Float || o instanceof Short
+      || o instanceof Byte;
+  }
+
+  private static
+  String render(Category logger, Object message) {
+    LoggerRepository repository = logger.getLoggerRepository();
+    if(repository instanceof RendererSupport) {
+      RendererMap map = ((RendererSupport) repository).getRendererMap();
+      return map.findAndRender(message);
+    }
+    return message.toString();
+  }
+
+  /**
+     A preallocated request, published when its sequence is written.
+   */
+  private static final class Slot {
+    volatile long sequence;
+    String fqcn;
+    Category logger;
+    Priority level;
+    Object message;
+    Object[] parameters;
+    Throwable throwable;
+    long timeStamp;
+    String threadName;
+    String ndc;
+    Hashtable mdc;
+
+    Slot(long sequence) {
+      this.sequence = sequence;
+    }
+
+    LoggingEvent toEvent() {
+      Object msg = message;
+      if(msg != null && parameters != null) {
+        msg = ParameterFormatter.format(String.valueOf(msg), parameters);
+      }
+      Level l = (level instanceof Level) ? (Level) level
+        : Level.toLevel(level.toInt());
+      return LoggingEvent.createEvent(fqcn, logger, timeStamp, l, msg,
+                                      threadName,
+                                      (throwable == null) ? null
+                                      : new ThrowableInformation(throwable, logger),
+                                      ndc, mdc);
+    }
+
+    void clear() {
+      fqcn = null;
+      logger = null;
+      level = null;
+      message = null;
+      parameters = null;
+      throwable = null;
+      threadName = null;
+      ndc = null;
+      mdc = null;
+    }
+  }
+}
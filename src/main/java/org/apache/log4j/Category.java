@@ -35,6 +35,8 @@ import org.apache.log4j.spi.AppenderAttachable;
 import org.apache.log4j.spi.LoggingEvent;
 import org.apache.log4j.spi.LoggerRepository;
 import org.apache.log4j.spi.HierarchyEventListener;
+import org.apache.log4j.spi.RetainingAppender;
+import org.apache.log4j.spi.ReusableLoggingEvent;
 import org.apache.log4j.helpers.NullEnumeration;
 import org.apache.log4j.helpers.AppenderAttachableImpl;
 
@@ -109,6 +111,8 @@ public class Category implements AppenderAttachable {
 	/**
 	 * The assigned level of this category. The <code>level</code> variable need
 	 * not be assigned a value in which case it is inherited form the hierarchy.
+	 * Subclasses should change it through {@link #setLevel} so that cached
+	 * effective levels are invalidated.
 	 */
 	volatile protected Level level;
 
@@ -134,6 +138,38 @@ public class Category implements AppenderAttachable {
 
 	AppenderAttachableImpl aai;
 
+	/**
+	 * Immutable snapshot of the appenders in {@link #aai}. It is replaced as a
+	 * whole, under the write lock, each time the appender list changes so that
+	 * {@link #callAppenders} can traverse it without taking any lock.
+	 */
+	private volatile Appender[] appenderSnapshot = NO_APPENDERS;
+
+	/** Shared snapshot for categories without appenders. */
+	private static final Appender[] NO_APPENDERS = new Appender[0];
+
+	/**
+	 * The hierarchy this category is attached to, if the repository is a
+	 * {@link Hierarchy}. Its level generation validates
+	 * {@link #enabledLevelCache}.
+	 */
+	private Hierarchy hierarchy;
+
+	/**
+	 * Lowest level int enabled for this category, that is the larger of the
+	 * effective level and the repository threshold, in the low 32 bits and the
+	 * level generation of the hierarchy it was computed for in the high 32
+	 * bits. Both halves are packed in a single volatile long so that they are
+	 * always read together.
+	 */
+	private volatile long enabledLevelCache;
+
+	/**
+	 * The flattened, deduplicated appenders reached by this category, valid
+	 * for the appender generation of the hierarchy it was computed for.
+	 */
+	private volatile AppenderChain appenderChain;
+
 	/**
 	 * Additivity is set to true by default, that is children inherit the
 	 * appenders of their ancestors by default. If this variable is set to
@@ -144,6 +180,12 @@ public class Category implements AppenderAttachable {
 	 */
 	protected boolean additive = true;
 
+	/**
+	 * Whether log requests are dispatched by a background thread,
+	 * <code>null</code> to inherit the setting of the parent.
+	 */
+	private volatile Boolean async;
+
 	/**
 	 * This constructor created a new <code>Category</code> instance and sets
 	 * its name.
@@ -179,6 +221,8 @@ public class Category implements AppenderAttachable {
 
 			aai.addAppender(newAppender);
 
+			updateAppenderSnapshot();
+
 			repository.fireAddAppenderEvent(this, newAppender);
 
 		} finally {
@@ -218,46 +262,198 @@ public class Category implements AppenderAttachable {
 	 *            the event to log.
 	 */
 	public void callAppenders(LoggingEvent event) {
+		Hierarchy h = hierarchy;
+
+		if (h != null) {
+			// Precomputed appenders of this category and its ancestors,
+			// rebuilt only after appenders or additivity change.
+			AppenderChain chain = getAppenderChain(h);
+			Appender[] appenders = chain.appenders;
+			boolean[] retaining = chain.retaining;
+
+			if (retaining == null || !(event instanceof ReusableLoggingEvent)) {
+				for (int i = 0; i < appenders.length; i++) {
+
+					appenders[i].doAppend(event);
+				}
+			} else {
+				// Appenders keeping the event past doAppend share one
+				// immutable copy of the reusable event.
+				LoggingEvent copy = null;
+
+				for (int i = 0; i < appenders.length; i++) {
+					if (retaining[i]) {
+						if (copy == null)
+							copy = ((ReusableLoggingEvent) event).toImmutable();
+						appenders[i].doAppend(copy);
+					} else {
+						appenders[i].doAppend(event);
+					}
+				}
+			}
+
+			if (appenders.length == 0) {
+
+				repository.emitNoAppenderWarning(this);
+			}
+			return;
+		}
+
 		int writes = 0;
 
 		for (Category c = this; c != null; c = c.parent) {
-			// Protected against simultaneous call to addAppender,
-			// removeAppender,...
+			// The snapshot is never modified once published, concurrent
+			// calls to addAppender, removeAppender,... swap in a new one.
+			Appender[] appenders = c.appenderSnapshot;
 
-			// read lock
-			c.lock.readLock().lock();
+			for (int i = 0; i < appenders.length; i++) {
 
-			try {
+				appenders[i].doAppend(event);
+			}
 
-				if (c.aai != null) {
+			writes += appenders.length;
 
-					writes += c.aai.appendLoopOnAppenders(event);
-				}
+			if (!c.additive) {
 
-				if (!c.additive) {
+				break;
+			}
+		}
 
-					break;
-				}
+		if (writes == 0) {
 
-			} finally {
-				// un lock
-				c.lock.readLock().unlock();
+			repository.emitNoAppenderWarning(this);
+		}
+	}
+
+	/**
+	 * Return the appenders attached to this category followed by those
+	 * inherited from its ancestors according to additivity, each appender
+	 * appearing once. The chain is cached until the appender generation of
+	 * the hierarchy changes and its array is shared with the parent when this
+	 * category has no appenders of its own.
+	 */
+	private AppenderChain getAppenderChain(Hierarchy h) {
+		int generation = h.appenderGeneration;
+		AppenderChain chain = appenderChain;
+
+		if (chain != null && chain.generation == generation)
+			return chain;
+
+		Appender[] appenders = appenderSnapshot;
+		Category p = parent;
+		Boolean a = async;
+		AppenderChain inherited = null;
+
+		if (p != null && (additive || a == null))
+			inherited = p.getAppenderChain(h);
+
+		boolean isAsync = (a != null) ? a.booleanValue()
+				: (inherited != null && inherited.async);
+
+		if (additive && inherited != null) {
+			if (appenders.length == 0) {
+				chain = new AppenderChain(inherited.appenders,
+						inherited.retaining, isAsync, generation);
+			} else {
+				appenders = merge(appenders, inherited.appenders);
+				chain = new AppenderChain(appenders, retaining(appenders),
+						isAsync, generation);
 			}
+		} else {
+			chain = new AppenderChain(appenders, retaining(appenders),
+					isAsync, generation);
 		}
 
-		if (writes == 0) {
+		appenderChain = chain;
+		return chain;
+	}
 
-			// write lock
-			lock.writeLock().lock();
+	/**
+	 * Flag the appenders which may keep a reference to the events they are
+	 * given, either because they say so or because they forward events to
+	 * other appenders. Returns <code>null</code> if there are none.
+	 */
+	private static boolean[] retaining(Appender[] appenders) {
+		boolean[] retaining = null;
 
-			try {
-				repository.emitNoAppenderWarning(this);
+		for (int i = 0; i < appenders.length; i++) {
+			Appender a = appenders[i];
+
+			if ((a instanceof RetainingAppender) ? ((RetainingAppender) a)
+					.retainsEvents() : (a instanceof AppenderAttachable)) {
+				if (retaining == null)
+					retaining = new boolean[appenders.length];
+				retaining[i] = true;
+			}
+		}
+		return retaining;
+	}
 
-			} finally {
-				// un lock
-				lock.writeLock().unlock();
+	/**
+	 * Append to <code>own</code> the appenders of <code>inherited</code> it
+	 * does not already contain.
+	 */
+	private static Appender[] merge(Appender[] own, Appender[] inherited) {
+		Appender[] merged = new Appender[own.length + inherited.length];
+		int size = own.length;
+
+		System.arraycopy(own, 0, merged, 0, size);
+
+		INHERITED_LOOP: for (int i = 0; i < inherited.length; i++) {
+			for (int j = 0; j < own.length; j++) {
+				if (own[j] == inherited[i])
+					continue INHERITED_LOOP;
 			}
+			merged[size++] = inherited[i];
 		}
+
+		if (size == merged.length)
+			return merged;
+
+		Appender[] trimmed = new Appender[size];
+
+		System.arraycopy(merged, 0, trimmed, 0, size);
+		return trimmed;
+	}
+
+	/**
+	 * Republish the appender snapshot from the current content of
+	 * {@link #aai}. Must be called with the write lock held.
+	 */
+	private void updateAppenderSnapshot() {
+		Enumeration enumeration = (aai == null) ? null : aai.getAllAppenders();
+
+		if (enumeration == null) {
+
+			appenderSnapshot = NO_APPENDERS;
+			appendersChanged();
+			return;
+		}
+
+		Vector appenders = new Vector();
+
+		while (enumeration.hasMoreElements()) {
+
+			appenders.addElement(enumeration.nextElement());
+		}
+
+		Appender[] snapshot = new Appender[appenders.size()];
+
+		appenders.copyInto(snapshot);
+
+		appenderSnapshot = snapshot;
+		appendersChanged();
+	}
+
+	/**
+	 * Invalidate the appender chains of the whole hierarchy, since the
+	 * appenders of this category are inherited by its descendants.
+	 */
+	private void appendersChanged() {
+		Hierarchy h = hierarchy;
+
+		if (h != null)
+			h.appendersChanged();
 	}
 
 	/**
@@ -315,9 +511,7 @@ public class Category implements AppenderAttachable {
 	 *            the message object to log.
 	 */
 	public void debug(Object message) {
-		if (repository.isDisabled(Level.DEBUG_INT))
-			return;
-		if (Level.DEBUG.isGreaterOrEqual(this.getEffectiveLevel())) {
+		if (isLevelEnabled(Level.DEBUG_INT)) {
 			forcedLog(FQCN, Level.DEBUG, message, null);
 		}
 	}
@@ -335,9 +529,7 @@ public class Category implements AppenderAttachable {
 	 *            the exception to log, including its stack trace.
 	 */
 	public void debug(Object message, Throwable t) {
-		if (repository.isDisabled(Level.DEBUG_INT))
-			return;
-		if (Level.DEBUG.isGreaterOrEqual(this.getEffectiveLevel()))
+		if (isLevelEnabled(Level.DEBUG_INT))
 			forcedLog(FQCN, Level.DEBUG, message, t);
 	}
 
@@ -362,9 +554,7 @@ public class Category implements AppenderAttachable {
 	 *            the message object to log
 	 */
 	public void error(Object message) {
-		if (repository.isDisabled(Level.ERROR_INT))
-			return;
-		if (Level.ERROR.isGreaterOrEqual(this.getEffectiveLevel()))
+		if (isLevelEnabled(Level.ERROR_INT))
 			forcedLog(FQCN, Level.ERROR, message, null);
 	}
 
@@ -381,9 +571,7 @@ public class Category implements AppenderAttachable {
 	 *            the exception to log, including its stack trace.
 	 */
 	public void error(Object message, Throwable t) {
-		if (repository.isDisabled(Level.ERROR_INT))
-			return;
-		if (Level.ERROR.isGreaterOrEqual(this.getEffectiveLevel()))
+		if (isLevelEnabled(Level.ERROR_INT))
 			forcedLog(FQCN, Level.ERROR, message, t);
 
 	}
@@ -420,9 +608,7 @@ public class Category implements AppenderAttachable {
 	 *            the message object to log
 	 */
 	public void fatal(Object message) {
-		if (repository.isDisabled(Level.FATAL_INT))
-			return;
-		if (Level.FATAL.isGreaterOrEqual(this.getEffectiveLevel()))
+		if (isLevelEnabled(Level.FATAL_INT))
 			forcedLog(FQCN, Level.FATAL, message, null);
 	}
 
@@ -439,19 +625,61 @@ public class Category implements AppenderAttachable {
 	 *            the exception to log, including its stack trace.
 	 */
 	public void fatal(Object message, Throwable t) {
-		if (repository.isDisabled(Level.FATAL_INT))
-			return;
-		if (Level.FATAL.isGreaterOrEqual(this.getEffectiveLevel()))
+		if (isLevelEnabled(Level.FATAL_INT))
 			forcedLog(FQCN, Level.FATAL, message, t);
 	}
 
 	/**
 	 * This method creates a new logging event and logs the event without
-	 * further checks.
+	 * further checks. The event of the current thread is reused instead when
+	 * the hierarchy has reusable events enabled.
 	 */
 	protected void forcedLog(String fqcn, Priority level, Object message,
 			Throwable t) {
-		callAppenders(new LoggingEvent(fqcn, this, level, message, t));
+		forcedLog(fqcn, level, message, null, t);
+	}
+
+	/**
+	 * Log a parameterized message without further checks. The arguments are
+	 * carried by the event and only formatted into the message when it is
+	 * rendered.
+	 * 
+	 * @since 1.3.6
+	 */
+	protected void forcedLog(String fqcn, Priority level, Object message,
+			Object[] parameters, Throwable t) {
+		Hierarchy h = hierarchy;
+
+		AppenderChain chain = (h == null) ? null : getAppenderChain(h);
+
+		if (chain != null && chain.async) {
+			// null until an asynchronous logger is configured, refuses
+			// requests once the hierarchy is shut down
+			AsyncLoggerDispatcher dispatcher = h.asyncDispatcher;
+
+			if (dispatcher != null
+					&& dispatcher.publish(fqcn, this, level, message,
+							parameters, t, AppenderAttachableImpl
+									.getRequiredFields(chain.appenders)))
+				return;
+		}
+
+		if (h != null && h.reusableEvents) {
+			// null if an appender logs from within doAppend
+			ReusableLoggingEvent event = ReusableLoggingEvent.acquire(fqcn,
+					this, level, message, parameters, t);
+
+			if (event != null) {
+				try {
+					callAppenders(event);
+				} finally {
+					event.release();
+				}
+				return;
+			}
+		}
+		callAppenders(new LoggingEvent(fqcn, this, level, message, parameters,
+				t));
 	}
 
 	/**
@@ -712,9 +940,7 @@ public class Category implements AppenderAttachable {
 	 *            the message object to log
 	 */
 	public void info(Object message) {
-		if (repository.isDisabled(Level.INFO_INT))
-			return;
-		if (Level.INFO.isGreaterOrEqual(this.getEffectiveLevel()))
+		if (isLevelEnabled(Level.INFO_INT))
 			forcedLog(FQCN, Level.INFO, message, null);
 	}
 
@@ -731,9 +957,7 @@ public class Category implements AppenderAttachable {
 	 *            the exception to log, including its stack trace.
 	 */
 	public void info(Object message, Throwable t) {
-		if (repository.isDisabled(Level.INFO_INT))
-			return;
-		if (Level.INFO.isGreaterOrEqual(this.getEffectiveLevel()))
+		if (isLevelEnabled(Level.INFO_INT))
 			forcedLog(FQCN, Level.INFO, message, t);
 	}
 
@@ -788,9 +1012,7 @@ public class Category implements AppenderAttachable {
 	 *         <code>false</code> otherwise.
 	 * */
 	public boolean isDebugEnabled() {
-		if (repository.isDisabled(Level.DEBUG_INT))
-			return false;
-		return Level.DEBUG.isGreaterOrEqual(this.getEffectiveLevel());
+		return isLevelEnabled(Level.DEBUG_INT);
 	}
 
 	/**
@@ -802,9 +1024,7 @@ public class Category implements AppenderAttachable {
 	 * @return boolean True if this category is enabled for <code>level</code>.
 	 */
 	public boolean isEnabledFor(Priority level) {
-		if (repository.isDisabled(level.level))
-			return false;
-		return level.isGreaterOrEqual(this.getEffectiveLevel());
+		return isLevelEnabled(level.level);
 	}
 
 	/**
@@ -815,9 +1035,50 @@ public class Category implements AppenderAttachable {
 	 *         info, <code>false</code> otherwise.
 	 */
 	public boolean isInfoEnabled() {
-		if (repository.isDisabled(Level.INFO_INT))
-			return false;
-		return Level.INFO.isGreaterOrEqual(this.getEffectiveLevel());
+		return isLevelEnabled(Level.INFO_INT);
+	}
+
+	/**
+	 * Check whether this category is enabled for the level int passed as
+	 * parameter, taking the repository threshold into account.
+	 * 
+	 * <p>
+	 * When attached to a {@link Hierarchy}, the result of the walk up the
+	 * parent chain is cached and stays valid until the hierarchy's level
+	 * generation changes, so that a disabled request costs a couple of
+	 * volatile reads and one int comparison.
+	 */
+	final boolean isLevelEnabled(int level) {
+		Hierarchy h = hierarchy;
+
+		if (h == null) {
+			if (repository.isDisabled(level))
+				return false;
+			return level >= getEffectiveLevel().level;
+		}
+
+		long cache = enabledLevelCache;
+
+		if ((int) (cache >>> 32) == h.levelGeneration)
+			return level >= (int) cache;
+
+		return level >= updateEnabledLevelCache(h);
+	}
+
+	/**
+	 * Recompute and cache the lowest level int enabled for this category.
+	 * The generation is read before the levels so that a concurrent change
+	 * leaves a cache entry which is already stale.
+	 */
+	private int updateEnabledLevelCache(Hierarchy h) {
+		int generation = h.levelGeneration;
+		int enabled = getEffectiveLevel().level;
+
+		if (h.thresholdInt > enabled)
+			enabled = h.thresholdInt;
+
+		enabledLevelCache = ((long) generation << 32) | (enabled & 0xFFFFFFFFL);
+		return enabled;
 	}
 
 	/**
@@ -828,10 +1089,7 @@ public class Category implements AppenderAttachable {
 	 * @since 0.8.4
 	 */
 	public void l7dlog(Priority priority, String key, Throwable t) {
-		if (repository.isDisabled(priority.level)) {
-			return;
-		}
-		if (priority.isGreaterOrEqual(this.getEffectiveLevel())) {
+		if (isLevelEnabled(priority.level)) {
 			String msg = getResourceBundleString(key);
 			// if message corresponding to 'key' could not be found in the
 			// resource bundle, then default to 'key'.
@@ -853,10 +1111,7 @@ public class Category implements AppenderAttachable {
 	 */
 	public void l7dlog(Priority priority, String key, Object[] params,
 			Throwable t) {
-		if (repository.isDisabled(priority.level)) {
-			return;
-		}
-		if (priority.isGreaterOrEqual(this.getEffectiveLevel())) {
+		if (isLevelEnabled(priority.level)) {
 			String pattern = getResourceBundleString(key);
 			String msg;
 			if (pattern == null)
@@ -871,10 +1126,7 @@ public class Category implements AppenderAttachable {
 	 * This generic form is intended to be used by wrappers.
 	 */
 	public void log(Priority priority, Object message, Throwable t) {
-		if (repository.isDisabled(priority.level)) {
-			return;
-		}
-		if (priority.isGreaterOrEqual(this.getEffectiveLevel()))
+		if (isLevelEnabled(priority.level))
 			forcedLog(FQCN, priority, message, t);
 	}
 
@@ -882,10 +1134,7 @@ public class Category implements AppenderAttachable {
 	 * This generic form is intended to be used by wrappers.
 	 */
 	public void log(Priority priority, Object message) {
-		if (repository.isDisabled(priority.level)) {
-			return;
-		}
-		if (priority.isGreaterOrEqual(this.getEffectiveLevel()))
+		if (isLevelEnabled(priority.level))
 			forcedLog(FQCN, priority, message, null);
 	}
 
@@ -904,10 +1153,7 @@ public class Category implements AppenderAttachable {
 	 */
 	public void log(String callerFQCN, Priority level, Object message,
 			Throwable t) {
-		if (repository.isDisabled(level.level)) {
-			return;
-		}
-		if (level.isGreaterOrEqual(this.getEffectiveLevel())) {
+		if (isLevelEnabled(level.level)) {
 			forcedLog(callerFQCN, level, message, t);
 		}
 	}
@@ -957,6 +1203,8 @@ public class Category implements AppenderAttachable {
 
 				aai.removeAllAppenders();
 
+				updateAppenderSnapshot();
+
 				for (Enumeration iter = appenders.elements(); iter
 						.hasMoreElements();) {
 
@@ -990,6 +1238,8 @@ public class Category implements AppenderAttachable {
 
 			aai.removeAppender(appender);
 
+			updateAppenderSnapshot();
+
 			if (wasAttached) {
 
 				fireRemoveAppenderEvent(appender);
@@ -1021,6 +1271,8 @@ public class Category implements AppenderAttachable {
 
 			aai.removeAppender(name);
 
+			updateAppenderSnapshot();
+
 			if (appender != null) {
 
 				fireRemoveAppenderEvent(appender);
@@ -1038,6 +1290,59 @@ public class Category implements AppenderAttachable {
 	 */
 	public void setAdditivity(boolean additive) {
 		this.additive = additive;
+		appendersChanged();
+	}
+
+	/**
+	 * Set whether the log requests of this category, and of its descendants
+	 * which do not set it themselves, are dispatched asynchronously. The
+	 * calling thread then only captures the fields of the request which
+	 * depend on it while a background thread of the hierarchy creates the
+	 * event and calls the appenders. Location information is not available
+	 * to the appenders of asynchronous categories.
+	 * 
+	 * <p>
+	 * Only categories of a {@link Hierarchy} can be asynchronous.
+	 * 
+	 * @param async
+	 *            true or false, <code>null</code> to inherit the setting of
+	 *            the parent.
+	 * @since 1.3.6
+	 */
+	public void setAsync(Boolean async) {
+		this.async = async;
+		Hierarchy h = hierarchy;
+
+		if (h != null) {
+			if (Boolean.TRUE.equals(async))
+				h.startAsyncDispatcher();
+			h.appendersChanged();
+		}
+	}
+
+	/**
+	 * Returns the asynchronous setting of this category, <code>null</code>
+	 * if inherited.
+	 * 
+	 * @since 1.3.6
+	 */
+	public Boolean getAsync() {
+		return async;
+	}
+
+	/**
+	 * Returns true if the log requests of this category are dispatched
+	 * asynchronously, according to its setting or to the nearest setting of
+	 * its ancestors.
+	 * 
+	 * @since 1.3.6
+	 */
+	public boolean isAsync() {
+		Hierarchy h = hierarchy;
+
+		if (h != null)
+			return getAppenderChain(h).async;
+		return false;
 	}
 
 	/**
@@ -1046,6 +1351,8 @@ public class Category implements AppenderAttachable {
 	 */
 	final void setHierarchy(LoggerRepository repository) {
 		this.repository = repository;
+		this.hierarchy = (repository instanceof Hierarchy) ? (Hierarchy) repository
+				: null;
 	}
 
 	/**
@@ -1067,6 +1374,7 @@ public class Category implements AppenderAttachable {
 	 */
 	public void setLevel(Level level) {
 		this.level = level;
+		levelChanged();
 	}
 
 	/**
@@ -1079,6 +1387,18 @@ public class Category implements AppenderAttachable {
 	 */
 	public void setPriority(Priority priority) {
 		this.level = (Level) priority;
+		levelChanged();
+	}
+
+	/**
+	 * Invalidate the cached enabled levels of the whole hierarchy, since the
+	 * level of this category is inherited by its descendants.
+	 */
+	private void levelChanged() {
+		Hierarchy h = hierarchy;
+
+		if (h != null)
+			h.levelsChanged();
 	}
 
 	/**
@@ -1136,10 +1456,7 @@ public class Category implements AppenderAttachable {
 	 *            the message object to log.
 	 */
 	public void warn(Object message) {
-		if (repository.isDisabled(Level.WARN_INT))
-			return;
-
-		if (Level.WARN.isGreaterOrEqual(this.getEffectiveLevel()))
+		if (isLevelEnabled(Level.WARN_INT))
 			forcedLog(FQCN, Level.WARN, message, null);
 	}
 
@@ -1156,9 +1473,28 @@ public class Category implements AppenderAttachable {
 	 *            the exception to log, including its stack trace.
 	 */
 	public void warn(Object message, Throwable t) {
-		if (repository.isDisabled(Level.WARN_INT))
-			return;
-		if (Level.WARN.isGreaterOrEqual(this.getEffectiveLevel()))
+		if (isLevelEnabled(Level.WARN_INT))
 			forcedLog(FQCN, Level.WARN, message, t);
 	}
+
+	/**
+	 * Immutable flattened appender array, the retaining flags of its
+	 * appenders, <code>null</code> if none retains events, the effective
+	 * asynchronous setting and the hierarchy appender generation it was
+	 * computed for.
+	 */
+	private static final class AppenderChain {
+		final Appender[] appenders;
+		final boolean[] retaining;
+		final boolean async;
+		final int generation;
+
+		AppenderChain(Appender[] appenders, boolean[] retaining,
+				boolean async, int generation) {
+			this.appenders = appenders;
+			this.retaining = retaining;
+			this.async = async;
+			this.generation = generation;
+		}
+	}
 }
@@ -1,5 +1,6 @@
 package org.apache.log4j;
 
+import org.apache.log4j.helpers.CompressionExecutor;
 import org.apache.log4j.helpers.GZipUtils;
 import org.apache.log4j.helpers.LogLog;
 import org.apache.log4j.spi.LoggingEvent;
@@ -9,10 +10,12 @@ import java.io.FileFilter;
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.text.SimpleDateFormat;
-import java.util.Arrays;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.Locale;
 import java.util.TimeZone;
+import java.util.TreeSet;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
@@ -120,6 +123,16 @@ public class DailyExRollingFileAppender extends FileAppender {
             rc.setType(type);
             File file = new File(fileName);
             scheduledFilename = fileName + sdf.format(new Date(file.lastModified()));
+            buildHistory(file);
+            if (fileCompress) {
+                CompressionExecutor executor = CompressionExecutor.getInstance();
+                setCompressionOption(executor, "PoolSize", compressionPoolSize);
+                setCompressionOption(executor, "QueueSize", compressionQueueSize);
+                setCompressionOption(executor, "BlockSize", compressionBlockSize);
+                setCompressionOption(executor, "BufferSize", compressionBufferSize);
+                setCompressionOption(executor, "Level", compressionLevel);
+                executor.register(LogManager.getLoggerRepository());
+            }
 
         } else {
             LogLog.error("Either File or DatePattern options are not set for appender ["
@@ -127,6 +140,12 @@ public class DailyExRollingFileAppender extends FileAppender {
         }
     }
 
+    private void setCompressionOption(CompressionExecutor executor, String option, Integer value) {
+        if (value != null) {
+            executor.setOption(name, option, value.intValue());
+        }
+    }
+
     void printPeriodicity(int type) {
         switch (type) {
             case TOP_OF_MINUTE:
@@ -207,15 +226,42 @@ public class DailyExRollingFileAppender extends FileAppender {
             return;
         }
 
+        final File file = new File(fileName);
+        final File target = new File(scheduledFilename);
+
+        if (asyncRollover && qw != null && file.renameTo(target)) {
+            // the open file was renamed, close it in the background
+            LogLog.debug(fileName + " -> " + scheduledFilename);
+            Runnable closer = null;
+            try {
+                closer = reopenFile(true);
+            } catch (IOException e) {
+                errorHandler.error("setFile(" + fileName + ", true) call failed.");
+            }
+            scheduledFilename = datedFilename;
+
+            final Runnable close = closer;
+            if (rolloverExecutor == null) {
+                rolloverExecutor = new RolloverExecutor(name, rolloverQueueSize);
+            }
+            rolloverExecutor.execute(new Runnable() {
+                public void run() {
+                    if (close != null) {
+                        close.run();
+                    }
+                    rolledOver(file, target, true);
+                }
+            });
+            return;
+        }
+
         // close current file, and rename it to datedFilename
         this.closeFile();
 
-        File target = new File(scheduledFilename);
         if (target.exists()) {
             target.delete();
         }
 
-        File file = new File(fileName);
         boolean result = file.renameTo(target);
         if (result) {
             LogLog.debug(fileName + " -> " + scheduledFilename);
@@ -232,22 +278,35 @@ public class DailyExRollingFileAppender extends FileAppender {
         }
         scheduledFilename = datedFilename;
 
-        /* Delete history files if more than maxBackupIndex */
-        if (file.getParentFile().exists() && this.getMaxBackupIndex() > 0) {
-
-            // get all history files.
-            File[] files = file.getParentFile().listFiles(new LogFileFilter(file.getName()));
+        rolledOver(file, target, result);
+    }
 
-            // soft by date asc.
-            Arrays.sort(files);
+    /**
+     * Deletes the history files in excess and compresses the renamed
+     * file, once closed.
+     *
+     * @param file   the log file
+     * @param target the renamed file
+     * @param result true if the file was renamed
+     */
+    void rolledOver(File file, File target, boolean result) {
 
-            // delete files if more than maxBackupIndex.
-            if (files.length > maxBackupIndex) {
-                for (int i = 0; i < files.length - maxBackupIndex; i++) {
-                    File dateFile = files[i];
-                    if (dateFile.exists()) {
-                        dateFile.delete();
-                    }
+        /* Delete history files if more than maxBackupIndex */
+        synchronized (history) {
+            if (result) {
+                File added = target.getAbsoluteFile();
+                if (history.isEmpty() || !history.getLast().equals(added)) {
+                    history.addLast(added);
+                }
+            }
+            while (this.getMaxBackupIndex() > 0 && history.size() > maxBackupIndex) {
+                File dateFile = (File) history.removeFirst();
+                if (dateFile.exists()) {
+                    dateFile.delete();
+                }
+                File compressed = new File(dateFile.getPath() + GZipUtils.EXT);
+                if (compressed.exists()) {
+                    compressed.delete();
                 }
             }
         }
@@ -255,7 +314,54 @@ public class DailyExRollingFileAppender extends FileAppender {
         /* Compress log file and delete source */
         if (this.getFileCompress() && result) {
 
-            threadPool.execute(new CompressThread(target));
+            CompressionExecutor.getInstance().compress(target);
+        }
+    }
+
+    /**
+     * Lists the history files of the log file once, sorted by name. A
+     * history file and its compressed form are a single entry, named
+     * without the compression extension, so that compressing it leaves
+     * the index unchanged.
+     *
+     * @param file the log file
+     */
+    void buildHistory(File file) {
+        File dir = file.getAbsoluteFile().getParentFile();
+        File[] files = (dir == null) ? null : dir.listFiles(new LogFileFilter(file.getName()));
+        TreeSet names = new TreeSet();
+        for (int i = 0; files != null && i < files.length; i++) {
+            String name = files[i].getName();
+            if (name.endsWith(GZipUtils.EXT)) {
+                name = name.substring(0, name.length() - GZipUtils.EXT.length());
+            }
+            if (!name.equals(file.getName())) {
+                names.add(name);
+            }
+        }
+        synchronized (history) {
+            history.clear();
+            for (Iterator i = names.iterator(); i.hasNext(); ) {
+                history.addLast(new File(dir, (String) i.next()));
+            }
+            LogLog.debug("Found " + history.size() + " history files of [" + fileName + "].");
+        }
+    }
+
+    /**
+     * Closes the appender once the pending rollovers are done.
+     *
+     * @since 1.3.6
+     */
+    public void close() {
+        super.close();
+        RolloverExecutor executor;
+        synchronized (this) {
+            executor = rolloverExecutor;
+            rolloverExecutor = null;
+        }
+        if (executor != null) {
+            executor.stop(!Thread.holdsLock(this));
         }
     }
 
@@ -294,12 +400,54 @@ public class DailyExRollingFileAppender extends FileAppender {
      */
     private boolean fileCompress;
 
+    /**
+     * @since 1.3.6
+     */
+    private boolean asyncRollover;
+
+    /**
+     * @since 1.3.6
+     */
+    private int rolloverQueueSize = 4;
+
+    /**
+     * Options of the shared compression executor, null if not set.
+     */
+    private Integer compressionPoolSize;
+    private Integer compressionQueueSize;
+    private Integer compressionBlockSize;
+    private Integer compressionBufferSize;
+    private Integer compressionLevel;
+
+    /**
+     * Background thread of the asynchronous rollovers, null if not started.
+     */
+    private RolloverExecutor rolloverExecutor;
+
+    /**
+     * History files, oldest first, named without the compression extension.
+     */
+    private final LinkedList history = new LinkedList();
+
     /**
      * The constant threadPool.
      *
      * @since 1.3.3
+     * @deprecated no longer used, files are compressed by the shared
+     * {@link CompressionExecutor}. The pool is only created once a task
+     * is executed.
      */
-    protected final static Executor threadPool = Executors.newFixedThreadPool(4, new CompressThreadFactory());
+    @Deprecated
+    protected final static Executor threadPool = new Executor() {
+        private Executor pool;
+
+        public synchronized void execute(Runnable command) {
+            if (pool == null) {
+                pool = Executors.newFixedThreadPool(4, new CompressThreadFactory());
+            }
+            pool.execute(command);
+        }
+    };
 
     /**
      * Gets max backup index.
@@ -319,6 +467,51 @@ public class DailyExRollingFileAppender extends FileAppender {
         this.maxBackupIndex = maxBackupIndex;
     }
 
+    /**
+     * Gets async rollover.
+     *
+     * @return the boolean
+     * @since 1.3.6
+     */
+    public boolean getAsyncRollover() {
+        return asyncRollover;
+    }
+
+    /**
+     * Sets async rollover. If true, the open file is renamed at rollover
+     * and the file is reopened right away. The renamed file is closed,
+     * the history files in excess are deleted and it is compressed by a
+     * background thread. The rollover is synchronous if the open file can
+     * not be renamed, as on Windows.
+     *
+     * @param asyncRollover the async rollover
+     * @since 1.3.6
+     */
+    public void setAsyncRollover(boolean asyncRollover) {
+        this.asyncRollover = asyncRollover;
+    }
+
+    /**
+     * Gets rollover queue size.
+     *
+     * @return the rollover queue size
+     * @since 1.3.6
+     */
+    public int getRolloverQueueSize() {
+        return rolloverQueueSize;
+    }
+
+    /**
+     * Sets the number of rollovers which may wait for the background
+     * thread, 4 by default. A rollover waits while that many are pending.
+     *
+     * @param rolloverQueueSize the rollover queue size
+     * @since 1.3.6
+     */
+    public void setRolloverQueueSize(int rolloverQueueSize) {
+        this.rolloverQueueSize = rolloverQueueSize;
+    }
+
     /**
      * Gets file compress.
      *
@@ -336,6 +529,121 @@ public class DailyExRollingFileAppender extends FileAppender {
     public void setFileCompress(boolean fileCompress) {
         this.fileCompress = fileCompress;
     }
+
+    /**
+     * Gets compression pool size.
+     *
+     * @return the compression pool size
+     * @since 1.3.6
+     */
+    public int getCompressionPoolSize() {
+        return (compressionPoolSize == null) ? CompressionExecutor.getInstance().getPoolSize() : compressionPoolSize.intValue();
+    }
+
+    /**
+     * Sets the number of threads compressing the history files, 2 by
+     * default. The threads are shared by all appenders, the files of a
+     * directory are compressed one at a time.
+     * <p>
+     * The compression options are those of the executor shared by all
+     * appenders, set when the options are activated. A warning is logged
+     * if another appender set an option to another value.
+     *
+     * @param compressionPoolSize the compression pool size
+     * @since 1.3.6
+     */
+    public void setCompressionPoolSize(int compressionPoolSize) {
+        this.compressionPoolSize = new Integer(compressionPoolSize);
+    }
+
+    /**
+     * Gets compression queue size.
+     *
+     * @return the compression queue size
+     * @since 1.3.6
+     */
+    public int getCompressionQueueSize() {
+        return (compressionQueueSize == null) ? CompressionExecutor.getInstance().getQueueSize() : compressionQueueSize.intValue();
+    }
+
+    /**
+     * Sets the number of history files of all appenders which may wait
+     * or be compressed, 64 by default. A file rolled over while that
+     * many are pending is left uncompressed. Shared by all appenders, see
+     * {@link #setCompressionPoolSize}.
+     *
+     * @param compressionQueueSize the compression queue size
+     * @since 1.3.6
+     */
+    public void setCompressionQueueSize(int compressionQueueSize) {
+        this.compressionQueueSize = new Integer(compressionQueueSize);
+    }
+
+    /**
+     * Gets compression block size.
+     *
+     * @return the compression block size
+     * @since 1.3.6
+     */
+    public int getCompressionBlockSize() {
+        return (compressionBlockSize == null) ? CompressionExecutor.getInstance().getBlockSize() : compressionBlockSize.intValue();
+    }
+
+    /**
+     * Sets the size of the blocks of a history file deflated
+     * concurrently, as a multi-member gzip file. Files are deflated by a
+     * single thread if zero, the default. Shared by all appenders, see
+     * {@link #setCompressionPoolSize}.
+     *
+     * @param compressionBlockSize the compression block size
+     * @since 1.3.6
+     */
+    public void setCompressionBlockSize(int compressionBlockSize) {
+        this.compressionBlockSize = new Integer(compressionBlockSize);
+    }
+
+    /**
+     * Gets compression buffer size.
+     *
+     * @return the compression buffer size
+     * @since 1.3.6
+     */
+    public int getCompressionBufferSize() {
+        return (compressionBufferSize == null) ? CompressionExecutor.getInstance().getBufferSize() : compressionBufferSize.intValue();
+    }
+
+    /**
+     * Sets the size of the buffers of the compressions, 4KB by default.
+     * Shared by all appenders, see {@link #setCompressionPoolSize}.
+     *
+     * @param compressionBufferSize the compression buffer size
+     * @since 1.3.6
+     */
+    public void setCompressionBufferSize(int compressionBufferSize) {
+        this.compressionBufferSize = new Integer(compressionBufferSize);
+    }
+
+    /**
+     * Gets compression level.
+     *
+     * @return the compression level
+     * @since 1.3.6
+     */
+    public int getCompressionLevel() {
+        return (compressionLevel == null) ? CompressionExecutor.getInstance().getLevel() : compressionLevel.intValue();
+    }
+
+    /**
+     * Sets the compression level of the history files, 0-9 or -1 for the
+     * default. Shared by all appenders, see
+     * {@link #setCompressionPoolSize}.
+     *
+     * @param compressionLevel the compression level
+     * @since 1.3.6
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = new Integer(compressionLevel);
+    }
 }
 
 /**
@@ -359,41 +667,12 @@ class LogFileFilter implements FileFilter {
         if (logName == null || file.isDirectory()) {
             return false;
         } else {
-            LogLog.debug(file.getName());
             return file.getName().startsWith(logName) &&
                     !file.getName().equals(logName);
         }
     }
 }
 
-/**
- * The type Compress thread.
- */
-class CompressThread implements Runnable {
-
-    private final File targetFile;
-
-    /**
-     * Instantiates a new Compress and clean thread.
-     *
-     * @param targetFile the target file
-     */
-    public CompressThread(File targetFile) {
-        this.targetFile = targetFile;
-    }
-
-    @Override
-    public void run() {
-
-        if (targetFile != null && targetFile.exists())
-            try {
-                GZipUtils.compress(targetFile, true);
-            } catch (IOException e) {
-                LogLog.error("Failed to compress [" + targetFile.getName() + "].", e);
-            }
-    }
-}
-
 /**
  * The type Compress thread factory.
  */
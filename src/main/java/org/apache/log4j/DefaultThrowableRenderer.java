@@ -20,10 +20,6 @@ import org.apache.log4j.spi.ThrowableRenderer;
 
 import java.io.StringWriter;
 import java.io.PrintWriter;
-import java.io.LineNumberReader;
-import java.io.StringReader;
-import java.io.IOException;
-import java.io.InterruptedIOException;
 import java.util.ArrayList;
 
 /**
@@ -33,6 +29,16 @@ import java.util.ArrayList;
  * @since 1.2.16
  */
 public final class DefaultThrowableRenderer implements ThrowableRenderer {
+    /**
+     * Writer of each thread, taken while in use.
+     */
+    private static final ThreadLocal WRITERS = new ThreadLocal();
+
+    /**
+     * Largest stack trace buffer kept between renderings.
+     */
+    private static final int MAX_TRACE_SIZE = 64 * 1024;
+
     /**
      * Construct new instance.
      */
@@ -54,30 +60,50 @@ public final class DefaultThrowableRenderer implements ThrowableRenderer {
      * @return string representation.
      */
     public static String[] render(final Throwable throwable) {
-        StringWriter sw = new StringWriter();
-        PrintWriter pw = new PrintWriter(sw);
+        TraceWriter writer = (TraceWriter) WRITERS.get();
+        if (writer == null) {
+            writer = new TraceWriter();
+        } else {
+            // a throwable printing a logged throwable gets its own writer
+            WRITERS.set(null);
+        }
+        StringBuffer trace = writer.buffer.getBuffer();
+        trace.setLength(0);
         try {
-            throwable.printStackTrace(pw);
+            throwable.printStackTrace(writer.printer);
         } catch(RuntimeException ex) {
         }
-        pw.flush();
-        LineNumberReader reader = new LineNumberReader(
-                new StringReader(sw.toString()));
+        writer.printer.flush();
+        // the line terminators of LineNumberReader
         ArrayList lines = new ArrayList();
-        try {
-          String line = reader.readLine();
-          while(line != null) {
-            lines.add(line);
-            line = reader.readLine();
-          }
-        } catch(IOException ex) {
-            if (ex instanceof InterruptedIOException) {
-                Thread.currentThread().interrupt();
+        int start = 0;
+        int length = trace.length();
+        for (int i = 0; i < length; i++) {
+            char c = trace.charAt(i);
+            if (c == '\n' || c == '\r') {
+                lines.add(trace.substring(start, i));
+                if (c == '\r' && i + 1 < length && trace.charAt(i + 1) == '\n') {
+                    i++;
+                }
+                start = i + 1;
             }
-            lines.add(ex.toString());
+        }
+        if (start < length) {
+            lines.add(trace.substring(start, length));
+        }
+        if (trace.capacity() <= MAX_TRACE_SIZE) {
+            WRITERS.set(writer);
         }
         String[] tempRep = new String[lines.size()];
         lines.toArray(tempRep);
         return tempRep;
     }
+
+    /**
+     * Writer the stack traces are printed to, reused by a thread.
+     */
+    private static final class TraceWriter {
+        final StringWriter buffer = new StringWriter();
+        final PrintWriter printer = new PrintWriter(buffer);
+    }
 }
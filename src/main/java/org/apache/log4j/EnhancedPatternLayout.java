@@ -452,6 +452,12 @@ public class EnhancedPatternLayout extends Layout {
     */
   private PatternConverter head;
 
+  /**
+   * Buffer of each thread for {@link #format(LoggingEvent, StringBuilder)},
+   * taken while in use.
+   */
+  private static final ThreadLocal BUFFERS = new ThreadLocal();
+
   /**
    * Conversion pattern.
    */
@@ -548,6 +554,34 @@ public class EnhancedPatternLayout extends Layout {
       return buf.toString();
   }
 
+  /**
+   * Appends the formatted logging event to a buffer. The converters
+   * write to a buffer of the calling thread which is then appended,
+   * no string is created.
+   * @param event logging event to be formatted.
+   * @param buf buffer.
+   * @since 1.3.6
+   */
+  public void format(final LoggingEvent event, final StringBuilder buf) {
+      StringBuffer sbuf = (StringBuffer) BUFFERS.get();
+      if (sbuf == null) {
+          sbuf = new StringBuffer();
+      } else {
+          // a message logging while rendered gets its own buffer
+          BUFFERS.set(null);
+          sbuf.setLength(0);
+      }
+      for(PatternConverter c = head;
+          c != null;
+          c = c.next) {
+          c.format(sbuf, event);
+      }
+      buf.append(sbuf);
+      if (sbuf.capacity() <= 1024) {
+          BUFFERS.set(sbuf);
+      }
+  }
+
   /**
    * Will return false if any of the conversion specifiers in the pattern
    * handles {@link Exception Exceptions}.
@@ -556,4 +590,16 @@ public class EnhancedPatternLayout extends Layout {
   public boolean ignoresThrowable() {
     return !handlesExceptions;
   }
+
+  /**
+   * The converters of the EnhancedPatternLayout are thread safe and a new
+   * buffer is used by each call to format. Subclasses may create converters
+   * which are not, so this method only returns true for the
+   * EnhancedPatternLayout itself, subclasses may override it.
+   * @return true if this is not a subclass.
+   * @since 1.3.6
+   */
+  public boolean isThreadSafe() {
+    return getClass() == EnhancedPatternLayout.class;
+  }
 }
@@ -21,13 +21,24 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.io.Writer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 
+import org.apache.log4j.helpers.FileChannelWriter;
 import org.apache.log4j.helpers.LogLog;
+import org.apache.log4j.helpers.MappedFileWriter;
+import org.apache.log4j.helpers.OptionConverter;
 import org.apache.log4j.helpers.QuietWriter;
 import org.apache.log4j.spi.ErrorCode;
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.RetainingAppender;
 
 // Contibutors: Jens Uwe Pipka <jens.pipka@gmx.de>
 //              Ben Sandee
@@ -39,9 +50,44 @@ import org.apache.log4j.spi.ErrorCode;
  *  has been deprecated and then removed. See the replacement
  *  solutions: {@link WriterAppender} and {@link ConsoleAppender}.
  *
+ *  <p>With the <b>GroupCommit</b> option, threads logging concurrently
+ *  format their events in parallel and queue them, and a single thread
+ *  writes all the queued events and flushes the file once, see {@link
+ *  #setGroupCommit}.
+ *
+ *  <p>With the <b>SyncInterval</b> or <b>SyncSize</b> options, a
+ *  background thread forces the file to the storage device
+ *  periodically, see {@link #setSyncInterval}.
+ *
  * @author Ceki G&uuml;lc&uuml; 
  * */
-public class FileAppender extends WriterAppender {
+public class FileAppender extends WriterAppender implements RetainingAppender {
+
+  /**
+     Group commit durability: return once the event is queued.
+
+     @since 1.3.6 */
+  public static final int DURABILITY_ENQUEUED = 0;
+
+  /**
+     Group commit durability: return once the event is written and the
+     file flushed.
+
+     @since 1.3.6 */
+  public static final int DURABILITY_WRITTEN = 1;
+
+  /**
+     Group commit durability: return once the event is written and the
+     file forced to the storage device.
+
+     @since 1.3.6 */
+  public static final int DURABILITY_FORCED = 2;
+
+  private static final String[] DURABILITIES =
+    new String[] { "ENQUEUED", "WRITTEN", "FORCED" };
+
+  /** Number of queued events from which callers wait in group commit. */
+  private static final int MAX_PENDING = 1024;
 
   /** Controls file truncatation. The default value for this variable
    * is <code>true</code>, meaning that by default a
@@ -66,6 +112,95 @@ public class FileAppender extends WriterAppender {
    */
   protected int bufferSize = 8*1024;
 
+  /**
+     Do we write through a {@link java.nio.channels.FileChannel}?
+
+     @since 1.3.6 */
+  protected boolean channelIO = false;
+
+  /**
+     Do we write through memory-mapped regions of the file?
+
+     @since 1.3.6 */
+  protected boolean mappedIO = false;
+
+  /**
+     Size of the memory-mapped regions, 32MB by default.
+
+     @since 1.3.6 */
+  protected long mappedRegionSize = MappedFileWriter.DEFAULT_REGION_SIZE;
+
+  /**
+     Do threads commit their events in groups?
+
+     @since 1.3.6 */
+  protected boolean groupCommit = false;
+
+  /**
+     Durability of the events when <code>append</code> returns in group
+     commit mode, one of the <code>DURABILITY</code> constants.
+
+     @since 1.3.6 */
+  protected int durability = DURABILITY_WRITTEN;
+
+  /**
+     Interval in milliseconds between the forces of the file by the
+     background thread, zero or less to disable.
+
+     @since 1.3.6 */
+  protected long syncInterval = 0;
+
+  /**
+     Number of bytes written since the last force of the file from
+     which the background thread forces it, zero or less to disable.
+
+     @since 1.3.6 */
+  protected long syncThreshold = 0;
+
+  /** Background thread forcing the file, null if not started. */
+  private Thread syncThread;
+
+  /** Guards the requests to the background thread. */
+  private final Object syncLock = new Object();
+  private boolean syncRequested;
+  private boolean syncStopped;
+
+  /** Offset in the file up to which it was last forced. */
+  private volatile long syncedOffset;
+
+  /** Number of files opened, to ignore forces of the previous file. */
+  private volatile long fileCount;
+
+  private volatile long syncCount;
+  private volatile long lastSyncNanos;
+  private volatile long maxSyncNanos;
+  private volatile long totalSyncNanos;
+
+  /** Writer and channel of the file, to force it. */
+  private Writer fileWriter;
+  private FileChannel fileChannel;
+
+  /**
+     Stream counting the bytes handed to the file when it is not
+     written through a {@link FileChannelWriter} and <b>SyncSize</b>
+     is set, null otherwise.
+  */
+  private CountingOutputStream fileStream;
+
+  /** Guards the group commit state. */
+  private final Object commitLock = new Object();
+
+  /** Events queued, and events being written by the committing thread. */
+  private CommitQueue pending = new CommitQueue();
+  private CommitQueue spare = new CommitQueue();
+
+  /** Number of events queued and committed since creation. */
+  private long enqueued;
+  private long committed;
+
+  /** Set while a thread writes the queued events. */
+  private boolean committing;
+
 
   /**
      The default constructor does not do anything.
@@ -168,6 +303,9 @@ public class FileAppender extends WriterAppender {
 	errorHandler.error("setFile("+fileName+","+fileAppend+") call failed.",
 			   e, ErrorCode.FILE_OPEN_FAILURE);
       }
+      if(isSyncing()) {
+	startSyncThread();
+      }
     } else {
       //LogLog.error("File option not set for appender ["+name+"].");
       LogLog.warn("File option not set for appender ["+name+"].");
@@ -181,6 +319,9 @@ public class FileAppender extends WriterAppender {
   protected
   void closeFile() {
     if(this.qw != null) {
+      if(isSyncing()) {
+	sync();
+      }
       try {
 	this.qw.close();
       }
@@ -208,6 +349,115 @@ public class FileAppender extends WriterAppender {
   }
 
 
+  /**
+     Get the value of the <b>ChannelIO</b> option.
+
+     @since 1.3.6 */
+  public
+  boolean getChannelIO() {
+    return this.channelIO;
+  }
+
+  /**
+     Get the value of the <b>MappedIO</b> option.
+
+     @since 1.3.6 */
+  public
+  boolean getMappedIO() {
+    return this.mappedIO;
+  }
+
+  /**
+     Get the size of the memory-mapped regions.
+
+     @since 1.3.6 */
+  public
+  long getMappedRegionSize() {
+    return this.mappedRegionSize;
+  }
+
+  /**
+     Get the value of the <b>GroupCommit</b> option.
+
+     @since 1.3.6 */
+  public
+  boolean getGroupCommit() {
+    return this.groupCommit;
+  }
+
+  /**
+     Get the value of the <b>SyncInterval</b> option.
+
+     @since 1.3.6 */
+  public
+  long getSyncInterval() {
+    return this.syncInterval;
+  }
+
+  /**
+     Get the number of bytes written from which the file is forced.
+
+     @since 1.3.6 */
+  public
+  long getSyncThreshold() {
+    return this.syncThreshold;
+  }
+
+  /**
+     Get the offset in the current file up to which it was last forced
+     to the storage device. It is reset to zero when a file is opened.
+
+     @since 1.3.6 */
+  public
+  long getSyncedOffset() {
+    return syncedOffset;
+  }
+
+  /**
+     Get the number of forces of the file.
+
+     @since 1.3.6 */
+  public
+  long getSyncCount() {
+    return syncCount;
+  }
+
+  /**
+     Get the duration in nanoseconds of the last force of the file.
+
+     @since 1.3.6 */
+  public
+  long getLastSyncNanos() {
+    return lastSyncNanos;
+  }
+
+  /**
+     Get the duration in nanoseconds of the longest force of the file.
+
+     @since 1.3.6 */
+  public
+  long getMaxSyncNanos() {
+    return maxSyncNanos;
+  }
+
+  /**
+     Get the total duration in nanoseconds of the forces of the file.
+
+     @since 1.3.6 */
+  public
+  long getTotalSyncNanos() {
+    return totalSyncNanos;
+  }
+
+  /**
+     Get the value of the <b>Durability</b> option.
+
+     @since 1.3.6 */
+  public
+  String getDurability() {
+    return DURABILITIES[durability];
+  }
+
   /**
      Get the size of the IO buffer.
   */
@@ -252,6 +502,164 @@ public class FileAppender extends WriterAppender {
   }
 
 
+  /**
+     The <b>ChannelIO</b> option takes a boolean value. It is set to
+     <code>false</code> by default. If true, then <code>File</code> will
+     be written through a {@link FileChannelWriter} which encodes the
+     output into a reused direct buffer of <b>BufferSize</b> bytes and
+     hands it to the file channel, rather than through a chain of
+     writers. The <b>BufferedIO</b> option is then irrelevant, the
+     buffer is written when full or flushed.
+
+     <p>Note: Actual opening of the file is made when {@link
+     #activateOptions} is called, not when the options are set.
+
+     @since 1.3.6 */
+  public
+  void setChannelIO(boolean channelIO) {
+    this.channelIO = channelIO;
+  }
+
+  /**
+     The <b>MappedIO</b> option takes a boolean value. It is set to
+     <code>false</code> by default. If true, then <code>File</code> will
+     be written through a {@link MappedFileWriter}, which encodes the
+     output directly into memory-mapped regions of <b>MapRegionSize</b>
+     bytes and leaves the writing back to the operating system. Flushing
+     then does nothing and the file is truncated to its actual length
+     when closed or rolled over. This option takes precedence over the
+     <b>ChannelIO</b> and <b>BufferedIO</b> options.
+
+     <p>Note: Actual opening of the file is made when {@link
+     #activateOptions} is called, not when the options are set.
+
+     @since 1.3.6 */
+  public
+  void setMappedIO(boolean mappedIO) {
+    this.mappedIO = mappedIO;
+  }
+
+  /**
+     Set the size of the memory-mapped regions, at most 2GB.
+
+     <p>This method is equivalent to {@link #setMapRegionSize} except
+     that it is required for differentiating the setter taking a
+     <code>long</code> argument from the setter taking a
+     <code>String</code> argument by the JavaBeans {@link
+     java.beans.Introspector Introspector}.
+
+     @since 1.3.6 */
+  public
+  void setMappedRegionSize(long mappedRegionSize) {
+    this.mappedRegionSize = mappedRegionSize;
+  }
+
+  /**
+     Set the size of the memory-mapped regions. The <b>MapRegionSize</b>
+     option takes a value with the suffixes "KB", "MB" or "GB" as the
+     <b>MaxFileSize</b> option of {@link RollingFileAppender}.
+
+     @since 1.3.6 */
+  public
+  void setMapRegionSize(String value) {
+    mappedRegionSize = OptionConverter.toFileSize(value, mappedRegionSize);
+  }
+
+  /**
+     The <b>GroupCommit</b> option takes a boolean value. It is set to
+     <code>false</code> by default. If true, the events are formatted
+     without the lock of the appender, if the layout is thread safe,
+     and queued. The first thread finding no other thread committing
+     writes every queued event, flushes the file once and wakes the
+     threads waiting for their events, until the queue is empty. The
+     <b>Durability</b> option tells when <code>append</code> returns.
+
+     <p>This option and the <b>Durability</b> option must be set before
+     the appender is attached to a logger.
+
+     @since 1.3.6 */
+  public
+  void setGroupCommit(boolean groupCommit) {
+    this.groupCommit = groupCommit;
+  }
+
+  /**
+     The <b>SyncInterval</b> option takes a number of milliseconds. If
+     positive, a background thread forces the file to the storage
+     device at that interval, if anything was written since the last
+     force. The appender lock is only held to flush the file, except
+     with the <b>MappedIO</b> option. The file is also forced when
+     closed or rolled over. It is disabled by default.
+
+     <p>Note: The background thread is started when {@link
+     #activateOptions} is called.
+
+     @since 1.3.6 */
+  public
+  void setSyncInterval(long syncInterval) {
+    this.syncInterval = syncInterval;
+  }
+
+  /**
+     Set the number of bytes written since the last force from which
+     the background thread forces the file.
+
+     <p>This method is equivalent to {@link #setSyncSize} except that
+     it is required for differentiating the setter taking a
+     <code>long</code> argument from the setter taking a
+     <code>String</code> argument by the JavaBeans {@link
+     java.beans.Introspector Introspector}.
+
+     @since 1.3.6 */
+  public
+  void setSyncThreshold(long syncThreshold) {
+    this.syncThreshold = syncThreshold;
+  }
+
+  /**
+     The <b>SyncSize</b> option takes a value with the suffixes "KB",
+     "MB" or "GB" as the <b>MaxFileSize</b> option of {@link
+     RollingFileAppender}. If positive, the background thread of
+     <b>SyncInterval</b> also forces the file once that many bytes have
+     been written since the last force. It is disabled by default.
+
+     @since 1.3.6 */
+  public
+  void setSyncSize(String value) {
+    syncThreshold = OptionConverter.toFileSize(value, syncThreshold);
+  }
+
+  /**
+     The <b>Durability</b> option takes one of the values "ENQUEUED",
+     "WRITTEN" and "FORCED", and is "WRITTEN" by default. In group commit
+     mode, <code>append</code> returns once the event is respectively
+     queued, written with the file flushed, or written with the file
+     forced to the storage device by {@link #forceFile}. Queued events
+     are written with the flush policy of {@link WriterAppender}.
+
+     @since 1.3.6 */
+  public
+  void setDurability(String value) {
+    for(int i = 0; i < DURABILITIES.length; i++) {
+      if(DURABILITIES[i].equalsIgnoreCase(value.trim())) {
+        durability = i;
+        return;
+      }
+    }
+    LogLog.warn("Unknown durability ["+value+"] for appender ["+name+"].");
+  }
+
+  /**
+     Returns true if the events are queued in group commit mode with
+     the "ENQUEUED" durability, as they are then written once
+     <code>append</code> returned.
+
+     @since 1.3.6 */
+  public
+  boolean retainsEvents() {
+    return groupCommit && durability == DURABILITY_ENQUEUED;
+  }
+
   /**
      Set the size of the IO buffer.
   */
@@ -310,9 +718,31 @@ public class FileAppender extends WriterAppender {
              throw ex;
           }
     }
-    Writer fw = createWriter(ostream);
-    if(bufferedIO) {
-      fw = new BufferedWriter(fw, bufferSize);
+    Writer fw;
+    if(mappedIO) {
+      // the channel of the stream can not be mapped for writing
+      ostream.close();
+      fw = createMappedWriter(fileName);
+    } else if(channelIO) {
+      fw = createChannelWriter(ostream);
+      fileChannel = ostream.getChannel();
+    } else {
+      OutputStream os = ostream;
+      if(syncThreshold > 0) {
+        fileStream = new CountingOutputStream(ostream,
+                                              ostream.getChannel().position());
+        os = fileStream;
+      }
+      fw = createWriter(os);
+      if(bufferedIO) {
+	fw = new BufferedWriter(fw, bufferSize);
+      }
+      fileChannel = ostream.getChannel();
+    }
+    fileWriter = fw;
+    synchronized(syncLock) {
+      fileCount++;
+      syncedOffset = 0;
     }
     this.setQWForFiles(fw);
     this.fileName = fileName;
@@ -324,6 +754,455 @@ public class FileAppender extends WriterAppender {
   }
 
 
+  /**
+     Returns a {@link FileChannelWriter} writing to the channel of
+     <code>ostream</code>. The charset depends on the value of the
+     <code>encoding</code> property, the system's default charset is
+     used if it is not set or not supported.
+
+     @since 1.3.6 */
+  protected
+  Writer createChannelWriter(FileOutputStream ostream) throws IOException {
+    try {
+      return new FileChannelWriter(ostream.getChannel(), getCharset(),
+				   bufferSize);
+    } catch(IOException e) {
+      ostream.close();
+      throw e;
+    }
+  }
+
+  /**
+     Returns a {@link MappedFileWriter} appending to
+     <code>fileName</code>, with the same charset as {@link
+     #createChannelWriter}.
+
+     @since 1.3.6 */
+  protected
+  Writer createMappedWriter(String fileName) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(fileName, "rw");
+    try {
+      return new MappedFileWriter(raf.getChannel(), getCharset(),
+				  mappedRegionSize);
+    } catch(IOException e) {
+      raf.close();
+      throw e;
+    } catch(IllegalArgumentException e) {
+      raf.close();
+      throw new IOException("Invalid MapRegionSize: " + mappedRegionSize, e);
+    }
+  }
+
+  /**
+     Returns the charset of the <code>encoding</code> property, or the
+     system's default charset if it is not set or not supported.
+   */
+  private
+  Charset getCharset() {
+    String enc = getEncoding();
+    if(enc != null) {
+      try {
+	return Charset.forName(enc);
+      } catch(IllegalArgumentException e) {
+	LogLog.warn("Error initializing output writer.");
+	LogLog.warn("Unsupported encoding?");
+      }
+    }
+    return Charset.defaultCharset();
+  }
+
+  /**
+     Flush the file and force its content to the storage device. This
+     method must be called with the lock held.
+
+     @since 1.3.6 */
+  protected
+  void forceFile() throws IOException {
+    if(this.qw == null) {
+      return;
+    }
+    this.qw.flush();
+    if(fileWriter instanceof FileChannelWriter) {
+      ((FileChannelWriter) fileWriter).force(false);
+    } else if(fileChannel != null) {
+      fileChannel.force(false);
+    }
+  }
+
+  /**
+     Open the file again without closing the current one, which the
+     caller renamed. Returns a task flushing and closing the renamed
+     file, forcing it first if the file is forced by the background
+     thread, which may be run by another thread. This method must be
+     called with the lock held.
+
+     <p>The renamed file is closed before returning if the file can not
+     be opened.
+
+     @since 1.3.6 */
+  protected
+  Runnable reopenFile(boolean append) throws IOException {
+    final QuietWriter previous = this.qw;
+    final Writer previousWriter = fileWriter;
+    final FileChannel previousChannel = fileChannel;
+    final boolean sync = isSyncing();
+    final String previousName = fileName;
+    Runnable closer = new Runnable() {
+      public void run() {
+        if(previous == null) {
+          return;
+        }
+        try {
+          previous.flush();
+          if(sync) {
+            if(previousWriter instanceof FileChannelWriter) {
+              ((FileChannelWriter) previousWriter).force(false);
+            } else if(previousChannel != null) {
+              previousChannel.force(false);
+            }
+          }
+        } catch(IOException e) {
+          LogLog.error("Could not force previous " + previousName, e);
+        }
+        try {
+          previous.close();
+        } catch(IOException e) {
+          if (e instanceof InterruptedIOException) {
+            Thread.currentThread().interrupt();
+          }
+          LogLog.error("Could not close previous " + previousName, e);
+        }
+      }
+    };
+    // keep the current file open through the reset of setFile
+    this.qw = null;
+    try {
+      setFile(previousName, append, bufferedIO, bufferSize);
+    } catch(IOException e) {
+      closer.run();
+      throw e;
+    }
+    return closer;
+  }
+
+  /**
+     Return true if the file is forced by the background thread.
+   */
+  private
+  boolean isSyncing() {
+    return syncInterval > 0 || syncThreshold > 0;
+  }
+
+  /**
+     Write the event and request a force of the file from the
+     background thread if <b>SyncSize</b> bytes were written since the
+     last force.
+
+     @since 1.3.6 */
+  protected
+  void subAppend(LoggingEvent event) {
+    super.subAppend(event);
+    if(syncThreshold > 0 && syncThread != null && this.qw != null) {
+      try {
+        if(getFileOffset() - syncedOffset >= syncThreshold) {
+          synchronized(syncLock) {
+            if(!syncRequested) {
+              syncRequested = true;
+              syncLock.notifyAll();
+            }
+          }
+        }
+      } catch(IOException e) {
+        // the file is forced at the next interval
+      }
+    }
+  }
+
+  /**
+     Get the offset in the file following the bytes handed to the
+     operating system, with the lock held. The offset is tracked by the
+     writer or the counting stream, the channel is only queried if
+     neither counts it.
+   */
+  private
+  long getFileOffset() throws IOException {
+    if(fileWriter instanceof FileChannelWriter) {
+      return ((FileChannelWriter) fileWriter).getCount();
+    }
+    if(fileStream != null) {
+      return fileStream.count;
+    }
+    return (fileChannel == null) ? 0 : fileChannel.position();
+  }
+
+  private
+  synchronized
+  void startSyncThread() {
+    if(syncThread != null) {
+      return;
+    }
+    synchronized(syncLock) {
+      syncStopped = false;
+    }
+    syncThread = new Thread(new Syncer(), "FileAppender-Sync-" + name);
+    syncThread.setDaemon(true);
+    syncThread.start();
+  }
+
+  /**
+     Stop the background thread and wait for its last force, unless
+     called with the lock held.
+   */
+  private
+  void stopSyncThread() {
+    Thread thread;
+    synchronized(this) {
+      thread = syncThread;
+      syncThread = null;
+    }
+    if(thread == null) {
+      return;
+    }
+    synchronized(syncLock) {
+      syncStopped = true;
+      syncLock.notifyAll();
+    }
+    // interrupting a thread in FileChannel.force would close the channel
+    if(!Thread.holdsLock(this)) {
+      try {
+        thread.join();
+      } catch(InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+     Flush the file and force it to the storage device if written to
+     since the last force, recording the duration of the force. Only
+     the flush is done with the lock held, unless the file is mapped.
+   */
+  private
+  void sync() {
+    FileChannel channel;
+    long offset;
+    long start;
+    long file;
+    synchronized(this) {
+      file = fileCount;
+      if(this.qw == null) {
+        return;
+      }
+      try {
+        this.qw.flush();
+        offset = getFileOffset();
+        if(offset == syncedOffset) {
+          return;
+        }
+        start = System.nanoTime();
+        if(!(fileWriter instanceof MappedFileWriter)) {
+          channel = fileChannel;
+        } else {
+          forceFile();
+          synced(file, offset, start);
+          return;
+        }
+      } catch(IOException e) {
+        syncFailed(e);
+        return;
+      }
+    }
+    if(channel == null) {
+      return;
+    }
+    try {
+      channel.force(false);
+      synced(file, offset, start);
+    } catch(ClosedChannelException e) {
+      // rolled over or closed, the file was forced then
+    } catch(IOException e) {
+      syncFailed(e);
+    }
+  }
+
+  private
+  void synced(long file, long offset, long start) {
+    long nanos = System.nanoTime() - start;
+    synchronized(syncLock) {
+      // a force of the previous file may end after the file changed
+      if(file == fileCount && offset > syncedOffset) {
+        syncedOffset = offset;
+      }
+      syncCount++;
+      lastSyncNanos = nanos;
+      totalSyncNanos += nanos;
+      if(nanos > maxSyncNanos) {
+        maxSyncNanos = nanos;
+      }
+    }
+  }
+
+  private
+  void syncFailed(IOException e) {
+    if (e instanceof InterruptedIOException) {
+      Thread.currentThread().interrupt();
+    }
+    errorHandler.error("Could not force file ["+fileName+"].", e,
+                       ErrorCode.FLUSH_FAILURE);
+  }
+
+  /**
+     Queue the event in group commit mode, see {@link #setGroupCommit},
+     or append it as {@link WriterAppender#append} otherwise.
+
+     @since 1.3.6 */
+  public
+  void append(LoggingEvent event) {
+    if(!groupCommit) {
+      super.append(event);
+      return;
+    }
+
+    Layout l = this.layout;
+    String s = null;
+    if(l != null && l.isThreadSafe() && !this.closed) {
+      s = l.format(event);
+    } else {
+      // the event may be formatted by another thread
+      event.getNDC();
+      event.getThreadName();
+      event.getMDCCopy();
+      event.getRenderedMessage();
+    }
+
+    synchronized(commitLock) {
+      try {
+        while(committing && pending.count >= MAX_PENDING) {
+          commitLock.wait();
+        }
+      } catch(InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      pending.add(event, s, l);
+      long ticket = ++enqueued;
+      try {
+        while(committing) {
+          if(durability == DURABILITY_ENQUEUED || committed >= ticket) {
+            return;
+          }
+          commitLock.wait();
+        }
+      } catch(InterruptedException e) {
+        // the committing thread writes the event
+        Thread.currentThread().interrupt();
+        return;
+      }
+      if(committed >= ticket) {
+        return;
+      }
+      committing = true;
+    }
+    commit();
+  }
+
+  /**
+     Write the queued events until the queue is empty, as the
+     committing thread.
+   */
+  private
+  void commit() {
+    CommitQueue batch;
+    long end;
+    synchronized(commitLock) {
+      batch = swap();
+      end = enqueued;
+    }
+    while(batch != null) {
+      boolean written = false;
+      try {
+        write(batch);
+        written = true;
+      } finally {
+        batch.clear();
+        synchronized(commitLock) {
+          committed = end;
+          if(written && pending.count > 0) {
+            batch = swap();
+            end = enqueued;
+          } else {
+            batch = null;
+            committing = false;
+          }
+          commitLock.notifyAll();
+        }
+      }
+    }
+  }
+
+  /**
+     Take the queued events, with the commit lock held.
+   */
+  private
+  CommitQueue swap() {
+    CommitQueue batch = pending;
+    pending = spare;
+    spare = batch;
+    return batch;
+  }
+
+  /**
+     Write a batch of queued events with a single acquisition of the
+     lock and make them as durable as requested.
+   */
+  private
+  synchronized
+  void write(CommitQueue batch) {
+    Layout l = this.layout;
+    for(int i = 0; i < batch.count; i++) {
+      if(batch.layouts[i] != l) {
+        // the layout changed since the event was formatted
+        batch.strings[i] = null;
+      }
+    }
+    subAppend(batch.events, batch.strings, l, batch.count,
+              durability != DURABILITY_ENQUEUED);
+    if(durability == DURABILITY_FORCED && this.qw != null) {
+      try {
+        forceFile();
+      } catch(IOException e) {
+        if (e instanceof InterruptedIOException) {
+          Thread.currentThread().interrupt();
+        }
+        errorHandler.error("Could not force file ["+fileName+"].", e,
+                           ErrorCode.FLUSH_FAILURE);
+      }
+    }
+  }
+
+  /**
+     Wait until the queued events are written, stop the background
+     thread forcing the file and close the appender.
+
+     @since 1.3.6 */
+  public
+  void close() {
+    // the committing thread may close the appender, for instance
+    // when a rollover fails
+    if(groupCommit && !Thread.holdsLock(this)) {
+      synchronized(commitLock) {
+        try {
+          while(committing) {
+            commitLock.wait();
+          }
+        } catch(InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+    stopSyncThread();
+    super.close();
+  }
+
   /**
      Sets the quiet writer being used.
 
@@ -342,7 +1221,99 @@ public class FileAppender extends WriterAppender {
   void reset() {
     closeFile();
     this.fileName = null;
+    fileWriter = null;
+    fileChannel = null;
+    fileStream = null;
     super.reset();
   }
+
+  /**
+     Forces the file at the <b>SyncInterval</b> and when requested
+     because <b>SyncSize</b> bytes were written.
+   */
+  private final class Syncer implements Runnable {
+    public
+    void run() {
+      while(true) {
+        synchronized(syncLock) {
+          try {
+            if(!syncRequested && !syncStopped) {
+              syncLock.wait((syncInterval > 0) ? syncInterval : 0);
+            }
+          } catch(InterruptedException e) {
+            return;
+          }
+          if(syncStopped) {
+            return;
+          }
+          syncRequested = false;
+        }
+        sync();
+      }
+    }
+  }
+
+  /**
+     Counts the bytes written to the file, from its offset when opened.
+     Only accessed with the lock held.
+   */
+  private static final class CountingOutputStream extends FilterOutputStream {
+    long count;
+
+    CountingOutputStream(OutputStream out, long offset) {
+      super(out);
+      count = offset;
+    }
+
+    public
+    void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    public
+    void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      count += len;
+    }
+  }
+
+  /**
+     Events queued in group commit mode, with their formatted form and
+     the layout which formatted them.
+   */
+  private static final class CommitQueue {
+    LoggingEvent[] events = new LoggingEvent[16];
+    String[] strings = new String[16];
+    Layout[] layouts = new Layout[16];
+    int count;
+
+    void add(LoggingEvent event, String s, Layout l) {
+      if(count == events.length) {
+        LoggingEvent[] e = new LoggingEvent[count * 2];
+        String[] ss = new String[count * 2];
+        Layout[] ls = new Layout[count * 2];
+        System.arraycopy(events, 0, e, 0, count);
+        System.arraycopy(strings, 0, ss, 0, count);
+        System.arraycopy(layouts, 0, ls, 0, count);
+        events = e;
+        strings = ss;
+        layouts = ls;
+      }
+      events[count] = event;
+      strings[count] = s;
+      layouts[count] = l;
+      count++;
+    }
+
+    void clear() {
+      for(int i = 0; i < count; i++) {
+        events[i] = null;
+        strings[i] = null;
+        layouts[i] = null;
+      }
+      count = 0;
+    }
+  }
 }
 
@@ -39,7 +39,7 @@ public class HTMLLayout extends Layout {
   static String TRACE_PREFIX = "<br>&nbsp;&nbsp;&nbsp;&nbsp;";
 
   // output buffer appended to when format() is invoked
-  private StringBuffer sbuf = new StringBuffer(BUF_SIZE);
+  private StringBuilder sbuf = new StringBuilder(BUF_SIZE);
 
   /**
      A string constant used in naming the option for setting the the
@@ -129,15 +129,25 @@ public class HTMLLayout extends Layout {
   String format(LoggingEvent event) {
 
     if(sbuf.capacity() > MAX_CAPACITY) {
-      sbuf = new StringBuffer(BUF_SIZE);
+      sbuf = new StringBuilder(BUF_SIZE);
     } else {
       sbuf.setLength(0);
     }
 
+    format(event, sbuf);
+    return sbuf.toString();
+  }
+
+  /**
+     Appends the table rows of the event to <code>sbuf</code>.
+
+     @since 1.3.6 */
+  public
+  void format(LoggingEvent event, StringBuilder sbuf) {
     sbuf.append(Layout.LINE_SEP + "<tr>" + Layout.LINE_SEP);
 
     sbuf.append("<td>");
-    sbuf.append(event.timeStamp - LoggingEvent.getStartTime());
+    sbuf.append(event.getTimeStamp() - LoggingEvent.getStartTime());
     sbuf.append("</td>" + Layout.LINE_SEP);
 
     String escapedThread = Transform.escapeTags(event.getThreadName());
@@ -191,11 +201,9 @@ public class HTMLLayout extends Layout {
       appendThrowableAsHTML(s, sbuf);
       sbuf.append("</td></tr>" + Layout.LINE_SEP);
     }
-
-    return sbuf.toString();
   }
 
-  void appendThrowableAsHTML(String[] s, StringBuffer sbuf) {
+  void appendThrowableAsHTML(String[] s, StringBuilder sbuf) {
     if(s != null) {
       int len = s.length;
       if(len == 0)
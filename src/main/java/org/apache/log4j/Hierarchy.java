@@ -27,9 +27,11 @@
 
 package org.apache.log4j;
 
-import java.util.Hashtable;
 import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.log4j.spi.LoggerFactory;
 import org.apache.log4j.spi.HierarchyEventListener;
@@ -41,6 +43,8 @@ import org.apache.log4j.helpers.LogLog;
 import org.apache.log4j.helpers.ShutdownEventListener;
 import org.apache.log4j.spi.ThrowableRendererSupport;
 import org.apache.log4j.spi.ThrowableRenderer;
+import org.apache.log4j.spi.RetainingAppender;
+import org.apache.log4j.spi.ReusableLoggingEvent;
 
 /**
  * This class is specialized in retrieving loggers by name and also maintaining
@@ -71,13 +75,47 @@ public class Hierarchy implements LoggerRepository, RendererSupport,
 	private Vector listeners;
 	private Vector shutdownListeners;
 
-	Hashtable ht;
+	/**
+	 * Loggers and provision nodes keyed by name. Lookups of existing loggers
+	 * do not lock, insertions are made while synchronized on the map.
+	 */
+	ConcurrentHashMap ht;
 	Logger root;
 	RendererMap rendererMap;
 
 	int thresholdInt;
 	Level threshold;
 
+	/**
+	 * Generation of the levels in this hierarchy. It is incremented each time
+	 * the level of a logger or the threshold changes, which invalidates the
+	 * enabled level cached by each logger.
+	 */
+	volatile int levelGeneration = 1;
+
+	/**
+	 * Generation of the appenders in this hierarchy. It is incremented each
+	 * time appenders, additivity or parent links change, which invalidates
+	 * the appender chain cached by each logger.
+	 */
+	volatile int appenderGeneration;
+
+	/**
+	 * Are logging requests dispatched as reusable events? See
+	 * {@link #setReusableEvents}.
+	 */
+	volatile boolean reusableEvents;
+
+	/**
+	 * Dispatcher of the asynchronous loggers, null until one is configured.
+	 */
+	volatile AsyncLoggerDispatcher asyncDispatcher;
+
+	/**
+	 * Number of requests the dispatcher of the asynchronous loggers holds.
+	 */
+	private int asyncBufferSize = AsyncLoggerDispatcher.DEFAULT_BUFFER_SIZE;
+
 	boolean emittedNoAppenderWarning = false;
 	boolean emittedNoResourceBundleWarning = false;
 
@@ -90,7 +128,7 @@ public class Hierarchy implements LoggerRepository, RendererSupport,
 	 *            The root of the new hierarchy.
 	 */
 	public Hierarchy(Logger root) {
-		ht = new Hashtable();
+		ht = new ConcurrentHashMap();
 		listeners = new Vector(1);
 		shutdownListeners = new Vector(1);
 		this.root = root;
@@ -136,7 +174,9 @@ public class Hierarchy implements LoggerRepository, RendererSupport,
 	 */
 	public void clear() {
 		// System.out.println("\n\nAbout to clear internal hash table.");
-		ht.clear();
+		synchronized (ht) {
+			ht.clear();
+		}
 	}
 
 	public void emitNoAppenderWarning(Category cat) {
@@ -158,7 +198,7 @@ public class Hierarchy implements LoggerRepository, RendererSupport,
 	 *            The name of the logger to search for.
 	 */
 	public Logger exists(String name) {
-		Object o = ht.get(new CategoryKey(name));
+		Object o = ht.get(name);
 		if (o instanceof Logger) {
 			return (Logger) o;
 		} else {
@@ -190,9 +230,98 @@ public class Hierarchy implements LoggerRepository, RendererSupport,
 		if (l != null) {
 			thresholdInt = l.level;
 			threshold = l;
+			levelsChanged();
 		}
 	}
 
+	/**
+	 * Dispatch logging requests as a {@link ReusableLoggingEvent} owned by
+	 * the logging thread instead of allocating a new event per request.
+	 * Appenders implementing {@link RetainingAppender}, or having appenders
+	 * attached, still receive an immutable copy. Appenders and layouts must
+	 * read the logger name, class name and time stamp of a reused event
+	 * through its getters rather than its public fields. Disabled by default.
+	 * 
+	 * @param reusableEvents
+	 *            true to reuse events.
+	 * @since 1.3.6
+	 */
+	public void setReusableEvents(boolean reusableEvents) {
+		this.reusableEvents = reusableEvents;
+	}
+
+	/**
+	 * Returns true if logging requests are dispatched as reusable events.
+	 * 
+	 * @since 1.3.6
+	 */
+	public boolean isReusableEvents() {
+		return reusableEvents;
+	}
+
+	/**
+	 * Set the number of requests of asynchronous loggers queued before the
+	 * calling threads wait, rounded up to a power of two. Applies when the
+	 * dispatcher of the asynchronous loggers is started, that is when a
+	 * first logger is made asynchronous after creation or shutdown.
+	 * 
+	 * @param size
+	 *            number of requests.
+	 * @since 1.3.6
+	 * @see Category#setAsync
+	 */
+	public void setAsyncBufferSize(int size) {
+		this.asyncBufferSize = (size < 1) ? 1 : size;
+	}
+
+	/**
+	 * Returns the number of requests of asynchronous loggers queued before
+	 * the calling threads wait.
+	 * 
+	 * @since 1.3.6
+	 */
+	public int getAsyncBufferSize() {
+		return asyncBufferSize;
+	}
+
+	/**
+	 * Start the dispatcher of the asynchronous loggers unless running.
+	 */
+	synchronized void startAsyncDispatcher() {
+		if (asyncDispatcher == null || asyncDispatcher.isStopped()) {
+			asyncDispatcher = new AsyncLoggerDispatcher(asyncBufferSize);
+		}
+	}
+
+	/**
+	 * Stop the dispatcher of the asynchronous loggers, once the requests it
+	 * holds are dispatched. Requests of asynchronous loggers are then
+	 * dispatched by the calling thread.
+	 */
+	void stopAsyncDispatcher() {
+		AsyncLoggerDispatcher dispatcher = asyncDispatcher;
+
+		if (dispatcher != null) {
+			dispatcher.stop();
+		}
+	}
+
+	/**
+	 * Invalidate the enabled levels cached by the loggers of this hierarchy.
+	 * Generation zero is skipped as it marks an empty cache.
+	 */
+	synchronized void levelsChanged() {
+		int next = levelGeneration + 1;
+		levelGeneration = (next == 0) ? 1 : next;
+	}
+
+	/**
+	 * Invalidate the appender chains cached by the loggers of this hierarchy.
+	 */
+	synchronized void appendersChanged() {
+		appenderGeneration++;
+	}
+
 	public void fireAddAppenderEvent(Category logger, Appender appender) {
 		if (listeners != null) {
 			int size = listeners.size();
@@ -266,19 +395,25 @@ public class Hierarchy implements LoggerRepository, RendererSupport,
 	 */
 	public Logger getLogger(String name, LoggerFactory factory) {
 		// System.out.println("getInstance("+name+") called.");
-		CategoryKey key = new CategoryKey(name);
-		// Synchronize to prevent write conflicts. Read conflicts (in
-		// getChainedLevel method) are possible only if variable
-		// assignments are non-atomic.
+		// Existing loggers are found without locking. A logger is only
+		// published in ht once it has been linked with its ancestors and
+		// children, so that readers never see it half wired.
+		Object o = ht.get(name);
+		if (o instanceof Logger) {
+			return (Logger) o;
+		}
+
 		Logger logger;
 
+		// Synchronize to prevent write conflicts.
 		synchronized (ht) {
-			Object o = ht.get(key);
+			o = ht.get(name);
 			if (o == null) {
 				logger = factory.makeNewLoggerInstance(name);
 				logger.setHierarchy(this);
-				ht.put(key, logger);
 				updateParents(logger);
+				ht.put(name, logger);
+				linked(logger);
 				return logger;
 			} else if (o instanceof Logger) {
 				return (Logger) o;
@@ -286,9 +421,10 @@ public class Hierarchy implements LoggerRepository, RendererSupport,
 				// System.out.println("("+name+") ht.get(this) returned ProvisionNode");
 				logger = factory.makeNewLoggerInstance(name);
 				logger.setHierarchy(this);
-				ht.put(key, logger);
 				updateChildren((ProvisionNode) o, logger);
 				updateParents(logger);
+				ht.put(name, logger);
+				linked(logger);
 				return logger;
 			} else {
 				// It should be impossible to arrive here
@@ -297,6 +433,19 @@ public class Hierarchy implements LoggerRepository, RendererSupport,
 		}
 	}
 
+	/**
+	 * Called once a new logger has been linked with its ancestors and
+	 * children. A level assigned by the factory is inherited by the children
+	 * from now on, and the children now reach their former ancestors'
+	 * appenders through the new logger.
+	 */
+	private void linked(Logger logger) {
+		if (logger.getLevel() != null) {
+			levelsChanged();
+		}
+		appendersChanged();
+	}
+
 	/**
 	 * Returns all the currently defined categories in this hierarchy as an
 	 * {@link java.util.Enumeration Enumeration}.
@@ -306,19 +455,10 @@ public class Hierarchy implements LoggerRepository, RendererSupport,
 	 * {@link Enumeration}.
 	 */
 	public Enumeration getCurrentLoggers() {
-		// The accumlation in v is necessary because not all elements in
-		// ht are Logger objects as there might be some ProvisionNodes
-		// as well.
-		Vector v = new Vector(ht.size());
-
-		Enumeration elems = ht.elements();
-		while (elems.hasMoreElements()) {
-			Object o = elems.nextElement();
-			if (o instanceof Logger) {
-				v.addElement(o);
-			}
-		}
-		return v.elements();
+		// Not all elements in ht are Logger objects as there might be some
+		// ProvisionNodes as well. The enumeration is weakly consistent, it
+		// never fails on concurrent changes but may or may not reflect them.
+		return new LoggerEnumeration(ht.values().iterator());
 	}
 
 	/**
@@ -383,17 +523,20 @@ public class Hierarchy implements LoggerRepository, RendererSupport,
 		getRootLogger().setLevel((Level) Level.DEBUG);
 		root.setResourceBundle(null);
 		setThreshold(Level.ALL);
+		reusableEvents = false;
 
 		// the synchronization is needed to prevent JDK 1.2.x hashtable
 		// surprises
 		synchronized (ht) {
 			shutdown(); // nested locks are OK
 
+			root.setAsync(null);
 			Enumeration cats = getCurrentLoggers();
 			while (cats.hasMoreElements()) {
 				Logger c = (Logger) cats.nextElement();
 				c.setLevel(null);
 				c.setAdditivity(true);
+				c.setAsync(null);
 				c.setResourceBundle(null);
 			}
 		}
@@ -445,12 +588,16 @@ public class Hierarchy implements LoggerRepository, RendererSupport,
 	 * The <code>shutdown</code> method is careful to close nested appenders
 	 * before closing regular appenders. This is allows configurations where a
 	 * regular appender is attached to a logger and again to a nested appender.
+	 * The requests queued by asynchronous loggers are dispatched before.
 	 * 
 	 * @since 1.0
 	 */
 	public void shutdown() {
 		Logger root = getRootLogger();
 
+		// dispatch the pending requests of asynchronous loggers first
+		stopAsyncDispatcher();
+
 		// begin by closing nested appenders
 		root.closeNestedAppenders();
 
@@ -511,13 +658,12 @@ public class Hierarchy implements LoggerRepository, RendererSupport,
 			String substr = name.substring(0, i);
 
 			// System.out.println("Updating parent : " + substr);
-			CategoryKey key = new CategoryKey(substr); // simple constructor
-			Object o = ht.get(key);
+			Object o = ht.get(substr);
 			// Create a provision node for a future parent.
 			if (o == null) {
 				// System.out.println("No parent "+substr+" found. Creating ProvisionNode.");
 				ProvisionNode pn = new ProvisionNode(cat);
-				ht.put(key, pn);
+				ht.put(substr, pn);
 			} else if (o instanceof Category) {
 				parentFound = true;
 				cat.parent = (Category) o;
@@ -568,4 +714,35 @@ public class Hierarchy implements LoggerRepository, RendererSupport,
 		}
 	}
 
+	/**
+	 * Enumeration of the loggers among the values of ht, skipping provision
+	 * nodes.
+	 */
+	private static final class LoggerEnumeration implements Enumeration {
+		private final Iterator values;
+		private Logger next;
+
+		LoggerEnumeration(Iterator values) {
+			this.values = values;
+		}
+
+		public boolean hasMoreElements() {
+			while (next == null && values.hasNext()) {
+				Object o = values.next();
+				if (o instanceof Logger) {
+					next = (Logger) o;
+				}
+			}
+			return next != null;
+		}
+
+		public Object nextElement() {
+			if (!hasMoreElements()) {
+				throw new NoSuchElementException();
+			}
+			Logger logger = next;
+			next = null;
+			return logger;
+		}
+	}
 }
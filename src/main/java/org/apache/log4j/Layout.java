@@ -17,6 +17,7 @@
 
 package org.apache.log4j;
 
+import org.apache.log4j.spi.EventFieldConsumer;
 import org.apache.log4j.spi.OptionHandler;
 import org.apache.log4j.spi.LoggingEvent;
 
@@ -27,7 +28,7 @@ import org.apache.log4j.spi.LoggingEvent;
 
 */
   
-public abstract class Layout implements OptionHandler {
+public abstract class Layout implements OptionHandler, EventFieldConsumer {
 
   // Note that the line.separator property can be looked up even by
   // applets.
@@ -42,6 +43,19 @@ public abstract class Layout implements OptionHandler {
   public
   String format(LoggingEvent event);
 
+  /**
+     Appends the formatted event to <code>buf</code>, producing the
+     same text as {@link #format(LoggingEvent)}. Layouts which override
+     this method spare appenders such as {@link WriterAppender} the
+     creation of a <code>String</code> per event. The base class
+     appends the result of {@link #format(LoggingEvent)}.
+
+     @since 1.3.6 */
+  public
+  void format(LoggingEvent event, StringBuilder buf) {
+    buf.append(format(event));
+  }
+
   /**
      Returns the content type output by this layout. The base class
      returns "text/plain". 
@@ -86,4 +100,60 @@ public abstract class Layout implements OptionHandler {
   public
   boolean ignoresThrowable();
 
+  /**
+     Returns <code>true</code> if {@link #format} may be called by
+     several threads at once, in which case appenders such as {@link
+     WriterAppender} format events before taking their lock. The base
+     class returns <code>false</code>.
+
+     @since 1.3.6 */
+  public
+  boolean isThreadSafe() {
+    return false;
+  }
+
+  /**
+     Returns the fields of the events read by {@link #format}, see
+     {@link EventFieldConsumer}. The throwable is not read by layouts
+     which ignore it. The base class returns {@link
+     EventFieldConsumer#ALL}.
+
+     @since 1.3.6 */
+  public
+  int getRequiredFields() {
+    return ALL;
+  }
+
+  /**
+     Returns <code>true</code> if {@link #format(LoggingEvent,
+     StringBuilder)} is overridden by the class which overrides {@link
+     #format(LoggingEvent)} or one of its subclasses, so that a
+     subclass overriding only the latter keeps its output. The result
+     is computed once.
+   */
+  final
+  boolean formatsToBuilder() {
+    int support = builderSupport;
+    if(support == 0) {
+      support = 2;
+      try {
+	Class builder = getClass().getMethod("format",
+	  new Class[] { LoggingEvent.class, StringBuilder.class })
+	  .getDeclaringClass();
+	Class string = getClass().getMethod("format",
+	  new Class[] { LoggingEvent.class }).getDeclaringClass();
+	if(builder != Layout.class && string.isAssignableFrom(builder)) {
+	  support = 1;
+	}
+      } catch(NoSuchMethodException e) {
+      } catch(SecurityException e) {
+      }
+      builderSupport = support;
+    }
+    return support == 1;
+  }
+
+  /** 0 until {@link #formatsToBuilder} is called, 1 if true, 2 if false. */
+  private int builderSupport;
+
 }
@@ -163,11 +163,7 @@ public class Logger extends Category {
      * @since 1.2.12
      */
     public void trace(Object message) {
-      if (repository.isDisabled(Level.TRACE_INT)) {
-        return;
-      }
-
-      if (Level.TRACE.isGreaterOrEqual(this.getEffectiveLevel())) {
+      if (isLevelEnabled(Level.TRACE_INT)) {
         forcedLog(FQCN, Level.TRACE, message, null);
       }
     }
@@ -185,11 +181,7 @@ public class Logger extends Category {
      * @since 1.2.12
      */
     public void trace(Object message, Throwable t) {
-      if (repository.isDisabled(Level.TRACE_INT)) {
-        return;
-      }
-
-      if (Level.TRACE.isGreaterOrEqual(this.getEffectiveLevel())) {
+      if (isLevelEnabled(Level.TRACE_INT)) {
         forcedLog(FQCN, Level.TRACE, message, t);
       }
     }
@@ -202,11 +194,573 @@ public class Logger extends Category {
      *         TRACE, <code>false</code> otherwise.
      */
     public boolean isTraceEnabled() {
-        if (repository.isDisabled(Level.TRACE_INT)) {
-            return false;
-          }
+        return isLevelEnabled(Level.TRACE_INT);
+    }
+
+    /**
+     * Log a message with the <code>TRACE</code> level including the stack
+     * trace of <code>t</code>.
+     *
+     * @param message the message to log.
+     * @param t the exception to log, including its stack trace.
+     * @see #debug(String, Throwable)
+     * @since 1.3.6
+     */
+    public void trace(String message, Throwable t) {
+      if (isLevelEnabled(Level.TRACE_INT)) {
+        forcedLog(FQCN, Level.TRACE, message, t);
+      }
+    }
+
+    /**
+     * Log a parameterized message with the <code>TRACE</code> level.
+     *
+     * @param pattern the message pattern.
+     * @param a the argument.
+     * @see #debug(String, Object)
+     * @since 1.3.6
+     */
+    public void trace(String pattern, Object a) {
+      if (isLevelEnabled(Level.TRACE_INT)) {
+        forcedLog(FQCN, Level.TRACE, pattern, new Object[] { a }, null);
+      }
+    }
+
+    /**
+     * Log a parameterized message with the <code>TRACE</code> level.
+     *
+     * @param pattern the message pattern.
+     * @param a the first argument.
+     * @param b the second argument.
+     * @see #debug(String, Object)
+     * @since 1.3.6
+     */
+    public void trace(String pattern, Object a, Object b) {
+      if (isLevelEnabled(Level.TRACE_INT)) {
+        forcedLog(FQCN, Level.TRACE, pattern, new Object[] { a, b }, null);
+      }
+    }
+
+    /**
+     * Log a parameterized message with the <code>TRACE</code> level.
+     *
+     * @param pattern the message pattern.
+     * @param a the first argument.
+     * @param b the second argument.
+     * @param c the third argument.
+     * @see #debug(String, Object)
+     * @since 1.3.6
+     */
+    public void trace(String pattern, Object a, Object b, Object c) {
+      if (isLevelEnabled(Level.TRACE_INT)) {
+        forcedLog(FQCN, Level.TRACE, pattern, new Object[] { a, b, c }, null);
+      }
+    }
+
+    /**
+     * Log a parameterized message with the <code>TRACE</code> level.
+     *
+     * @param pattern the message pattern.
+     * @param a the first argument.
+     * @param b the second argument.
+     * @param c the third argument.
+     * @param d the fourth argument.
+     * @see #debug(String, Object)
+     * @since 1.3.6
+     */
+    public void trace(String pattern, Object a, Object b, Object c,
+                      Object d) {
+      if (isLevelEnabled(Level.TRACE_INT)) {
+        forcedLog(FQCN, Level.TRACE, pattern, new Object[] { a, b, c, d },
+                  null);
+      }
+    }
+
+    /**
+     * Log a parameterized message with the <code>TRACE</code> level.
+     *
+     * @param pattern the message pattern.
+     * @param arguments the arguments.
+     * @see #debug(String, Object)
+     * @since 1.3.6
+     */
+    public void trace(String pattern, Object... arguments) {
+      if (isLevelEnabled(Level.TRACE_INT)) {
+        forcedLog(FQCN, Level.TRACE, pattern, arguments, null);
+      }
+    }
+
+    /**
+     * Log a message with the <code>DEBUG</code> level including the stack
+     * trace of <code>t</code>. Same as {@link #debug(Object, Throwable)},
+     * declared so that calls with a <code>String</code> message and a
+     * {@link Throwable} are not mistaken for parameterized requests.
+     *
+     * @param message the message to log.
+     * @param t the exception to log, including its stack trace.
+     * @since 1.3.6
+     */
+    public void debug(String message, Throwable t) {
+      if (isLevelEnabled(Level.DEBUG_INT)) {
+        forcedLog(FQCN, Level.DEBUG, message, t);
+      }
+    }
+
+    /**
+     * Log a parameterized message with the <code>DEBUG</code> level.
+     *
+     * <p>The level is checked first. The pattern and argument are then
+     * carried by the logging event and the first <code>{}</code> of the
+     * pattern is only replaced by the argument when the message is
+     * rendered, possibly on another thread, for instance by the dispatcher
+     * of an {@link AsyncAppender}. Arguments should therefore not be
+     * modified once passed. See {@link
+     * org.apache.log4j.helpers.ParameterFormatter} for the pattern syntax.
+     *
+     * @param pattern the message pattern.
+     * @param a the argument.
+     * @since 1.3.6
+     */
+    public void debug(String pattern, Object a) {
+      if (isLevelEnabled(Level.DEBUG_INT)) {
+        forcedLog(FQCN, Level.DEBUG, pattern, new Object[] { a }, null);
+      }
+    }
 
-          return Level.TRACE.isGreaterOrEqual(this.getEffectiveLevel());
+    /**
+     * Log a parameterized message with the <code>DEBUG</code> level.
+     *
+     * @param pattern the message pattern.
+     * @param a the first argument.
+     * @param b the second argument.
+     * @see #debug(String, Object)
+     * @since 1.3.6
+     */
+    public void debug(String pattern, Object a, Object b) {
+      if (isLevelEnabled(Level.DEBUG_INT)) {
+        forcedLog(FQCN, Level.DEBUG, pattern, new Object[] { a, b }, null);
+      }
+    }
+
+    /**
+     * Log a parameterized message with the <code>DEBUG</code> level.
+     *
+     * @param pattern the message pattern.
+     * @param a the first argument.
+     * @param b the second argument.
+     * @param c the third argument.
+     * @see #debug(String, Object)
+     * @since 1.3.6
+     */
+    public void debug(String pattern, Object a, Object b, Object c) {
+      if (isLevelEnabled(Level.DEBUG_INT)) {
+        forcedLog(FQCN, Level.DEBUG, pattern, new Object[] { a, b, c }, null);
+      }
+    }
+
+    /**
+     * Log a parameterized message with the <code>DEBUG</code> level.
+     *
+     * @param pattern the message pattern.
+     * @param a the first argument.
+     * @param b the second argument.
+     * @param c the third argument.
+     * @param d the fourth argument.
+     * @see #debug(String, Object)
+     * @since 1.3.6
+     */
+    public void debug(String pattern, Object a, Object b, Object c,
+                      Object d) {
+      if (isLevelEnabled(Level.DEBUG_INT)) {
+        forcedLog(FQCN, Level.DEBUG, pattern, new Object[] { a, b, c, d },
+                  null);
+      }
+    }
+
+    /**
+     * Log a parameterized message with the <code>DEBUG</code> level.
+     *
+     * @param pattern the message pattern.
+     * @param arguments the arguments.
+     * @see #debug(String, Object)
+     * @since 1.3.6
+     */
+    public void debug(String pattern, Object... arguments) {
+      if (isLevelEnabled(Level.DEBUG_INT)) {
+        forcedLog(FQCN, Level.DEBUG, pattern, arguments, null);
+      }
+    }
+
+    /**
+     * Log a message with the <code>INFO</code> level including the stack
+     * trace of <code>t</code>.
+     *
+     * @param message the message to log.
+     * @param t the exception to log, including its stack trace.
+     * @see #debug(String, Throwable)
+     * @since 1.3.6
+     */
+    public void info(String message, Throwable t) {
+      if (isLevelEnabled(Level.INFO_INT)) {
+        forcedLog(FQCN, Level.INFO, message, t);
+      }
+    }
+
+    /**
+     * Log a parameterized message with the <code>INFO</code> level.
+     *
+     * @param pattern the message pattern.
+     * @param a the argument.
+     * @see #debug(String, Object)
+     * @since 1.3.6
+     */
+    public void info(String pattern, Object a) {
+      if (isLevelEnabled(Level.INFO_INT)) {
+        forcedLog(FQCN, Level.INFO, pattern, new Object[] { a }, null);
+      }
+    }
+
+    /**
+     * Log a parameterized message with the <code>INFO</code> level.
+     *
+     * @param pattern the message pattern.
+     * @param a the first argument.
+     * @param b the second argument.
+     * @see #debug(String, Object)
+     * @since 1.3.6
+     */
+    public void info(String pattern, Object a, Object b) {
+      if (isLevelEnabled(Level.INFO_INT)) {
+        forcedLog(FQCN, Level.INFO, pattern, new Object[] { a, b }, null);
+      }
+    }
+
+    /**
+     * Log a parameterized message with the <code>INFO</code> level.
+     *
+     * @param pattern the message pattern.
+     * @param a the first argument.
+     * @param b the second argument.
+     * @param c the third argument.
+     * @see #debug(String, Object)
+     * @since 1.3.6
+     */
+    public void info(String pattern, Object a, Object b, Object c) {
+      if (isLevelEnabled(Level.INFO_INT)) {
+        forcedLog(FQCN, Level.INFO, pattern, new Object[] { a, b, c }, null);
+      }
+    }
+
+    /**
+     * Log a parameterized message with the <code>INFO</code> level.
+     *
+     * @param pattern the message pattern.
+     * @param a the first argument.
+     * @param b the second argument.
+     * @param c the third argument.
+     * @param d the fourth argument.
+     * @see #debug(String, Object)
+     * @since 1.3.6
+     */
+    public void info(String pattern, Object a, Object b, Object c,
+                     Object d) {
+      if (isLevelEnabled(Level.INFO_INT)) {
+        forcedLog(FQCN, Level.INFO, pattern, new Object[] { a, b, c, d },
+                  null);
+      }
+    }
+
+    /**
+     * Log a parameterized message with the <code>INFO</code> level.
+     *
+     * @param pattern the message pattern.
+     * @param arguments the arguments.
+     * @see #debug(String, Object)
+     * @since 1.3.6
+     */
+    public void info(String pattern, Object... arguments) {
+      if (isLevelEnabled(Level.INFO_INT)) {
+        forcedLog(FQCN, Level.INFO, pattern, arguments, null);
+      }
+    }
+
+    /**
+     * Log a message with the <code>WARN</code> level including the stack
+     * trace of <code>t</code>.
+     *
+     * @param message the message to log.
+     * @param t the exception to log, including its stack trace.
+     * @see #debug(String, Throwable)
+     * @since 1.3.6
+     */
+    public void warn(String message, Throwable t) {
+      if (isLevelEnabled(Level.WARN_INT)) {
+        forcedLog(FQCN, Level.WARN, message, t);
+      }
+    }
+
+    /**
+     * Log a parameterized message with the <code>WARN</code> level.
+     *
+     * @param pattern the message pattern.
+     * @param a the argument.
+     * @see #debug(String, Object)
+     * @since 1.3.6
+     */
+    public void warn(String pattern, Object a) {
+      if (isLevelEnabled(Level.WARN_INT)) {
+        forcedLog(FQCN, Level.WARN, pattern, new Object[] { a }, null);
+      }
+    }
+
+    /**
+     * Log a parameterized message with the <code>WARN</code> level.
+     *
+     * @param pattern the message pattern.
+     * @param a the first argument.
+     * @param b the second argument.
+     * @see #debug(String, Object)
+     * @since 1.3.6
+     */
+    public void warn(String pattern, Object a, Object b) {
+      if (isLevelEnabled(Level.WARN_INT)) {
+        forcedLog(FQCN, Level.WARN, pattern, new Object[] { a, b }, null);
+      }
+    }
+
+    /**
+     * Log a parameterized message with the <code>WARN</code> level.
+     *
+     * @param pattern the message pattern.
+     * @param a the first argument.
+     * @param b the second argument.
+     * @param c the third argument.
+     * @see #debug(String, Object)
+     * @since 1.3.6
+     */
+    public void warn(String pattern, Object a, Object b, Object c) {
+      if (isLevelEnabled(Level.WARN_INT)) {
+        forcedLog(FQCN, Level.WARN, pattern, new Object[] { a, b, c }, null);
+      }
+    }
+
+    /**
+     * Log a parameterized message with the <code>WARN</code> level.
+     *
+     * @param pattern the message pattern.
+     * @param a the first argument.
+     * @param b the second argument.
+     * @param c the third argument.
+     * @param d the fourth argument.
+     * @see #debug(String, Object)
+     * @since 1.3.6
+     */
+    public void warn(String pattern, Object a, Object b, Object c,
+                     Object d) {
+      if (isLevelEnabled(Level.WARN_INT)) {
+        forcedLog(FQCN, Level.WARN, pattern, new Object[] { a, b, c, d },
+                  null);
+      }
+    }
+
+    /**
+     * Log a parameterized message with the <code>WARN</code> level.
+     *
+     * @param pattern the message pattern.
+     * @param arguments the arguments.
+     * @see #debug(String, Object)
+     * @since 1.3.6
+     */
+    public void warn(String pattern, Object... arguments) {
+      if (isLevelEnabled(Level.WARN_INT)) {
+        forcedLog(FQCN, Level.WARN, pattern, arguments, null);
+      }
+    }
+
+    /**
+     * Log a message with the <code>ERROR</code> level including the stack
+     * trace of <code>t</code>.
+     *
+     * @param message the message to log.
+     * @param t the exception to log, including its stack trace.
+     * @see #debug(String, Throwable)
+     * @since 1.3.6
+     */
+    public void error(String message, Throwable t) {
+      if (isLevelEnabled(Level.ERROR_INT)) {
+        forcedLog(FQCN, Level.ERROR, message, t);
+      }
+    }
+
+    /**
+     * Log a parameterized message with the <code>ERROR</code> level.
+     *
+     * @param pattern the message pattern.
+     * @param a the argument.
+     * @see #debug(String, Object)
+     * @since 1.3.6
+     */
+    public void error(String pattern, Object a) {
+      if (isLevelEnabled(Level.ERROR_INT)) {
+        forcedLog(FQCN, Level.ERROR, pattern, new Object[] { a }, null);
+      }
+    }
+
+    /**
+     * Log a parameterized message with the <code>ERROR</code> level.
+     *
+     * @param pattern the message pattern.
+     * @param a the first argument.
+     * @param b the second argument.
+     * @see #debug(String, Object)
+     * @since 1.3.6
+     */
+    public void error(String pattern, Object a, Object b) {
+      if (isLevelEnabled(Level.ERROR_INT)) {
+        forcedLog(FQCN, Level.ERROR, pattern, new Object[] { a, b }, null);
+      }
+    }
+
+    /**
+     * Log a parameterized message with the <code>ERROR</code> level.
+     *
+     * @param pattern the message pattern.
+     * @param a the first argument.
+     * @param b the second argument.
+     * @param c the third argument.
+     * @see #debug(String, Object)
+     * @since 1.3.6
+     */
+    public void error(String pattern, Object a, Object b, Object c) {
+      if (isLevelEnabled(Level.ERROR_INT)) {
+        forcedLog(FQCN, Level.ERROR, pattern, new Object[] { a, b, c }, null);
+      }
+    }
+
+    /**
+     * Log a parameterized message with the <code>ERROR</code> level.
+     *
+     * @param pattern the message pattern.
+     * @param a the first argument.
+     * @param b the second argument.
+     * @param c the third argument.
+     * @param d the fourth argument.
+     * @see #debug(String, Object)
+     * @since 1.3.6
+     */
+    public void error(String pattern, Object a, Object b, Object c,
+                      Object d) {
+      if (isLevelEnabled(Level.ERROR_INT)) {
+        forcedLog(FQCN, Level.ERROR, pattern, new Object[] { a, b, c, d },
+                  null);
+      }
+    }
+
+    /**
+     * Log a parameterized message with the <code>ERROR</code> level.
+     *
+     * @param pattern the message pattern.
+     * @param arguments the arguments.
+     * @see #debug(String, Object)
+     * @since 1.3.6
+     */
+    public void error(String pattern, Object... arguments) {
+      if (isLevelEnabled(Level.ERROR_INT)) {
+        forcedLog(FQCN, Level.ERROR, pattern, arguments, null);
+      }
+    }
+
+    /**
+     * Log a message with the <code>FATAL</code> level including the stack
+     * trace of <code>t</code>.
+     *
+     * @param message the message to log.
+     * @param t the exception to log, including its stack trace.
+     * @see #debug(String, Throwable)
+     * @since 1.3.6
+     */
+    public void fatal(String message, Throwable t) {
+      if (isLevelEnabled(Level.FATAL_INT)) {
+        forcedLog(FQCN, Level.FATAL, message, t);
+      }
+    }
+
+    /**
+     * Log a parameterized message with the <code>FATAL</code> level.
+     *
+     * @param pattern the message pattern.
+     * @param a the argument.
+     * @see #debug(String, Object)
+     * @since 1.3.6
+     */
+    public void fatal(String pattern, Object a) {
+      if (isLevelEnabled(Level.FATAL_INT)) {
+        forcedLog(FQCN, Level.FATAL, pattern, new Object[] { a }, null);
+      }
+    }
+
+    /**
+     * Log a parameterized message with the <code>FATAL</code> level.
+     *
+     * @param pattern the message pattern.
+     * @param a the first argument.
+     * @param b the second argument.
+     * @see #debug(String, Object)
+     * @since 1.3.6
+     */
+    public void fatal(String pattern, Object a, Object b) {
+      if (isLevelEnabled(Level.FATAL_INT)) {
+        forcedLog(FQCN, Level.FATAL, pattern, new Object[] { a, b }, null);
+      }
+    }
+
+    /**
+     * Log a parameterized message with the <code>FATAL</code> level.
+     *
+     * @param pattern the message pattern.
+     * @param a the first argument.
+     * @param b the second argument.
+     * @param c the third argument.
+     * @see #debug(String, Object)
+     * @since 1.3.6
+     */
+    public void fatal(String pattern, Object a, Object b, Object c) {
+      if (isLevelEnabled(Level.FATAL_INT)) {
+        forcedLog(FQCN, Level.FATAL, pattern, new Object[] { a, b, c }, null);
+      }
+    }
+
+    /**
+     * Log a parameterized message with the <code>FATAL</code> level.
+     *
+     * @param pattern the message pattern.
+     * @param a the first argument.
+     * @param b the second argument.
+     * @param c the third argument.
+     * @param d the fourth argument.
+     * @see #debug(String, Object)
+     * @since 1.3.6
+     */
+    public void fatal(String pattern, Object a, Object b, Object c,
+                      Object d) {
+      if (isLevelEnabled(Level.FATAL_INT)) {
+        forcedLog(FQCN, Level.FATAL, pattern, new Object[] { a, b, c, d },
+                  null);
+      }
+    }
+
+    /**
+     * Log a parameterized message with the <code>FATAL</code> level.
+     *
+     * @param pattern the message pattern.
+     * @param arguments the arguments.
+     * @see #debug(String, Object)
+     * @since 1.3.6
+     */
+    public void fatal(String pattern, Object... arguments) {
+      if (isLevelEnabled(Level.FATAL_INT)) {
+        forcedLog(FQCN, Level.FATAL, pattern, arguments, null);
+      }
     }
 
 }
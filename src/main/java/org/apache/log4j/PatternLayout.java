@@ -421,6 +421,16 @@ public class PatternLayout extends Layout {
 
   private PatternConverter head;
 
+  /**
+     Buffer of each thread for {@link #format(LoggingEvent,
+     StringBuilder)} and the formatting outside the lock of the
+     appenders, taken while in use.
+  */
+  private static final ThreadLocal BUFFERS = new ThreadLocal();
+
+  /** Fields read by the converters of head. */
+  private int requiredFields;
+
   /**
      Constructs a PatternLayout using the DEFAULT_LAYOUT_PATTERN.
 
@@ -437,6 +447,7 @@ public class PatternLayout extends Layout {
     this.pattern = pattern;
     head = createPatternParser((pattern == null) ? DEFAULT_CONVERSION_PATTERN :
 			     pattern).parse();
+    requiredFields = requiredFields(head);
   }
 
    /**
@@ -448,6 +459,7 @@ public class PatternLayout extends Layout {
   void setConversionPattern(String conversionPattern) {
     pattern = conversionPattern;
     head = createPatternParser(conversionPattern).parse();
+    requiredFields = requiredFields(head);
   }
 
   /**
@@ -493,6 +505,15 @@ public class PatternLayout extends Layout {
      Produces a formatted string as specified by the conversion pattern.
   */
   public String format(LoggingEvent event) {
+    if(isThreadSafe()) {
+      // formatted outside the lock of the appender, see isThreadSafe
+      StringBuffer buf = takeBuffer();
+      convert(buf, event);
+      String s = buf.toString();
+      releaseBuffer(buf);
+      return s;
+    }
+
     // Reset working stringbuffer
     if(sbuf.capacity() > MAX_CAPACITY) {
       sbuf = new StringBuffer(BUF_SIZE);
@@ -500,12 +521,88 @@ public class PatternLayout extends Layout {
       sbuf.setLength(0);
     }
 
+    convert(sbuf, event);
+    return sbuf.toString();
+  }
+
+  /**
+     Appends the event formatted as specified by the conversion pattern
+     to <code>buf</code>. The converters write to a buffer of the
+     calling thread which is then appended, no string is created.
+
+     @since 1.3.6 */
+  public
+  void format(LoggingEvent event, StringBuilder buf) {
+    StringBuffer sbuf = takeBuffer();
+    convert(sbuf, event);
+    buf.append(sbuf);
+    releaseBuffer(sbuf);
+  }
+
+  private
+  void convert(StringBuffer sbuf, LoggingEvent event) {
     PatternConverter c = head;
 
     while(c != null) {
       c.format(sbuf, event);
       c = c.next;
     }
-    return sbuf.toString();
+  }
+
+  /**
+     Take the buffer of the calling thread, released once formatted.
+  */
+  private
+  StringBuffer takeBuffer() {
+    StringBuffer buf = (StringBuffer) BUFFERS.get();
+    if(buf == null) {
+      return new StringBuffer(BUF_SIZE);
+    }
+    // a message logging while rendered gets its own buffer
+    BUFFERS.set(null);
+    buf.setLength(0);
+    return buf;
+  }
+
+  private
+  void releaseBuffer(StringBuffer buf) {
+    if(buf.capacity() <= MAX_CAPACITY) {
+      BUFFERS.set(buf);
+    }
+  }
+
+  /**
+     The converters of the PatternLayout are thread safe. Subclasses may
+     create converters which are not, see {@link #createPatternParser},
+     so this method only returns <code>true</code> for the PatternLayout
+     itself. Subclasses whose converters are thread safe may override it
+     to return <code>true</code>.
+
+     @since 1.3.6 */
+  public
+  boolean isThreadSafe() {
+    return getClass() == PatternLayout.class;
+  }
+
+  /**
+     Returns the fields read by the converters of the conversion
+     pattern. Subclasses which override {@link #format} should also
+     override this method.
+
+     @since 1.3.6 */
+  public
+  int getRequiredFields() {
+    return requiredFields;
+  }
+
+  private
+  static
+  int requiredFields(PatternConverter c) {
+    int fields = 0;
+    while(c != null) {
+      fields |= c.getRequiredFields();
+      c = c.next;
+    }
+    return fields;
   }
 }
@@ -104,6 +104,7 @@ public class PropertyConfigurator implements Configurator {
 	static final String LOGGER_PREFIX = "log4j.logger.";
 	static final String FACTORY_PREFIX = "log4j.factory";
 	static final String ADDITIVITY_PREFIX = "log4j.additivity.";
+	static final String ASYNC_PREFIX = "log4j.async.";
 	static final String ROOT_CATEGORY_PREFIX = "log4j.rootCategory";
 	static final String ROOT_LOGGER_PREFIX = "log4j.rootLogger";
 	static final String APPENDER_PREFIX = "log4j.appender.";
@@ -126,6 +127,12 @@ public class PropertyConfigurator implements Configurator {
 	 */
 	private static final String RESET_KEY = "log4j.reset";
 
+	/**
+	 * If property set to true, then the hierarchy dispatches reusable events,
+	 * see {@link Hierarchy#setReusableEvents}.
+	 */
+	private static final String REUSABLE_EVENTS_KEY = "log4j.reusableEvents";
+
 	static final private String INTERNAL_ROOT_NAME = "root";
 
 	/**
@@ -323,6 +330,23 @@ public class PropertyConfigurator implements Configurator {
 	 * The hierarchy will be reset before configuration when log4j.reset=true is
 	 * present in the properties file.
 	 * 
+	 * <h3>Reusable events</h3>
+	 * 
+	 * Loggers reuse one logging event per thread when log4j.reusableEvents=true
+	 * is present in the properties file, see
+	 * {@link Hierarchy#setReusableEvents}.
+	 * 
+	 * <h3>Asynchronous loggers</h3>
+	 * 
+	 * The syntax for making a logger and its descendants asynchronous is:
+	 * 
+	 * <pre>
+	 * log4j.async.logger_name=true|false|inherited
+	 * </pre>
+	 * 
+	 * where <code>log4j.async.root</code> applies to the root logger. See
+	 * {@link Category#setAsync}.
+	 * 
 	 * <h3>Example</h3>
 	 * 
 	 * <p>
@@ -532,6 +556,18 @@ public class PropertyConfigurator implements Configurator {
 					+ hierarchy.getThreshold() + "].");
 		}
 
+		String reusableStr = OptionConverter.findAndSubst(REUSABLE_EVENTS_KEY,
+				properties);
+		if (reusableStr != null) {
+			if (hierarchy instanceof Hierarchy) {
+				((Hierarchy) hierarchy).setReusableEvents(OptionConverter
+						.toBoolean(reusableStr, false));
+				LogLog.debug("Reusable events set to [" + reusableStr + "].");
+			} else {
+				LogLog.warn("Reusable events are only supported by Hierarchy.");
+			}
+		}
+
 		configureRootCategory(properties, hierarchy);
 		configureLoggerFactory(properties);
 		parseCatsAndRenderers(properties, hierarchy);
@@ -682,6 +718,14 @@ public class PropertyConfigurator implements Configurator {
 					parseCategory(props, logger, key, loggerName, value);
 					parseAdditivityForLogger(props, logger, loggerName);
 				}
+			} else if (key.startsWith(ASYNC_PREFIX)) {
+				String loggerName = key.substring(ASYNC_PREFIX.length());
+				Logger logger = INTERNAL_ROOT_NAME.equals(loggerName) ? hierarchy
+						.getRootLogger() : hierarchy.getLogger(loggerName,
+						loggerFactory);
+				synchronized (logger) {
+					parseAsyncForLogger(props, logger, key);
+				}
 			} else if (key.startsWith(RENDERER_PREFIX)) {
 				String renderedClass = key.substring(RENDERER_PREFIX.length());
 				String renderingClass = OptionConverter
@@ -731,6 +775,30 @@ public class PropertyConfigurator implements Configurator {
 		}
 	}
 
+	/**
+	 * Parse the asynchronous option of a category.
+	 */
+	void parseAsyncForLogger(Properties props, Logger cat, String key) {
+		String value = OptionConverter.findAndSubst(key, props);
+		LogLog.debug("Handling " + key + "=[" + value + "]");
+		if ((value == null) || value.equals("")) {
+			return;
+		}
+		if (!(cat.getLoggerRepository() instanceof Hierarchy)) {
+			LogLog.warn("Asynchronous loggers are only supported by Hierarchy.");
+			return;
+		}
+		Boolean async = null;
+		if (!INHERITED.equalsIgnoreCase(value)
+				&& !NULL.equalsIgnoreCase(value)) {
+			async = OptionConverter.toBoolean(value, false) ? Boolean.TRUE
+					: Boolean.FALSE;
+		}
+		LogLog.debug("Setting async for \"" + cat.getName() + "\" to "
+				+ async);
+		cat.setAsync(async);
+	}
+
 	/**
 	 * This method must work for the root category as well.
 	 */
@@ -23,6 +23,16 @@ import java.io.IOException;
 import java.io.Writer;
 import java.io.File;
 import java.io.InterruptedIOException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.helpers.OptionConverter;
 import org.apache.log4j.helpers.LogLog;
@@ -36,6 +46,16 @@ import org.apache.log4j.spi.LoggingEvent;
    The log4j extras companion includes alternatives which should be considered
    for new deployments and which are discussed in the documentation
    for org.apache.log4j.rolling.RollingFileAppender.
+
+   <p>By default, backups are shifted at each rollover, see {@link
+   #rollOver}. The <b>BackupNaming</b> option names each new backup
+   with an increasing counter or a time stamp instead, so that a
+   rollover renames a single file whatever the number of backups, see
+   {@link #setBackupNaming}.
+
+   <p>With the <b>AsyncRollover</b> option, the file is reopened as soon
+   as it is renamed and the previous file is closed and its backups
+   shifted by a background thread, see {@link #setAsyncRollover}.
    
 
    @author Heinz Richter
@@ -54,8 +74,103 @@ public class RollingFileAppender extends FileAppender {
    */
   protected int  maxBackupIndex  = 1;
 
+  /**
+     Backups are shifted, <code>File.1</code> being the most recent.
+
+     @since 1.3.6 */
+  public static final int NAMING_SHIFT = 0;
+
+  /**
+     Backups are numbered from one, the most recent having the highest
+     number.
+
+     @since 1.3.6 */
+  public static final int NAMING_COUNTER = 1;
+
+  /**
+     Backups are suffixed with the time of the rollover.
+
+     @since 1.3.6 */
+  public static final int NAMING_TIMESTAMP = 2;
+
+  private static final String[] NAMINGS =
+    new String[] { "SHIFT", "COUNTER", "TIMESTAMP" };
+
+  /** Format of the time stamps of the backups, in chronological order. */
+  private static final String TIMESTAMP_PATTERN = "yyyyMMdd-HHmmss-SSS";
+
+  /**
+     Naming of the backups, one of the <code>NAMING</code> constants.
+
+     @since 1.3.6 */
+  protected int backupNaming = NAMING_SHIFT;
+
   private long nextRollover = 0;
 
+  /**
+     Backups of the counter and time stamp namings, oldest first, read
+     from the directory at the first rollover.
+  */
+  private LinkedList backups;
+
+  /** Path of the file the backups were listed for. */
+  private String backupsOf;
+
+  /** Number of the next backup of the counter naming. */
+  private long nextBackupIndex;
+
+  /**
+     Are the files closed and shifted in the background?
+
+     @since 1.3.6 */
+  protected boolean asyncRollover = false;
+
+  /**
+     Maximum number of rollovers waiting for the background thread.
+
+     @since 1.3.6 */
+  protected int rolloverQueueSize = 4;
+
+  /** Background thread of the asynchronous rollovers, null if not started. */
+  private RolloverExecutor rolloverExecutor;
+
+  /** Number of asynchronous rollovers of the shift naming. */
+  private long pendingCount;
+
+  /**
+     Path of the file whose temporary files left by a previous
+     asynchronous rollover were recovered.
+  */
+  private String recoveredOf;
+
+  /**
+     Deletes the oldest backups of the counter and time stamp namings,
+     null until needed. Its thread ends once idle.
+  */
+  private static Executor deleter;
+
+  /** Seconds after which the idle thread of the deleter ends. */
+  private static final long DELETER_KEEP_ALIVE = 60;
+
+  /**
+     Orders the time stamped backups, those of the same millisecond by
+     sequence number.
+  */
+  private static final Comparator TIMESTAMP_ORDER = new Comparator() {
+    public int compare(Object o1, Object o2) {
+      String s1 = (String) o1;
+      String s2 = (String) o2;
+      int length = TIMESTAMP_PATTERN.length();
+      int c = s1.substring(0, length).compareTo(s2.substring(0, length));
+      if(c != 0) {
+        return c;
+      }
+      long i1 = sequence(s1);
+      long i2 = sequence(s2);
+      return (i1 < i2) ? -1 : ((i1 == i2) ? 0 : 1);
+    }
+  };
+
   /**
      The default constructor simply calls its {@link
      FileAppender#FileAppender parents constructor}.  */
@@ -109,6 +224,115 @@ public class RollingFileAppender extends FileAppender {
     return maxFileSize;
   }
 
+  /**
+     Returns the value of the <b>BackupNaming</b> option.
+
+     @since 1.3.6 */
+  public
+  String getBackupNaming() {
+    return NAMINGS[backupNaming];
+  }
+
+  /**
+     Returns the value of the <b>AsyncRollover</b> option.
+
+     @since 1.3.6 */
+  public
+  boolean getAsyncRollover() {
+    return asyncRollover;
+  }
+
+  /**
+     The <b>AsyncRollover</b> option takes a boolean value. It is set to
+     <code>false</code> by default. If true, the open file is renamed
+     at rollover and a new file is opened right away. The renamed file
+     is closed by a background thread which, with the shift naming,
+     then shifts the backups and gives it the name
+     <code>File.1</code>. Until then it is named
+     <code>File.rolling-N</code>. The rollover is synchronous if the
+     open file can not be renamed, as on Windows.
+
+     @since 1.3.6 */
+  public
+  void setAsyncRollover(boolean asyncRollover) {
+    this.asyncRollover = asyncRollover;
+  }
+
+  /**
+     Returns the value of the <b>RolloverQueueSize</b> option.
+
+     @since 1.3.6 */
+  public
+  int getRolloverQueueSize() {
+    return rolloverQueueSize;
+  }
+
+  /**
+     The <b>RolloverQueueSize</b> option takes the number of rollovers
+     which may wait for the background thread, 4 by default. A
+     rollover waits while that many are pending.
+
+     @since 1.3.6 */
+  public
+  void setRolloverQueueSize(int rolloverQueueSize) {
+    this.rolloverQueueSize = rolloverQueueSize;
+  }
+
+  /**
+     Close the appender once the pending rollovers are done.
+
+     @since 1.3.6 */
+  public
+  void close() {
+    super.close();
+    RolloverExecutor executor;
+    synchronized(this) {
+      executor = rolloverExecutor;
+      rolloverExecutor = null;
+    }
+    if(executor != null) {
+      executor.stop(!Thread.holdsLock(this));
+    }
+  }
+
+  /**
+     Get the background thread of the asynchronous rollovers, with the
+     lock held.
+   */
+  private
+  RolloverExecutor getRolloverExecutor() {
+    if(rolloverExecutor == null) {
+      rolloverExecutor = new RolloverExecutor(name, rolloverQueueSize);
+    }
+    return rolloverExecutor;
+  }
+
+  /**
+     The <b>BackupNaming</b> option takes one of the values "SHIFT",
+     "COUNTER" and "TIMESTAMP", and is "SHIFT" by default.
+
+     <p>With "COUNTER", <code>File</code> is renamed
+     <code>File.N</code> at each rollover, N being one more than the
+     number of the most recent backup. With "TIMESTAMP", it is renamed
+     <code>File.yyyyMMdd-HHmmss-SSS</code> after the time of the
+     rollover. In both cases, a rollover renames a single file and, once
+     there are more than <b>MaxBackupIndex</b> backups, the oldest is
+     deleted in the background. The existing backups are only listed at
+     the first rollover.
+
+     @since 1.3.6 */
+  public
+  void setBackupNaming(String value) {
+    for(int i = 0; i < NAMINGS.length; i++) {
+      if(NAMINGS[i].equalsIgnoreCase(value.trim())) {
+        backupNaming = i;
+        backups = null;
+        return;
+      }
+    }
+    LogLog.warn("Unknown backup naming ["+value+"] for appender ["+name+"].");
+  }
+
   /**
      Implements the usual roll over behaviour.
 
@@ -122,6 +346,10 @@ public class RollingFileAppender extends FileAppender {
      <p>If <code>MaxBackupIndex</code> is equal to zero, then the
      <code>File</code> is truncated with no backup files created.
 
+     <p>With the counter and time stamp namings, <code>File</code> is
+     renamed to the next backup name instead, see {@link
+     #setBackupNaming}.
+
    */
   public // synchronization not necessary since doAppend is alreasy synched
   void rollOver() {
@@ -137,23 +365,23 @@ public class RollingFileAppender extends FileAppender {
     }
     LogLog.debug("maxBackupIndex="+maxBackupIndex);
 
+    if(maxBackupIndex > 0 && backupNaming != NAMING_SHIFT) {
+      rollOverUnshifted();
+      return;
+    }
+    if(maxBackupIndex > 0 && !fileName.equals(recoveredOf)) {
+      recoveredOf = fileName;
+      recoverPending();
+    }
+    if(maxBackupIndex > 0 && asyncRollover && qw != null
+       && rollOverShiftedAsync()) {
+      return;
+    }
+
     boolean renameSucceeded = true;
     // If maxBackups <= 0, then there is no file renaming to be done.
     if(maxBackupIndex > 0) {
-      // Delete the oldest file, to keep Windows happy.
-      file = new File(fileName + '.' + maxBackupIndex);
-      if (file.exists())
-       renameSucceeded = file.delete();
-
-      // Map {(maxBackupIndex - 1), ..., 2, 1} to {maxBackupIndex, ..., 3, 2}
-      for (int i = maxBackupIndex - 1; i >= 1 && renameSucceeded; i--) {
-	file = new File(fileName + "." + i);
-	if (file.exists()) {
-	  target = new File(fileName + '.' + (i + 1));
-	  LogLog.debug("Renaming file " + file + " to " + target);
-	  renameSucceeded = file.renameTo(target);
-	}
-      }
+      renameSucceeded = shiftBackups(fileName, maxBackupIndex);
 
     if(renameSucceeded) {
       // Rename fileName to fileName.1
@@ -200,6 +428,358 @@ public class RollingFileAppender extends FileAppender {
     }
   }
 
+  /**
+     Delete <code>File.MaxBackupIndex</code> and rename {<code>File.1</code>,
+     ..., <code>File.MaxBackupIndex -1</code>} to {<code>File.2</code>,
+     ..., <code>File.MaxBackupIndex</code>}.
+
+     @return false if a file could not be deleted or renamed.
+   */
+  private static
+  boolean shiftBackups(String fileName, int maxBackupIndex) {
+    boolean renameSucceeded = true;
+    // Delete the oldest file, to keep Windows happy.
+    File file = new File(fileName + '.' + maxBackupIndex);
+    if (file.exists())
+      renameSucceeded = file.delete();
+
+    // Map {(maxBackupIndex - 1), ..., 2, 1} to {maxBackupIndex, ..., 3, 2}
+    for (int i = maxBackupIndex - 1; i >= 1 && renameSucceeded; i--) {
+      file = new File(fileName + "." + i);
+      if (file.exists()) {
+	File target = new File(fileName + '.' + (i + 1));
+	LogLog.debug("Renaming file " + file + " to " + target);
+	renameSucceeded = file.renameTo(target);
+      }
+    }
+    return renameSucceeded;
+  }
+
+  /**
+     Shift the temporary files of the asynchronous rollovers which were
+     not completed, as when the application stopped, into the backups
+     before the next rollover. The oldest are shifted first.
+   */
+  private
+  void recoverPending() {
+    File file = new File(fileName);
+    File dir = file.getAbsoluteFile().getParentFile();
+    String[] names = (dir == null) ? null : dir.list();
+    if(names == null) {
+      return;
+    }
+    String prefix = file.getName() + ".rolling-";
+    LinkedList pending = new LinkedList();
+    for(int i = 0; i < names.length; i++) {
+      if(names[i].startsWith(prefix) && names[i].length() > prefix.length()) {
+        try {
+          Long.parseLong(names[i].substring(prefix.length()));
+          pending.add(new File(dir, names[i]));
+        } catch(NumberFormatException e) {
+          // not a temporary file
+        }
+      }
+    }
+    if(pending.isEmpty()) {
+      return;
+    }
+    final File[] files = (File[]) pending.toArray(new File[pending.size()]);
+    Arrays.sort(files, new Comparator() {
+      public int compare(Object o1, Object o2) {
+        long t1 = ((File) o1).lastModified();
+        long t2 = ((File) o2).lastModified();
+        return (t1 < t2) ? -1 : ((t1 == t2) ? 0 : 1);
+      }
+    });
+    final String name = file.getPath();
+    final int max = maxBackupIndex;
+    Runnable recover = new Runnable() {
+      public void run() {
+        for(int i = 0; i < files.length; i++) {
+          if(!shiftBackups(name, max)) {
+            LogLog.warn("Failed to shift the backups of [" + name + "], keeping ["
+                        + files[i] + "].");
+            return;
+          }
+          File target = new File(name + "." + 1);
+          LogLog.debug("Renaming file " + files[i] + " to " + target);
+          if(!files[i].renameTo(target)) {
+            LogLog.warn("Failed to rename [" + files[i] + "] to [" + target + "].");
+          }
+        }
+      }
+    };
+    if(asyncRollover && qw != null) {
+      getRolloverExecutor().execute(recover);
+    } else {
+      recover.run();
+    }
+  }
+
+  /**
+     Rename the open file to a temporary name, open a new file and
+     leave the closing of the renamed file and the shifting of the
+     backups to the background thread.
+
+     @return false if the open file could not be renamed.
+   */
+  private
+  boolean rollOverShiftedAsync() {
+    File file = new File(fileName);
+    File pending;
+    do {
+      pending = new File(fileName + ".rolling-" + (++pendingCount));
+    } while(pending.exists());
+
+    LogLog.debug("Renaming file " + file + " to " + pending);
+    if(!file.renameTo(pending)) {
+      return false;
+    }
+
+    Runnable closer = null;
+    try {
+      closer = reopenFile(false);
+      nextRollover = 0;
+    } catch(IOException e) {
+      if (e instanceof InterruptedIOException) {
+        Thread.currentThread().interrupt();
+      }
+      LogLog.error("setFile("+fileName+", false) call failed.", e);
+    }
+
+    final Runnable close = closer;
+    final File renamed = pending;
+    final String name = file.getPath();
+    final int max = maxBackupIndex;
+    getRolloverExecutor().execute(new Runnable() {
+      public void run() {
+        if(close != null) {
+          close.run();
+        }
+        if(shiftBackups(name, max)) {
+          File target = new File(name + "." + 1);
+          LogLog.debug("Renaming file " + renamed + " to " + target);
+          if(!renamed.renameTo(target)) {
+            LogLog.warn("Failed to rename [" + renamed + "] to [" + target + "].");
+          }
+        } else {
+          LogLog.warn("Failed to shift the backups of [" + name + "], keeping ["
+                      + renamed + "].");
+        }
+      }
+    });
+    return true;
+  }
+
+  /**
+     Rename <code>File</code> to the next backup name and delete the
+     oldest backup in the background if there are too many. With the
+     <b>AsyncRollover</b> option, the open file is renamed and closed
+     by the background thread.
+   */
+  private
+  void rollOverUnshifted() {
+    File file = new File(fileName);
+    if(backups == null || !file.getPath().equals(backupsOf)) {
+      listBackups(file);
+    }
+    File target = nextBackup(file);
+
+    if(asyncRollover && qw != null) {
+      LogLog.debug("Renaming file " + file + " to " + target);
+      if(file.renameTo(target)) {
+        backupAdded(target);
+        try {
+          getRolloverExecutor().execute(reopenFile(false));
+          nextRollover = 0;
+        } catch(IOException e) {
+          if (e instanceof InterruptedIOException) {
+            Thread.currentThread().interrupt();
+          }
+          LogLog.error("setFile("+fileName+", false) call failed.", e);
+        }
+        return;
+      }
+    }
+
+    this.closeFile(); // keep windows happy.
+
+    LogLog.debug("Renaming file " + file + " to " + target);
+    boolean renameSucceeded = file.renameTo(target);
+    if(renameSucceeded) {
+      backupAdded(target);
+    }
+
+    //
+    //   if file rename failed, reopen file with append = true
+    //
+    try {
+      this.setFile(fileName, !renameSucceeded, bufferedIO, bufferSize);
+      if(renameSucceeded) {
+        nextRollover = 0;
+      }
+    }
+    catch(IOException e) {
+        if (e instanceof InterruptedIOException) {
+            Thread.currentThread().interrupt();
+        }
+        LogLog.error("setFile("+fileName+", "+!renameSucceeded+") call failed.", e);
+    }
+  }
+
+  /**
+     Record a new backup and delete the oldest in the background if
+     there are more than <b>MaxBackupIndex</b>.
+   */
+  private
+  void backupAdded(File target) {
+    backups.addLast(target);
+    while(backups.size() > maxBackupIndex) {
+      final File oldest = (File) backups.removeFirst();
+      getDeleter().execute(new Runnable() {
+        public void run() {
+          LogLog.debug("Deleting file " + oldest);
+          if(oldest.exists() && !oldest.delete()) {
+            LogLog.warn("Failed to delete [" + oldest + "].");
+          }
+        }
+      });
+    }
+  }
+
+  /**
+     Get the executor deleting the oldest backups.
+   */
+  private static
+  synchronized
+  Executor getDeleter() {
+    if(deleter == null) {
+      ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(1, 1, DELETER_KEEP_ALIVE, TimeUnit.SECONDS,
+                               new LinkedBlockingQueue(), new ThreadFactory() {
+          public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "RollingFileAppender-Delete");
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+      executor.allowCoreThreadTimeOut(true);
+      deleter = executor;
+    }
+    return deleter;
+  }
+
+  /**
+     List the existing backups of <code>file</code> of the current
+     naming, oldest first.
+   */
+  private
+  void listBackups(File file) {
+    backups = new LinkedList();
+    backupsOf = file.getPath();
+    nextBackupIndex = 1;
+    File dir = file.getAbsoluteFile().getParentFile();
+    String[] names = (dir == null) ? null : dir.list();
+    if(names == null) {
+      return;
+    }
+    String prefix = file.getName() + '.';
+    if(backupNaming == NAMING_COUNTER) {
+      long[] indexes = new long[names.length];
+      int n = 0;
+      for(int i = 0; i < names.length; i++) {
+        if(names[i].startsWith(prefix)) {
+          try {
+            long index = Long.parseLong(names[i].substring(prefix.length()));
+            if(index > 0) {
+              indexes[n++] = index;
+            }
+          } catch(NumberFormatException e) {
+            // not a backup
+          }
+        }
+      }
+      Arrays.sort(indexes, 0, n);
+      for(int i = 0; i < n; i++) {
+        backups.addLast(new File(fileName + '.' + indexes[i]));
+      }
+      if(n > 0) {
+        nextBackupIndex = indexes[n - 1] + 1;
+      }
+    } else {
+      String[] stamped = new String[names.length];
+      int n = 0;
+      for(int i = 0; i < names.length; i++) {
+        if(names[i].startsWith(prefix)
+           && isTimestamp(names[i].substring(prefix.length()))) {
+          stamped[n++] = names[i];
+        }
+      }
+      for(int i = 0; i < n; i++) {
+        stamped[i] = stamped[i].substring(prefix.length());
+      }
+      Arrays.sort(stamped, 0, n, TIMESTAMP_ORDER);
+      for(int i = 0; i < n; i++) {
+        backups.addLast(new File(fileName + '.' + stamped[i]));
+      }
+    }
+  }
+
+  /**
+     Return true if <code>suffix</code> is a time stamp of the backups,
+     possibly followed by a sequence number.
+   */
+  private static
+  boolean isTimestamp(String suffix) {
+    int length = TIMESTAMP_PATTERN.length();
+    if(suffix.length() < length) {
+      return false;
+    }
+    for(int i = 0; i < suffix.length(); i++) {
+      char c = suffix.charAt(i);
+      boolean separator = i < length ? TIMESTAMP_PATTERN.charAt(i) == '-'
+                                     : i == length;
+      if(separator ? c != '-' : (c < '0' || c > '9')) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+     Return the sequence number of the time stamp <code>suffix</code>,
+     zero if none.
+   */
+  private static
+  long sequence(String suffix) {
+    int length = TIMESTAMP_PATTERN.length();
+    if(suffix.length() <= length + 1) {
+      return 0;
+    }
+    try {
+      return Long.parseLong(suffix.substring(length + 1));
+    } catch(NumberFormatException e) {
+      return Long.MAX_VALUE;
+    }
+  }
+
+  /**
+     Get the name of the next backup of <code>file</code>.
+   */
+  private
+  File nextBackup(File file) {
+    if(backupNaming == NAMING_COUNTER) {
+      return new File(fileName + '.' + nextBackupIndex++);
+    }
+    String stamp = new SimpleDateFormat(TIMESTAMP_PATTERN).format(new Date());
+    File target = new File(fileName + '.' + stamp);
+    // several rollovers within a millisecond
+    for(int i = 1; target.exists(); i++) {
+      target = new File(fileName + '.' + stamp + '-' + i);
+    }
+    return target;
+  }
+
   public
   synchronized
   void setFile(String fileName, boolean append, boolean bufferedIO, int bufferSize)
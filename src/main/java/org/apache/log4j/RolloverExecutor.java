@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.log4j;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.helpers.LogLog;
+
+/**
+   Background thread of the asynchronous rollovers of an appender, see
+   {@link RollingFileAppender#setAsyncRollover} and {@link
+   DailyExRollingFileAppender#setAsyncRollover}.
+
+   <p>The tasks of the rollovers are run one at a time in the order they
+   were queued. The queue is bounded, the thread of a rollover waits
+   while it is full so that rollovers do not pile up faster than the
+   files are closed and renamed.
+
+   @since 1.3.6 */
+final class RolloverExecutor {
+
+  private final BlockingQueue queue;
+  private final ThreadPoolExecutor executor;
+  private boolean stopped;
+
+  RolloverExecutor(final String name, int capacity) {
+    queue = new ArrayBlockingQueue(Math.max(capacity, 1));
+    executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, queue,
+      new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "Rollover-" + name);
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    executor.prestartCoreThread();
+  }
+
+  /**
+     Queue a task, waiting while the queue is full. The task is run by
+     the calling thread once stopped.
+   */
+  synchronized
+  void execute(Runnable task) {
+    if(!stopped) {
+      try {
+        queue.put(new Guard(task));
+        return;
+      } catch(InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    new Guard(task).run();
+  }
+
+  /**
+     Stop once the queued tasks are run.
+
+     @param wait true to wait for the queued tasks.
+   */
+  void stop(boolean wait) {
+    synchronized(this) {
+      if(stopped) {
+        return;
+      }
+      stopped = true;
+      executor.shutdown();
+    }
+    if(wait) {
+      try {
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+      } catch(InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+     Log the exceptions of a task rather than losing the thread.
+   */
+  private static final class Guard implements Runnable {
+    private final Runnable task;
+
+    Guard(Runnable task) {
+      this.task = task;
+    }
+
+    public
+    void run() {
+      try {
+        task.run();
+      } catch(RuntimeException e) {
+        LogLog.error("Rollover task failed.", e);
+      }
+    }
+  }
+}
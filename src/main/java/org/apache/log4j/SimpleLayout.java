@@ -65,6 +65,18 @@ public class SimpleLayout extends Layout {
     return sbuf.toString();
   }
 
+  /**
+     Appends the level, " - " and the message to <code>buf</code>.
+
+     @since 1.3.6 */
+  public
+  void format(LoggingEvent event, StringBuilder buf) {
+    buf.append(event.getLevel().toString());
+    buf.append(" - ");
+    buf.append(event.getRenderedMessage());
+    buf.append(LINE_SEP);
+  }
+
 /**
      The SimpleLayout does not handle the throwable contained within
      {@link LoggingEvent LoggingEvents}. Thus, it returns
@@ -75,4 +87,13 @@ public class SimpleLayout extends Layout {
   boolean ignoresThrowable() {
     return true;
   }
+
+  /**
+     The SimpleLayout only reads the rendered message.
+
+     @since 1.3.6 */
+  public
+  int getRequiredFields() {
+    return MESSAGE;
+  }
 }
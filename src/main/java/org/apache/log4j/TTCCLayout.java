@@ -214,4 +214,21 @@ public class TTCCLayout extends DateLayout {
   boolean ignoresThrowable() {
     return true;
   }
+
+  /**
+     Returns the rendered message, and the thread name and the NDC
+     when printed.
+
+     @since 1.3.6 */
+  public
+  int getRequiredFields() {
+    int fields = MESSAGE;
+    if(threadPrinting) {
+      fields |= THREAD_NAME;
+    }
+    if(contextPrinting) {
+      fields |= NDC;
+    }
+    return fields;
+  }
 }
@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.log4j;
+
+import org.apache.log4j.spi.LoggingEvent;
+
+/** 
+ * Abstract superclass of the appenders which manage their own
+ * concurrency.
+ *
+ * <p>The {@link AppenderSkeleton#doAppend} method holds the appender's
+ * monitor while the filters, the layout and the I/O run, serializing
+ * all the logging threads. The {@link #doAppend} method of this class
+ * takes no lock: the threshold and the filter chain are evaluated and
+ * {@link #append} is called concurrently. Each subclass picks its own
+ * policy in <code>append</code>, for instance formatting outside of any
+ * lock and writing under a short one as {@link WriterAppender} does,
+ * handing events to a lock-free queue, or being fully concurrent.
+ *
+ * <p>Filters attached to these appenders are called concurrently and
+ * must be thread safe, which all the filters of log4j are.
+ *
+ * @since 1.3.6
+ * */
+public abstract class UnsynchronizedAppenderSkeleton extends AppenderSkeleton {
+
+  /**
+   * Create new instance.
+   */
+  public UnsynchronizedAppenderSkeleton() {
+    super();
+  }
+
+  /**
+    * This method performs threshold checks and invokes filters before
+    * delegating actual logging to the subclasses specific {@link
+    * AppenderSkeleton#append} method, without synchronization.
+    * */
+  public
+  void doAppend(LoggingEvent event) {
+    if(isAppendable(event)) {
+      this.append(event);
+    }
+  }
+}
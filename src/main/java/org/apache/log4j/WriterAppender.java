@@ -22,9 +22,13 @@ import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Timer;
+import java.util.TimerTask;
 
 import org.apache.log4j.helpers.LogLog;
 import org.apache.log4j.helpers.QuietWriter;
+import org.apache.log4j.spi.BatchAppender;
 import org.apache.log4j.spi.ErrorHandler;
 import org.apache.log4j.spi.LoggingEvent;
 
@@ -35,9 +39,26 @@ import org.apache.log4j.spi.LoggingEvent;
    WriterAppender appends log events to a {@link java.io.Writer} or an
    {@link java.io.OutputStream} depending on the user's choice.
 
+   <p>Events are appended without holding the appender's lock while
+   the filters run. When the layout is {@link Layout#isThreadSafe
+   thread safe} events are also formatted before the lock is taken, so
+   that formatting runs in parallel and only the writing is
+   serialized. {@link #subAppend} is always called with the lock held.
+
+   <p>Batches of events are written under a single lock acquisition and
+   flushed at most once, see {@link #doAppend(LoggingEvent[], int)}.
+
+   <p>When <b>ImmediateFlush</b> is false, the writer may still be
+   flushed once <b>FlushSize</b> bytes are pending, once the
+   oldest pending event is <b>FlushInterval</b> milliseconds old, or
+   after each event of at least the <b>FlushLevel</b> level, which
+   bounds the output lost in a crash while keeping most of the
+   throughput of buffered writing.
+
    @author Ceki G&uuml;lc&uuml;
    @since 1.1 */
-public class WriterAppender extends AppenderSkeleton {
+public class WriterAppender extends UnsynchronizedAppenderSkeleton
+  implements BatchAppender {
 
 
   /**
@@ -63,12 +84,97 @@ public class WriterAppender extends AppenderSkeleton {
      encoding.  */
   protected String encoding;
 
+  /**
+     Number of pending bytes which causes a flush, zero or less to
+     disable.
+
+     @since 1.3.6 */
+  protected int flushSize = 0;
+
+  /**
+     Maximum age in milliseconds of the oldest pending event before a
+     flush, zero or less to disable.
+
+     @since 1.3.6 */
+  protected long flushInterval = 0;
+
+  /**
+     Level from which each event is flushed, null to disable.
+
+     @since 1.3.6 */
+  protected Level flushLevel;
+
   /**
      This is the {@link QuietWriter quietWriter} where we will write
      to.
   */
   protected QuietWriter qw;
 
+  /**
+     Event formatted by {@link #append} before taking the lock, the
+     layout which formatted it and the result, handed to {@link
+     #subAppend}. Only accessed with the lock held.
+  */
+  private LoggingEvent formattedEvent;
+  private Layout formattedBy;
+  private String formatted;
+  private StringBuilder formattedBuilder;
+
+  /**
+     Buffer of each thread for the events formatted before the lock is
+     taken, and buffer of the events formatted with the lock held.
+     Both are taken while in use as formatting a message may log.
+  */
+  private static final ThreadLocal BUILDERS = new ThreadLocal();
+  private StringBuilder builder;
+
+  /**
+     Characters of a formatted event handed to the writer, only
+     accessed with the lock held.
+  */
+  private char[] chars;
+
+  /** Buffers larger than this are not kept. */
+  private static final int MAX_BUFFER_SIZE = 4096;
+
+  /**
+     Set while a batch is written, {@link #subAppend} then defers the
+     flush to the end of the batch by setting {@link #flushPending}.
+     Only accessed with the lock held.
+  */
+  private boolean batching;
+  private boolean flushPending;
+
+  /**
+     Bytes written since the last flush and time at which the first of
+     them was written, zero if none. Only accessed with the lock held.
+  */
+  private long unflushed;
+  private long unflushedSince;
+
+  /**
+     Bytes of each character in the charset of the writer, zero for
+     UTF-8 whose characters are counted one by one and -1 until known.
+     Only accessed with the lock held.
+  */
+  private int bytesPerChar = -1;
+
+  /**
+     Scheduled flush, null if none, and whether this appender is
+     counted in {@link #flushTimerUsers}. Only accessed with the lock
+     held.
+  */
+  private TimerTask flushTask;
+  private boolean flushTimerUser;
+
+  /**
+     Timer of the <b>FlushInterval</b> flushes of every appender and
+     number of open appenders which scheduled a flush. The timer is
+     cancelled when the last of them is reset.
+  */
+  private static Timer flushTimer;
+  private static int flushTimerUsers;
+
 
   /**
      This default constructor does nothing.  */
@@ -124,6 +230,72 @@ public class WriterAppender extends AppenderSkeleton {
     return immediateFlush;
   }
 
+  /**
+     The <b>FlushSize</b> option takes a number of bytes. When
+     <b>ImmediateFlush</b> is false, the writer is flushed once that
+     many bytes have been written since the last flush. It is disabled
+     by default.
+
+     <p>The bytes are counted exactly for UTF-8 and single byte
+     charsets. For other charsets each character counts for the
+     maximum number of bytes it may be encoded to.
+
+     @since 1.3.6 */
+  public
+  void setFlushSize(int flushSize) {
+    this.flushSize = flushSize;
+  }
+
+  /**
+     Returns value of the <b>FlushSize</b> option.
+
+     @since 1.3.6 */
+  public
+  int getFlushSize() {
+    return flushSize;
+  }
+
+  /**
+     The <b>FlushInterval</b> option takes a number of milliseconds.
+     When <b>ImmediateFlush</b> is false, the writer is flushed by a
+     background timer once the oldest event written since the last
+     flush is that old. It is disabled by default.
+
+     @since 1.3.6 */
+  public
+  void setFlushInterval(long flushInterval) {
+    this.flushInterval = flushInterval;
+  }
+
+  /**
+     Returns value of the <b>FlushInterval</b> option.
+
+     @since 1.3.6 */
+  public
+  long getFlushInterval() {
+    return flushInterval;
+  }
+
+  /**
+     The <b>FlushLevel</b> option takes a level. When
+     <b>ImmediateFlush</b> is false, the writer is still flushed after
+     each event of at least that level. It is disabled by default.
+
+     @since 1.3.6 */
+  public
+  void setFlushLevel(Level flushLevel) {
+    this.flushLevel = flushLevel;
+  }
+
+  /**
+     Returns value of the <b>FlushLevel</b> option.
+
+     @since 1.3.6 */
+  public
+  Level getFlushLevel() {
+    return flushLevel;
+  }
+
   /**
      Does nothing.
   */
@@ -133,8 +305,9 @@ public class WriterAppender extends AppenderSkeleton {
 
 
   /**
-     This method is called by the {@link AppenderSkeleton#doAppend}
-     method.
+     This method is called by the {@link
+     UnsynchronizedAppenderSkeleton#doAppend} method, without
+     synchronization.
 
      <p>If the output stream exists and is writable then write a log
      statement to the output stream. Otherwise, write a single warning
@@ -153,15 +326,132 @@ public class WriterAppender extends AppenderSkeleton {
     //      - check threshold
     //      - filter
     //      - append();
-    //        - checkEntryConditions();
-    //        - subAppend();
+    //        - format, if the layout is thread safe
+    //        - lock
+    //          - checkEntryConditions();
+    //          - subAppend();
+
+    Layout l = this.layout;
+    String s = null;
+    StringBuilder buf = null;
+    if(l != null && l.isThreadSafe() && !this.closed) {
+      if(l.formatsToBuilder()) {
+        buf = (StringBuilder) BUILDERS.get();
+        if(buf == null) {
+          buf = new StringBuilder();
+        } else {
+          BUILDERS.set(null);
+          buf.setLength(0);
+        }
+        l.format(event, buf);
+      } else {
+        s = l.format(event);
+      }
+    }
 
-    if(!checkEntryConditions()) {
-      return;
+    synchronized(this) {
+      if(!checkEntryConditions()) {
+        return;
+      }
+      if(s != null || buf != null) {
+        formattedEvent = event;
+        formattedBy = l;
+        formatted = s;
+        formattedBuilder = buf;
+      }
+      try {
+        subAppend(event);
+      } finally {
+        formattedEvent = null;
+        formattedBy = null;
+        formatted = null;
+        formattedBuilder = null;
+      }
+    }
+
+    if(buf != null && buf.capacity() <= MAX_BUFFER_SIZE) {
+      BUILDERS.set(buf);
     }
-    subAppend(event);
    }
 
+  /**
+     Append a batch of events. The threshold and filters are checked
+     and, with a thread safe layout, the events are formatted without
+     the lock. The events are then written with a single acquisition of
+     the lock and the writer is flushed once if any of them {@link
+     #shouldFlush requires it}.
+
+     @since 1.3.6 */
+  public
+  void doAppend(LoggingEvent[] events, int count) {
+    Layout l = this.layout;
+    boolean format = l != null && l.isThreadSafe() && !this.closed;
+    LoggingEvent[] accepted = new LoggingEvent[count];
+    String[] strings = format ? new String[count] : null;
+    int n = 0;
+
+    for(int i = 0; i < count; i++) {
+      if(isAppendable(events[i])) {
+        accepted[n] = events[i];
+        if(format) {
+          strings[n] = l.format(events[i]);
+        }
+        n++;
+      }
+    }
+
+    if(n == 0) {
+      return;
+    }
+
+    synchronized(this) {
+      subAppend(accepted, strings, l, n, false);
+    }
+  }
+
+  /**
+     Write <code>count</code> events already accepted by the threshold
+     and filters, flushing the writer at most once. This method must be
+     called with the lock held.
+
+     @param strings the events formatted by <code>l</code>, or null to
+     format them now. A null element is also formatted now.
+     @param flush true to flush the writer even if no event {@link
+     #shouldFlush requires it}.
+     @since 1.3.6 */
+  protected
+  void subAppend(LoggingEvent[] events, String[] strings, Layout l,
+                 int count, boolean flush) {
+    batching = true;
+    try {
+      for(int i = 0; i < count; i++) {
+        // a failed rollover may leave the appender without writer
+        if(!checkEntryConditions()) {
+          break;
+        }
+        if(strings != null && strings[i] != null) {
+          formattedEvent = events[i];
+          formattedBy = l;
+          formatted = strings[i];
+        }
+        subAppend(events[i]);
+        formattedEvent = null;
+      }
+    } finally {
+      formattedEvent = null;
+      formattedBy = null;
+      formatted = null;
+      batching = false;
+    }
+
+    if(flushPending || flush) {
+      flushPending = false;
+      if(this.qw != null) {
+        flushWriter();
+      }
+    }
+  }
+
   /**
      This method determines if there is a sense in attempting to append.
 
@@ -293,6 +583,9 @@ public class WriterAppender extends AppenderSkeleton {
   public synchronized void setWriter(Writer writer) {
     reset();
     this.qw = new QuietWriter(writer, errorHandler);
+    if(writer instanceof OutputStreamWriter) {
+      this.bytesPerChar = bytesPerChar(writer);
+    }
     //this.tp = new TracerPrintWriter(qw);
     writeHeader();
   }
@@ -301,32 +594,227 @@ public class WriterAppender extends AppenderSkeleton {
   /**
      Actual writing occurs here.
 
+     <p>Layouts which {@link Layout#format(LoggingEvent, StringBuilder)
+     format into a buffer} are used so, and the characters of the
+     buffer are written without creating a string.
+
      <p>Most subclasses of <code>WriterAppender</code> will need to
      override this method.
 
      @since 0.9.0 */
   protected
   void subAppend(LoggingEvent event) {
-    this.qw.write(this.layout.format(event));
+    if(event == formattedEvent && this.layout == formattedBy) {
+      if(formattedBuilder != null) {
+        write(formattedBuilder);
+      } else {
+        write(formatted);
+      }
+    } else if(this.layout.formatsToBuilder()) {
+      StringBuilder buf = this.builder;
+      if(buf == null) {
+        buf = new StringBuilder();
+      } else {
+        this.builder = null;
+        buf.setLength(0);
+      }
+      this.layout.format(event, buf);
+      write(buf);
+      if(buf.capacity() <= MAX_BUFFER_SIZE) {
+        this.builder = buf;
+      }
+    } else {
+      write(this.layout.format(event));
+    }
 
     if(layout.ignoresThrowable()) {
       String[] s = event.getThrowableStrRep();
       if (s != null) {
 	int len = s.length;
 	for(int i = 0; i < len; i++) {
-	  this.qw.write(s[i]);
-	  this.qw.write(Layout.LINE_SEP);
+	  write(s[i]);
+	  write(Layout.LINE_SEP);
 	}
       }
     }
 
     if(shouldFlush(event)) {
-      this.qw.flush();
+      if(batching) {
+        flushPending = true;
+      } else {
+        flushWriter();
+      }
+    } else if(flushInterval > 0 && flushTask == null && unflushed > 0) {
+      scheduleFlush(flushInterval);
+    }
+  }
+
+  /**
+     Flush the writer, with the lock held.
+   */
+  private
+  void flushWriter() {
+    this.qw.flush();
+    unflushed = 0;
+    unflushedSince = 0;
+  }
+
+  /**
+     Schedule a flush in <code>delay</code> milliseconds, with the lock
+     held.
+   */
+  private
+  void scheduleFlush(long delay) {
+    flushTask = new FlushTask();
+    synchronized(WriterAppender.class) {
+      if(!flushTimerUser) {
+        flushTimerUser = true;
+        flushTimerUsers++;
+      }
+      if(flushTimer == null) {
+        flushTimer = new Timer("log4j-flush", true);
+      }
+      flushTimer.schedule(flushTask, delay);
+    }
+  }
+
+  /**
+     Cancel the scheduled flush, if any, and the timer if no other
+     appender uses it, with the lock held.
+   */
+  private
+  void cancelFlush() {
+    if(flushTask != null) {
+      flushTask.cancel();
+      flushTask = null;
+    }
+    synchronized(WriterAppender.class) {
+      if(flushTimerUser) {
+        flushTimerUser = false;
+        if(--flushTimerUsers == 0 && flushTimer != null) {
+          flushTimer.cancel();
+          flushTimer = null;
+        }
+      }
+    }
+  }
+
+  /**
+     Flushes the writer once the oldest pending event is
+     <b>FlushInterval</b> milliseconds old.
+   */
+  private
+  final
+  class FlushTask extends TimerTask {
+    public
+    void run() {
+      synchronized(WriterAppender.this) {
+        if(flushTask != this) {
+          return;
+        }
+        flushTask = null;
+        if(closed || qw == null || unflushed == 0 || flushInterval <= 0) {
+          return;
+        }
+        long age = System.currentTimeMillis() - unflushedSince;
+        if(age >= flushInterval) {
+          flushWriter();
+        } else {
+          scheduleFlush(flushInterval - age);
+        }
+      }
+    }
+  }
+
+  /**
+     Write <code>s</code>, with the lock held.
+   */
+  private
+  void write(String s) {
+    if(s != null) {
+      this.qw.write(s);
+      written(s);
+    }
+  }
+
+  /**
+     Account for the bytes of the characters <code>s</code> written,
+     with the lock held.
+   */
+  private
+  void written(CharSequence s) {
+    if(flushSize <= 0 && flushInterval <= 0) {
+      return;
+    }
+    if(unflushed == 0) {
+      unflushedSince = System.currentTimeMillis();
+    }
+    if(bytesPerChar < 0) {
+      bytesPerChar = bytesPerChar(null);
+    }
+    int len = s.length();
+    if(bytesPerChar > 0) {
+      unflushed += (long) len * bytesPerChar;
+      return;
+    }
+    long bytes = len;
+    for(int i = 0; i < len; i++) {
+      char c = s.charAt(i);
+      if(c >= 0x80) {
+        // surrogates are 4 bytes per pair
+        bytes += (c < 0x800 || (c >= 0xD800 && c <= 0xDFFF)) ? 1 : 2;
+      }
     }
+    unflushed += bytes;
+  }
+
+  /**
+     Returns the bytes of each character in the charset of
+     <code>writer</code>, or of the <b>Encoding</b> option if the
+     writer does not tell it, zero for UTF-8.
+   */
+  private
+  int bytesPerChar(Writer writer) {
+    Charset charset = null;
+    try {
+      if(writer instanceof OutputStreamWriter) {
+        charset = Charset.forName(((OutputStreamWriter) writer).getEncoding());
+      } else if(getEncoding() != null) {
+        charset = Charset.forName(getEncoding());
+      }
+    } catch(RuntimeException e) {
+      // unknown or closed, use the default charset
+    }
+    if(charset == null) {
+      charset = Charset.defaultCharset();
+    }
+    if("UTF-8".equals(charset.name())) {
+      return 0;
+    }
+    if(!charset.canEncode()) {
+      return 1;
+    }
+    return (int) Math.ceil(charset.newEncoder().maxBytesPerChar());
   }
 
 
 
+  /**
+     Write the characters of <code>buf</code>, with the lock held.
+   */
+  private
+  void write(StringBuilder buf) {
+    int len = buf.length();
+    char[] c = this.chars;
+    if(c == null || c.length < len) {
+      c = new char[Math.max(len, 256)];
+    }
+    buf.getChars(0, len, c, 0);
+    this.qw.write(c, 0, len);
+    written(buf);
+    this.chars = (c.length <= MAX_BUFFER_SIZE) ? c : null;
+  }
+
   /**
      The WriterAppender requires a layout. Hence, this method returns
      <code>true</code>.
@@ -345,6 +833,10 @@ public class WriterAppender extends AppenderSkeleton {
   void reset() {
     closeWriter();
     this.qw = null;
+    unflushed = 0;
+    unflushedSince = 0;
+    bytesPerChar = -1;
+    cancelFlush();
     //this.tp = null;
   }
 
@@ -375,6 +867,26 @@ public class WriterAppender extends AppenderSkeleton {
     }
   }
   
+  /**
+     Returns the fields read by the layout, and the throwable if the
+     layout ignores it as it is then written by this appender. Every
+     field is returned when filters are attached. Subclasses which read
+     other fields should override this method.
+
+     @since 1.3.6 */
+  public
+  int getRequiredFields() {
+    Layout l = this.layout;
+    if(l == null || headFilter != null) {
+      return ALL;
+    }
+    int fields = l.getRequiredFields();
+    if(l.ignoresThrowable()) {
+      fields |= THROWABLE;
+    }
+    return fields;
+  }
+
   /**
    * Determines whether the writer should be flushed after
    * this event is written.
@@ -382,6 +894,12 @@ public class WriterAppender extends AppenderSkeleton {
    * @since 1.2.16
    */
   protected boolean shouldFlush(final LoggingEvent event) {
-     return immediateFlush;
+     if(immediateFlush) {
+       return true;
+     }
+     if(flushLevel != null && event.getLevel().isGreaterOrEqual(flushLevel)) {
+       return true;
+     }
+     return flushSize > 0 && unflushed >= flushSize;
   }
 }
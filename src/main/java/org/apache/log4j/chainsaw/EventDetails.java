@@ -82,7 +82,7 @@ class EventDetails {
      */
     EventDetails(LoggingEvent aEvent) {
 
-        this(aEvent.timeStamp,
+        this(aEvent.getTimeStamp(),
              aEvent.getLevel(),
              aEvent.getLoggerName(),
              aEvent.getNDC(),
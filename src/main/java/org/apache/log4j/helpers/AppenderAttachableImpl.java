@@ -18,6 +18,8 @@
 package org.apache.log4j.helpers;
 
 import org.apache.log4j.spi.AppenderAttachable;
+import org.apache.log4j.spi.BatchAppender;
+import org.apache.log4j.spi.EventFieldConsumer;
 import org.apache.log4j.spi.LoggingEvent;
 
 import org.apache.log4j.Appender;
@@ -69,6 +71,52 @@ public class AppenderAttachableImpl implements AppenderAttachable {
     return size;
   }
 
+  /**
+     Call the <code>doAppend</code> method on all attached appenders
+     for the first <code>count</code> events of <code>events</code>.
+     Appenders implementing {@link BatchAppender} receive all the
+     events in a single call.
+
+     @since 1.3.6 */
+  public
+  int appendLoopOnAppenders(LoggingEvent[] events, int count) {
+    int size = 0;
+    Appender appender;
+
+    if(appenderList != null) {
+      size = appenderList.size();
+      for(int i = 0; i < size; i++) {
+	appender = (Appender) appenderList.elementAt(i);
+	if(appender instanceof BatchAppender) {
+	  ((BatchAppender) appender).doAppend(events, count);
+	} else {
+	  for(int j = 0; j < count; j++) {
+	    appender.doAppend(events[j]);
+	  }
+	}
+      }
+    }
+    return size;
+  }
+
+
+  /**
+     Returns the fields of the events read by at least one of
+     <code>appenders</code>, see {@link EventFieldConsumer}. Appenders
+     which do not implement this interface read every field.
+
+     @since 1.3.6 */
+  public
+  static
+  int getRequiredFields(Appender[] appenders) {
+    int fields = 0;
+    for(int i = 0; i < appenders.length; i++) {
+      if(!(appenders[i] instanceof EventFieldConsumer))
+	return EventFieldConsumer.ALL;
+      fields |= ((EventFieldConsumer) appenders[i]).getRequiredFields();
+    }
+    return fields;
+  }
 
   /**
      Get all attached appenders as an Enumeration. If there are no
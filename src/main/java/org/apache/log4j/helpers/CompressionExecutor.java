@@ -0,0 +1,537 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.log4j.helpers;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+import org.apache.log4j.spi.LoggerRepository;
+
+/**
+   <code>CompressionExecutor</code> compresses rolled over log files in
+   the background with {@link GZipUtils}, deleting the originals.
+
+   <p>At most <b>QueueSize</b> files wait or are being compressed, a
+   file submitted beyond is left uncompressed. The files of a directory
+   are compressed one at a time, in the order they were submitted, so
+   that compressions do not contend for a disk, while the files of
+   different directories are compressed by up to <b>PoolSize</b>
+   threads. The directory stands for the disk, which Java 6 has no way
+   to tell.
+
+   <p>The options of the shared instance are set by the appenders which
+   use it, see {@link #setOption}, a warning is logged when two of them
+   set an option to different values.
+
+   <p>The shared instance is drained when the logger repositories it is
+   registered with are shut down, see {@link #register} and {@link
+   #shutdown}.
+
+   @since 1.3.6 */
+public class CompressionExecutor implements ShutdownEventListener {
+
+  /** Default number of threads. */
+  public static final int DEFAULT_POOL_SIZE = 2;
+
+  /** Default number of files waiting or being compressed. */
+  public static final int DEFAULT_QUEUE_SIZE = 64;
+
+  /** Default time waited for the pending compressions at shutdown, 5s. */
+  public static final long DEFAULT_SHUTDOWN_TIMEOUT = 5000;
+
+  private static final CompressionExecutor INSTANCE =
+    new CompressionExecutor(DEFAULT_POOL_SIZE, DEFAULT_QUEUE_SIZE);
+
+  private final ThreadPoolExecutor executor;
+
+  /** Files waiting, by directory, present while a thread compresses them. */
+  private final Map queues = new HashMap();
+
+  /** Files being compressed. */
+  private final List active = new ArrayList();
+
+  private long shutdownTimeout = DEFAULT_SHUTDOWN_TIMEOUT;
+
+  private int queueSize;
+
+  /** Size of the blocks deflated concurrently, zero to deflate at once. */
+  private int blockSize;
+
+  private int bufferSize = GZipUtils.BUFFER;
+
+  private int level = Deflater.DEFAULT_COMPRESSION;
+
+  /** Number of files waiting or being compressed. */
+  private int pendingCount;
+
+  private long completedCount;
+  private long failedCount;
+  private long rejectedCount;
+  private long bytesSaved;
+
+  /** Owner and value of the options set by owners, by name, guarded by this. */
+  private final Map options = new HashMap();
+
+  /** Repositories this executor listens to, guarded by this. */
+  private final Map repositories = new WeakHashMap();
+
+  /**
+     Create an executor of <code>poolSize</code> threads accepting at
+     most <code>queueSize</code> files.
+   */
+  public
+  CompressionExecutor(int poolSize, int queueSize) {
+    poolSize = Math.max(poolSize, 1);
+    executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+      new LinkedBlockingQueue(), new ThreadFactory() {
+        private int count;
+
+        public synchronized Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "CompressionExecutor-" + (count++));
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    executor.allowCoreThreadTimeOut(true);
+    this.queueSize = queueSize;
+  }
+
+  /**
+     Get the instance shared by the appenders.
+   */
+  public static
+  CompressionExecutor getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+     Set the number of threads, at least one.
+   */
+  public
+  synchronized
+  void setPoolSize(int poolSize) {
+    poolSize = Math.max(poolSize, 1);
+    if(poolSize > executor.getMaximumPoolSize()) {
+      executor.setMaximumPoolSize(poolSize);
+      executor.setCorePoolSize(poolSize);
+    } else {
+      executor.setCorePoolSize(poolSize);
+      executor.setMaximumPoolSize(poolSize);
+    }
+  }
+
+  /**
+     Get the number of threads.
+   */
+  public
+  int getPoolSize() {
+    return executor.getMaximumPoolSize();
+  }
+
+  /**
+     Set the number of files which may wait or be compressed.
+   */
+  public
+  synchronized
+  void setQueueSize(int queueSize) {
+    this.queueSize = queueSize;
+  }
+
+  /**
+     Get the number of files which may wait or be compressed.
+   */
+  public
+  synchronized
+  int getQueueSize() {
+    return queueSize;
+  }
+
+  /**
+     Set the size of the blocks of a file deflated concurrently, see
+     {@link GZipUtils#compressParallel(File, boolean, int, int, int)}.
+     Files are deflated by a single thread if zero, the default.
+   */
+  public
+  synchronized
+  void setBlockSize(int blockSize) {
+    this.blockSize = blockSize;
+  }
+
+  /**
+     Get the size of the blocks of a file deflated concurrently.
+   */
+  public
+  synchronized
+  int getBlockSize() {
+    return blockSize;
+  }
+
+  /**
+     Set the size of the buffers of the compressions, 4KB by default.
+   */
+  public
+  synchronized
+  void setBufferSize(int bufferSize) {
+    if(bufferSize < 1) {
+      throw new IllegalArgumentException("The bufferSize argument ("+bufferSize+
+					 ") is not positive.");
+    }
+    this.bufferSize = bufferSize;
+  }
+
+  /**
+     Get the size of the buffers of the compressions.
+   */
+  public
+  synchronized
+  int getBufferSize() {
+    return bufferSize;
+  }
+
+  /**
+     Set the compression level, 0-9 or -1 for the default.
+   */
+  public
+  synchronized
+  void setLevel(int level) {
+    if(level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+      throw new IllegalArgumentException("The level argument ("+level+
+					 ") is not between -1 and 9.");
+    }
+    this.level = level;
+  }
+
+  /**
+     Get the compression level.
+   */
+  public
+  synchronized
+  int getLevel() {
+    return level;
+  }
+
+  /**
+     Set the time in milliseconds waited for the pending compressions
+     when a repository is shut down, zero to wait until they are done.
+   */
+  public
+  synchronized
+  void setShutdownTimeout(long shutdownTimeout) {
+    this.shutdownTimeout = shutdownTimeout;
+  }
+
+  /**
+     Get the time in milliseconds waited for the pending compressions
+     when a repository is shut down.
+   */
+  public
+  synchronized
+  long getShutdownTimeout() {
+    return shutdownTimeout;
+  }
+
+  /**
+     Set an option on behalf of <code>owner</code>, usually the name of
+     an appender. A warning is logged if another owner set the option to
+     another value, which is overridden.
+
+     @param option PoolSize, QueueSize, BlockSize, BufferSize or Level.
+   */
+  public
+  synchronized
+  void setOption(String owner, String option, int value) {
+    Object[] previous = (Object[]) options.get(option);
+    if(previous != null && !previous[0].equals(owner)
+       && ((Integer) previous[1]).intValue() != value) {
+      LogLog.warn("The shared compression option " + option + " set to "
+                  + previous[1] + " by [" + previous[0] + "] is overridden with "
+                  + value + " by [" + owner + "].");
+    }
+    try {
+      if("PoolSize".equalsIgnoreCase(option)) {
+        setPoolSize(value);
+      } else if("QueueSize".equalsIgnoreCase(option)) {
+        setQueueSize(value);
+      } else if("BlockSize".equalsIgnoreCase(option)) {
+        setBlockSize(value);
+      } else if("BufferSize".equalsIgnoreCase(option)) {
+        setBufferSize(value);
+      } else if("Level".equalsIgnoreCase(option)) {
+        setLevel(value);
+      } else {
+        LogLog.warn("Unknown compression option " + option + ".");
+        return;
+      }
+    } catch(IllegalArgumentException e) {
+      LogLog.warn(e.getMessage());
+      return;
+    }
+    options.put(option, new Object[] { String.valueOf(owner), new Integer(value) });
+  }
+
+  /**
+     Queue the compression of <code>file</code>.
+
+     @return false if the file is left uncompressed because
+     <b>QueueSize</b> files are pending.
+   */
+  public
+  boolean compress(File file) {
+    String disk = getDisk(file);
+    synchronized(this) {
+      if(pendingCount >= queueSize) {
+        rejectedCount++;
+        LogLog.warn("Too many pending compressions, leaving [" + file
+                    + "] uncompressed.");
+        return false;
+      }
+      pendingCount++;
+      LinkedList queue = (LinkedList) queues.get(disk);
+      if(queue != null) {
+        queue.addLast(file);
+        return true;
+      }
+      queue = new LinkedList();
+      queue.addLast(file);
+      queues.put(disk, queue);
+    }
+    executor.execute(new Worker(disk));
+    return true;
+  }
+
+  /**
+     Wait until the pending compressions are done.
+
+     @param timeout the maximum time to wait in milliseconds, zero to
+     wait until done.
+     @return true if no compression is pending.
+   */
+  public
+  synchronized
+  boolean drain(long timeout) {
+    long end = System.currentTimeMillis() + timeout;
+    try {
+      while(pendingCount > 0) {
+        if(timeout <= 0) {
+          wait();
+        } else {
+          long remaining = end - System.currentTimeMillis();
+          if(remaining <= 0) {
+            break;
+          }
+          wait(remaining);
+        }
+      }
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return pendingCount == 0;
+  }
+
+  /**
+     Drain this executor when <code>repository</code> is shut down. An
+     executor is registered at most once with a repository.
+   */
+  public
+  void register(LoggerRepository repository) {
+    synchronized(this) {
+      if(repository == null || repositories.containsKey(repository)) {
+        return;
+      }
+      repositories.put(repository, Boolean.TRUE);
+    }
+    repository.addShutdownEventListener(this);
+  }
+
+  /**
+     Wait until the pending compressions are done, at most
+     <b>ShutdownTimeout</b> milliseconds, called when a registered
+     logger repository is shut down. The files still pending are logged
+     and left to the compression threads.
+   */
+  public
+  synchronized
+  void shutdown() {
+    if(!drain(shutdownTimeout)) {
+      LogLog.warn(pendingCount + " compressions still pending at shutdown: "
+                  + getPendingFiles() + ".");
+    }
+  }
+
+  /**
+     Get the files waiting or being compressed.
+   */
+  public
+  synchronized
+  List getPendingFiles() {
+    List files = new ArrayList(active);
+    for(Iterator i = queues.values().iterator(); i.hasNext();) {
+      files.addAll((List) i.next());
+    }
+    return files;
+  }
+
+  /**
+     Get the number of files waiting or being compressed.
+   */
+  public
+  synchronized
+  int getPendingCount() {
+    return pendingCount;
+  }
+
+  /**
+     Get the number of files compressed.
+   */
+  public
+  synchronized
+  long getCompletedCount() {
+    return completedCount;
+  }
+
+  /**
+     Get the number of files which could not be compressed.
+   */
+  public
+  synchronized
+  long getFailedCount() {
+    return failedCount;
+  }
+
+  /**
+     Get the number of files left uncompressed as too many were pending.
+   */
+  public
+  synchronized
+  long getRejectedCount() {
+    return rejectedCount;
+  }
+
+  /**
+     Get the difference between the sizes of the files compressed and
+     the sizes of their compressed forms.
+   */
+  public
+  synchronized
+  long getBytesSaved() {
+    return bytesSaved;
+  }
+
+  /**
+     Get the key of the disk of <code>file</code>, its directory.
+   */
+  private static
+  String getDisk(File file) {
+    File dir = file.getAbsoluteFile().getParentFile();
+    if(dir == null) {
+      return "";
+    }
+    try {
+      return dir.getCanonicalPath();
+    } catch(IOException e) {
+      return dir.getPath();
+    }
+  }
+
+  /**
+     Compress <code>file</code>, returning the bytes saved or -1 if it
+     does not exist.
+   */
+  private
+  long compressFile(File file) throws IOException {
+    if(!file.exists()) {
+      return -1;
+    }
+    int blockSize;
+    int bufferSize;
+    int level;
+    synchronized(this) {
+      blockSize = this.blockSize;
+      bufferSize = this.bufferSize;
+      level = this.level;
+    }
+    long size = file.length();
+    if(blockSize > 0 && size > blockSize) {
+      GZipUtils.compressParallel(file, true, blockSize, bufferSize, level);
+    } else {
+      GZipUtils.compress(file, true, bufferSize, level);
+    }
+    return size - new File(file.getPath() + GZipUtils.EXT).length();
+  }
+
+  /**
+     Compresses the files of a directory until none is waiting.
+   */
+  private final class Worker implements Runnable {
+    private final String disk;
+
+    Worker(String disk) {
+      this.disk = disk;
+    }
+
+    public
+    void run() {
+      while(true) {
+        File file;
+        synchronized(CompressionExecutor.this) {
+          LinkedList queue = (LinkedList) queues.get(disk);
+          if(queue.isEmpty()) {
+            queues.remove(disk);
+            return;
+          }
+          file = (File) queue.removeFirst();
+          active.add(file);
+        }
+        long saved = -1;
+        boolean failed = false;
+        try {
+          saved = compressFile(file);
+        } catch(IOException e) {
+          failed = true;
+          LogLog.error("Failed to compress [" + file.getName() + "].", e);
+        } catch(RuntimeException e) {
+          failed = true;
+          LogLog.error("Failed to compress [" + file.getName() + "].", e);
+        }
+        synchronized(CompressionExecutor.this) {
+          pendingCount--;
+          active.remove(file);
+          if(failed) {
+            failedCount++;
+          } else if(saved >= 0) {
+            completedCount++;
+            bytesSaved += saved;
+          }
+          CompressionExecutor.this.notifyAll();
+        }
+      }
+    }
+  }
+}
@@ -50,8 +50,28 @@ public class CountingQuietWriter extends QuietWriter {
     }
   }
 
+  /**
+     @since 1.3.6 */
+  public
+  void write(char[] cbuf, int off, int len) {
+    try {
+      out.write(cbuf, off, len);
+      count += len;
+    }
+    catch(IOException e) {
+      errorHandler.error("Write failure.", e, ErrorCode.WRITE_FAILURE);
+    }
+  }
+
+  /**
+     Get the number of characters written, or the exact number of
+     bytes of the file when writing to a {@link FileChannelWriter}.
+   */
   public
   long getCount() {
+    if(out instanceof FileChannelWriter) {
+      return ((FileChannelWriter) out).getCount();
+    }
     return count;
   }
 
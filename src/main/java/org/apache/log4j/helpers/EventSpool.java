@@ -0,0 +1,359 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.log4j.helpers;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.BufferOverflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Category;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LocationInfo;
+import org.apache.log4j.spi.LoggerRepository;
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.ThrowableInformation;
+
+/**
+   <code>EventSpool</code> is a first in, first out store of {@link
+   LoggingEvent LoggingEvents} backed by a memory-mapped file, used by
+   the {@link org.apache.log4j.AsyncAppender} to hold the events which
+   do not fit in its buffer.
+
+   <p>Events are written in a compact binary form: the time stamp,
+   the level, the logger name, the rendered message, the thread name,
+   the NDC, the throwable representation, the location information if
+   requested and the MDC, the values of which are kept as strings.
+   Events read back are equivalent to deserialized events, their logger
+   is looked up in the repository of the logger of the event written.
+
+   <p>The file is filled from its start and is rewound once every event
+   written has been read, so that a spool which is written faster than
+   it is read eventually refuses events until it is emptied.
+
+   <p>This class is not thread safe, callers must synchronize.
+
+   @since 1.3.6 */
+public class EventSpool {
+
+  private static final String ENCODING = "UTF-8";
+
+  private final File file;
+  private final RandomAccessFile raf;
+  private final MappedByteBuffer map;
+
+  /** Position of the next event to read. */
+  private int readPosition;
+
+  /** Number of events written and not read yet. */
+  private int count;
+
+  /** Levels of the events written, by value, to restore custom levels. */
+  private final Map levels = new HashMap();
+
+  /**
+     Repositories of the loggers of the events written, the index of
+     which is written with each event to look its logger up.
+  */
+  private final List repositories = new ArrayList();
+
+  private boolean closed;
+
+  /**
+     Create a spool of at most <code>capacity</code> bytes in the given
+     file, replacing its content.
+   */
+  public
+  EventSpool(File file, int capacity) throws IOException {
+    if(capacity < 1) {
+      throw new IllegalArgumentException("The capacity argument ("+capacity+
+			    ") is not a positive integer.");
+    }
+    this.file = file;
+    raf = new RandomAccessFile(file, "rw");
+    try {
+      raf.setLength(0);
+      map = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    } catch(IOException e) {
+      raf.close();
+      throw e;
+    }
+  }
+
+  /**
+     Get the file backing this spool.
+   */
+  public
+  File getFile() {
+    return file;
+  }
+
+  /**
+     Get the capacity of this spool in bytes.
+   */
+  public
+  int getCapacity() {
+    return map.capacity();
+  }
+
+  /**
+     Get the number of events written and not read yet.
+   */
+  public
+  int size() {
+    return count;
+  }
+
+  /**
+     Return true if every event written has been read.
+   */
+  public
+  boolean isEmpty() {
+    return count == 0;
+  }
+
+  /**
+     Write an event at the end of the spool.
+
+     @param event the event.
+     @param locationInfo true if the location information of the event
+     should be written, it must then have been extracted already.
+     @return false if the event does not fit in the remaining space or
+     the spool is closed.
+   */
+  public
+  boolean write(LoggingEvent event, boolean locationInfo) {
+    if(closed) {
+      return false;
+    }
+    int start = map.position();
+    try {
+      map.putLong(event.getTimeStamp());
+      Level level = event.getLevel();
+      map.putInt(level.toInt());
+      levels.put(new Integer(level.toInt()), level);
+      putString(event.getLoggerName());
+      map.putInt(indexOf(event.getLogger()));
+      putString(event.getFQNOfLoggerClass());
+      putString(event.getRenderedMessage());
+      putString(event.getThreadName());
+      putString(event.getNDC());
+      putStrings(event.getThrowableStrRep());
+      if(locationInfo) {
+        LocationInfo info = event.getLocationInformation();
+        map.put((byte) 1);
+        putString(info.getFileName());
+        putString(info.getClassName());
+        putString(info.getMethodName());
+        putString(info.getLineNumber());
+      } else {
+        map.put((byte) 0);
+      }
+      Map properties = event.getProperties();
+      map.putInt(properties.size());
+      for(Iterator i = properties.entrySet().iterator(); i.hasNext();) {
+        Map.Entry entry = (Map.Entry) i.next();
+        putString(String.valueOf(entry.getKey()));
+        putString(String.valueOf(entry.getValue()));
+      }
+    } catch(BufferOverflowException e) {
+      map.position(start);
+      return false;
+    }
+    count++;
+    return true;
+  }
+
+  /**
+     Read at most <code>length</code> events from the start of the spool
+     into <code>events</code> from index <code>offset</code>, rewinding
+     the spool once it is empty.
+
+     @return the number of events read.
+   */
+  public
+  int read(LoggingEvent[] events, int offset, int length) {
+    int n = 0;
+    if(closed) {
+      return n;
+    }
+    int end = map.position();
+    map.position(readPosition);
+    try {
+      while(n < length && count > 0) {
+        events[offset + n] = readEvent();
+        n++;
+        count--;
+      }
+    } finally {
+      readPosition = map.position();
+      if(count == 0) {
+        readPosition = 0;
+        map.position(0);
+      } else {
+        map.position(end);
+      }
+    }
+    return n;
+  }
+
+  /**
+     Close the spool and delete its file. Events not read are lost.
+   */
+  public
+  void close() {
+    if(closed) {
+      return;
+    }
+    closed = true;
+    count = 0;
+    try {
+      raf.close();
+    } catch(IOException e) {
+      LogLog.warn("Could not close spool file ["+file+"].", e);
+    }
+    // The mapping is only released once garbage collected, which may
+    // prevent the deletion on some platforms.
+    if(!file.delete()) {
+      file.deleteOnExit();
+    }
+  }
+
+  /**
+     Return the index of the repository of <code>logger</code> in
+     {@link #repositories}, -1 if unknown.
+   */
+  private
+  int indexOf(Category logger) {
+    LoggerRepository repository = (logger == null) ? null
+                                  : logger.getLoggerRepository();
+    if(repository == null) {
+      return -1;
+    }
+    int index = repositories.indexOf(repository);
+    if(index < 0) {
+      index = repositories.size();
+      repositories.add(repository);
+    }
+    return index;
+  }
+
+  private
+  LoggingEvent readEvent() {
+    long timeStamp = map.getLong();
+    int value = map.getInt();
+    Level level = (Level) levels.get(new Integer(value));
+    if(level == null) {
+      level = Level.toLevel(value);
+    }
+    String loggerName = getString();
+    int repository = map.getInt();
+    String fqn = getString();
+    String message = getString();
+    String threadName = getString();
+    String ndc = getString();
+    String[] rep = getStrings();
+    LocationInfo info = null;
+    if(map.get() != 0) {
+      String fileName = getString();
+      String className = getString();
+      String methodName = getString();
+      info = new LocationInfo(fileName, className, methodName, getString());
+    }
+    int size = map.getInt();
+    Map properties = null;
+    if(size > 0) {
+      properties = new HashMap();
+      for(int i = 0; i < size; i++) {
+        String key = getString();
+        properties.put(key, getString());
+      }
+    }
+    Logger logger = (repository < 0) ? Logger.getLogger(loggerName)
+      : ((LoggerRepository) repositories.get(repository)).getLogger(loggerName);
+    return new LoggingEvent(fqn, logger, timeStamp,
+                            level, message, threadName,
+                            (rep == null) ? null : new ThrowableInformation(rep),
+                            ndc, info, properties);
+  }
+
+  private
+  void putString(String s) {
+    if(s == null) {
+      map.putInt(-1);
+      return;
+    }
+    byte[] bytes;
+    try {
+      bytes = s.getBytes(ENCODING);
+    } catch(UnsupportedEncodingException e) {
+      bytes = s.getBytes();
+    }
+    map.putInt(bytes.length);
+    map.put(bytes);
+  }
+
+  private
+  void putStrings(String[] s) {
+    if(s == null) {
+      map.putInt(-1);
+      return;
+    }
+    map.putInt(s.length);
+    for(int i = 0; i < s.length; i++) {
+      putString(s[i]);
+    }
+  }
+
+  private
+  String getString() {
+    int length = map.getInt();
+    if(length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    map.get(bytes);
+    try {
+      return new String(bytes, ENCODING);
+    } catch(UnsupportedEncodingException e) {
+      return new String(bytes);
+    }
+  }
+
+  private
+  String[] getStrings() {
+    int length = map.getInt();
+    if(length < 0) {
+      return null;
+    }
+    String[] s = new String[length];
+    for(int i = 0; i < length; i++) {
+      s[i] = getString();
+    }
+    return s;
+  }
+}
@@ -0,0 +1,248 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.log4j.helpers;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+   <code>FileChannelWriter</code> encodes characters with a single
+   {@link CharsetEncoder} into a reused direct {@link ByteBuffer} which
+   is written to a {@link FileChannel} when full or flushed.
+
+   <p>Unlike an {@link java.io.OutputStreamWriter} over a {@link
+   java.io.FileOutputStream}, strings are not copied into intermediate
+   arrays by the writer and the bytes are handed to the channel without
+   a further copy. The number of bytes written, including those still
+   buffered, is tracked exactly, see {@link #getCount}.
+
+   <p>Subclasses may write to another buffer than the channel, see
+   {@link MappedFileWriter}.
+
+   <p>This class is not thread safe, callers must synchronize.
+
+   @since 1.3.6 */
+public class FileChannelWriter extends Writer {
+
+  /** Number of characters encoded at once. */
+  private static final int CHAR_BUFFER_SIZE = 1024;
+
+  protected final FileChannel channel;
+  private final CharsetEncoder encoder;
+  private ByteBuffer bytes;
+  private final CharBuffer chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+
+  /** Number of bytes handed to the channel. */
+  private long written;
+
+  private boolean closed;
+
+  /**
+     Create a writer appending to <code>channel</code> from its current
+     position.
+
+     @param channel the channel, closed with this writer.
+     @param charset the charset, unmappable characters are replaced.
+     @param bufferSize the capacity of the byte buffer.
+   */
+  public
+  FileChannelWriter(FileChannel channel, Charset charset, int bufferSize)
+                                                           throws IOException {
+    this(channel, charset);
+    bytes = ByteBuffer.allocateDirect(Math.max(bufferSize,
+                                      (int) Math.ceil(encoder.maxBytesPerChar())));
+    written = channel.position();
+  }
+
+  /**
+     Create a writer for subclasses which set the buffer with {@link
+     #setBuffer}.
+   */
+  protected
+  FileChannelWriter(FileChannel channel, Charset charset) {
+    this.channel = channel;
+    encoder = charset.newEncoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+  }
+
+  /**
+     Get the buffer the characters are encoded into.
+   */
+  protected
+  ByteBuffer getBuffer() {
+    return bytes;
+  }
+
+  /**
+     Set the buffer the characters are encoded into.
+   */
+  protected
+  void setBuffer(ByteBuffer buffer) {
+    bytes = buffer;
+  }
+
+  /**
+     Get the number of bytes of the file, that is the position of the
+     channel when this writer was created plus the bytes written since,
+     buffered or not.
+   */
+  public
+  long getCount() {
+    return written + bytes.position();
+  }
+
+  public
+  void write(int c) throws IOException {
+    ensureOpen();
+    if(!chars.hasRemaining()) {
+      encode(false);
+    }
+    chars.put((char) c);
+    encode(false);
+  }
+
+  public
+  void write(char[] cbuf, int off, int len) throws IOException {
+    ensureOpen();
+    while(len > 0) {
+      int n = Math.min(len, chars.remaining());
+      chars.put(cbuf, off, n);
+      off += n;
+      len -= n;
+      encode(false);
+    }
+  }
+
+  public
+  void write(String s, int off, int len) throws IOException {
+    ensureOpen();
+    char[] a = chars.array();
+    while(len > 0) {
+      int position = chars.position();
+      int n = Math.min(len, chars.remaining());
+      s.getChars(off, off + n, a, position);
+      chars.position(position + n);
+      off += n;
+      len -= n;
+      encode(false);
+    }
+  }
+
+  /**
+     Write the buffered bytes to the channel. A trailing high surrogate
+     is kept until the next write.
+   */
+  public
+  void flush() throws IOException {
+    ensureOpen();
+    drain();
+  }
+
+  /**
+     Flush the buffered bytes and force them to the storage device.
+
+     @param metaData true to also force the metadata of the file.
+   */
+  public
+  void force(boolean metaData) throws IOException {
+    flush();
+    channel.force(metaData);
+  }
+
+  /**
+     Flush the buffered characters and bytes and close the channel.
+   */
+  public
+  void close() throws IOException {
+    if(closed) {
+      return;
+    }
+    try {
+      encode(true);
+      while(encoder.flush(bytes).isOverflow()) {
+        drain();
+      }
+      flush();
+    } finally {
+      closed = true;
+      closeChannel();
+    }
+  }
+
+  /**
+     Close the channel, called once by {@link #close}.
+   */
+  protected
+  void closeChannel() throws IOException {
+    channel.close();
+  }
+
+  /**
+     Encode the pending characters, draining the byte buffer whenever
+     it is full.
+   */
+  private
+  void encode(boolean endOfInput) throws IOException {
+    chars.flip();
+    try {
+      while(true) {
+        CoderResult result = encoder.encode(chars, bytes, endOfInput);
+        if(result.isOverflow()) {
+          drain();
+        } else {
+          if(result.isError()) {
+            result.throwException();
+          }
+          break;
+        }
+      }
+    } finally {
+      chars.compact();
+    }
+  }
+
+  /**
+     Make room in the buffer by writing its content to the channel.
+   */
+  protected
+  void drain() throws IOException {
+    bytes.flip();
+    try {
+      while(bytes.hasRemaining()) {
+        written += channel.write(bytes);
+      }
+    } finally {
+      bytes.compact();
+    }
+  }
+
+  protected
+  void ensureOpen() throws IOException {
+    if(closed) {
+      throw new IOException("Writer closed.");
+    }
+  }
+}
@@ -1,6 +1,16 @@
 package org.apache.log4j.helpers;
 
 import java.io.*;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -26,6 +36,11 @@ public abstract class GZipUtils {
      */
     public static final String EXT = ".gz";
 
+    /**
+     * Threads deflating the blocks, created on first use.
+     */
+    private static ExecutorService blockPool;
+
     /**
      * 数据压缩
      *
@@ -68,18 +83,22 @@ public abstract class GZipUtils {
      * @throws IOException the io exception
      */
     public static void compress(File file, boolean delete) throws IOException {
-        FileInputStream fis = new FileInputStream(file);
-        FileOutputStream fos = new FileOutputStream(file.getPath() + EXT);
-
-        compress(fis, fos);
-
-        fis.close();
-        fos.flush();
-        fos.close();
+        compress(file, delete, BUFFER, Deflater.DEFAULT_COMPRESSION);
+    }
 
-        if (delete) {
-            file.delete();
-        }
+    /**
+     * 文件压缩, the compressed file is deleted if the compression fails.
+     *
+     * @param file       the file
+     * @param delete     是否删除原始文件
+     * @param bufferSize the size of the buffers
+     * @param level      the compression level, 0-9 or -1 for the default
+     * @throws IOException the io exception
+     * @since 1.3.6
+     */
+    public static void compress(File file, boolean delete, int bufferSize, int level)
+            throws IOException {
+        compress(file, delete, bufferSize, level, 0, null);
     }
 
     /**
@@ -91,12 +110,27 @@ public abstract class GZipUtils {
      */
     public static void compress(InputStream is, OutputStream os)
             throws IOException {
+        compress(is, os, BUFFER, Deflater.DEFAULT_COMPRESSION);
+    }
 
-        GZIPOutputStream gos = new GZIPOutputStream(os, BUFFER);
+    /**
+     * 数据压缩
+     *
+     * @param is         the is
+     * @param os         the os
+     * @param bufferSize the size of the buffers
+     * @param level      the compression level, 0-9 or -1 for the default
+     * @throws IOException the io exception
+     * @since 1.3.6
+     */
+    public static void compress(InputStream is, OutputStream os, int bufferSize, int level)
+            throws IOException {
+
+        GZIPOutputStream gos = new LevelGZIPOutputStream(os, bufferSize, level);
 
         int count;
-        byte data[] = new byte[BUFFER];
-        while ((count = is.read(data, 0, BUFFER)) != -1) {
+        byte data[] = new byte[bufferSize];
+        while ((count = is.read(data, 0, bufferSize)) != -1) {
             gos.write(data, 0, count);
         }
 
@@ -106,6 +140,213 @@ public abstract class GZipUtils {
         gos.close();
     }
 
+    /**
+     * 文件并行压缩, see {@link #compressParallel(InputStream, OutputStream, int, int, int,
+     * ExecutorService)}. The blocks are deflated by a shared pool of daemon
+     * threads, one per processor. The compressed file is deleted if the
+     * compression fails.
+     *
+     * @param file       the file
+     * @param delete     是否删除原始文件
+     * @param blockSize  the size of the blocks deflated concurrently
+     * @param bufferSize the size of the buffers
+     * @param level      the compression level, 0-9 or -1 for the default
+     * @throws IOException the io exception
+     * @since 1.3.6
+     */
+    public static void compressParallel(File file, boolean delete, int blockSize,
+                                        int bufferSize, int level) throws IOException {
+        compress(file, delete, bufferSize, level, blockSize, getBlockPool());
+    }
+
+    /**
+     * 文件并行压缩, see {@link #compressParallel(InputStream, OutputStream, int, int, int,
+     * ExecutorService)}. The compressed file is deleted if the compression
+     * fails.
+     *
+     * @param file       the file
+     * @param delete     是否删除原始文件
+     * @param blockSize  the size of the blocks deflated concurrently
+     * @param bufferSize the size of the buffers
+     * @param level      the compression level, 0-9 or -1 for the default
+     * @param executor   the executor deflating the blocks
+     * @throws IOException the io exception
+     * @since 1.3.6
+     */
+    public static void compressParallel(File file, boolean delete, int blockSize,
+                                        int bufferSize, int level, ExecutorService executor)
+            throws IOException {
+        compress(file, delete, bufferSize, level, blockSize, executor);
+    }
+
+    /**
+     * Compress a file, in blocks if <code>executor</code> is not null.
+     */
+    private static void compress(File file, boolean delete, int bufferSize, int level,
+                                 int blockSize, ExecutorService executor) throws IOException {
+        File target = new File(file.getPath() + EXT);
+        boolean done = false;
+        FileInputStream fis = new FileInputStream(file);
+        try {
+            FileOutputStream fos = new FileOutputStream(target);
+            try {
+                if (executor == null) {
+                    compress(fis, fos, bufferSize, level);
+                } else {
+                    compressParallel(fis, fos, blockSize, bufferSize, level, executor);
+                }
+                done = true;
+            } finally {
+                fos.close();
+                if (!done) {
+                    target.delete();
+                }
+            }
+        } finally {
+            fis.close();
+        }
+
+        if (delete) {
+            file.delete();
+        }
+    }
+
+    /**
+     * 数据并行压缩. The input is split into blocks of <code>blockSize</code>
+     * bytes which are deflated concurrently by <code>executor</code>, each
+     * into a gzip member of its own, and written in order. The output is a
+     * multi-member gzip file as read by gunzip and by {@link GZIPInputStream}
+     * since Java 7, a Java 6 {@link GZIPInputStream} only reads the first
+     * block. At most two blocks per processor are read ahead.
+     *
+     * @param is         the is
+     * @param os         the os
+     * @param blockSize  the size of the blocks deflated concurrently
+     * @param bufferSize the size of the buffers of the deflaters
+     * @param level      the compression level, 0-9 or -1 for the default
+     * @param executor   the executor deflating the blocks
+     * @throws IOException the io exception
+     * @since 1.3.6
+     */
+    public static void compressParallel(InputStream is, OutputStream os, int blockSize,
+                                        int bufferSize, int level, ExecutorService executor)
+            throws IOException {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("The blockSize argument (" + blockSize
+                    + ") is not positive.");
+        }
+        int window = 2 * Runtime.getRuntime().availableProcessors();
+        LinkedList pending = new LinkedList();
+        boolean eof = false;
+        boolean first = true;
+        try {
+            while (!eof || !pending.isEmpty()) {
+                while (!eof && pending.size() < window) {
+                    byte[] block = new byte[blockSize];
+                    int length = read(is, block);
+                    eof = length < blockSize;
+                    // an empty input is still a gzip member
+                    if (length > 0 || first) {
+                        pending.addLast(executor.submit(
+                                new DeflateBlock(block, length, bufferSize, level)));
+                        first = false;
+                    }
+                }
+                if (!pending.isEmpty()) {
+                    os.write(get((Future) pending.removeFirst()));
+                }
+            }
+        } finally {
+            for (Iterator i = pending.iterator(); i.hasNext(); ) {
+                ((Future) i.next()).cancel(false);
+            }
+        }
+        os.flush();
+    }
+
+    /**
+     * Reads until <code>block</code> is full or the end of the input.
+     */
+    private static int read(InputStream is, byte[] block) throws IOException {
+        int length = 0;
+        while (length < block.length) {
+            int count = is.read(block, length, block.length - length);
+            if (count == -1) {
+                break;
+            }
+            length += count;
+        }
+        return length;
+    }
+
+    private static byte[] get(Future future) throws IOException {
+        try {
+            return (byte[]) future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Failed to compress a block.", cause);
+        }
+    }
+
+    private static synchronized ExecutorService getBlockPool() {
+        if (blockPool == null) {
+            final AtomicInteger count = new AtomicInteger();
+            blockPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                    new ThreadFactory() {
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r, "GZipUtils-" + count.getAndIncrement());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+        }
+        return blockPool;
+    }
+
+    /**
+     * Deflates a block into a gzip member.
+     */
+    private static final class DeflateBlock implements Callable {
+        private final byte[] block;
+        private final int length;
+        private final int bufferSize;
+        private final int level;
+
+        DeflateBlock(byte[] block, int length, int bufferSize, int level) {
+            this.block = block;
+            this.length = length;
+            this.bufferSize = bufferSize;
+            this.level = level;
+        }
+
+        public Object call() throws IOException {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(length / 2 + 64);
+            GZIPOutputStream gos = new LevelGZIPOutputStream(baos, bufferSize, level);
+            gos.write(block, 0, length);
+            gos.close();
+            return baos.toByteArray();
+        }
+    }
+
+    /**
+     * A {@link GZIPOutputStream} of a given compression level.
+     */
+    private static final class LevelGZIPOutputStream extends GZIPOutputStream {
+        LevelGZIPOutputStream(OutputStream os, int bufferSize, int level) throws IOException {
+            super(os, bufferSize);
+            def.setLevel(level);
+        }
+    }
+
     /**
      * 文件压缩
      *
@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.log4j.helpers;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+   <code>MappedFileWriter</code> encodes characters directly into a
+   memory-mapped region of a file. Writes are memory copies, the
+   operating system writes the pages back to the file in its own time.
+
+   <p>The region following the end of the file is mapped when the
+   writer is created and the next one once it is full, growing the
+   file by the size of a region. The file is truncated to the bytes
+   actually written when the writer is closed, until then it is
+   followed by zeros, as it would be after a crash. Flushing does
+   nothing.
+
+   <p>The channel must be readable and writable, as obtained from a
+   {@link java.io.RandomAccessFile} opened in "rw" mode.
+
+   <p>This class is not thread safe, callers must synchronize.
+
+   @since 1.3.6 */
+public class MappedFileWriter extends FileChannelWriter {
+
+  /** Default size of the mapped regions, 32MB. */
+  public static final long DEFAULT_REGION_SIZE = 32*1024*1024;
+
+  private final long regionSize;
+
+  /** Position in the file of the current region. */
+  private long regionStart;
+
+  /**
+     Create a writer appending to the file of <code>channel</code>.
+
+     @param channel the channel, closed with this writer.
+     @param charset the charset, unmappable characters are replaced.
+     @param regionSize the size of the mapped regions, at most
+     <code>Integer.MAX_VALUE</code>.
+   */
+  public
+  MappedFileWriter(FileChannel channel, Charset charset, long regionSize)
+                                                          throws IOException {
+    super(channel, charset);
+    if(regionSize < 1 || regionSize > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("The regionSize argument ("+regionSize+
+					 ") is not a positive integer.");
+    }
+    this.regionSize = regionSize;
+    regionStart = channel.size();
+    map();
+  }
+
+  /**
+     Get the number of bytes of the file, as it will be once truncated.
+   */
+  public
+  long getCount() {
+    return regionStart + getBuffer().position();
+  }
+
+  /**
+     Does nothing as the bytes are already in the page cache.
+   */
+  public
+  void flush() throws IOException {
+    ensureOpen();
+  }
+
+  /**
+     Force the pages of the current region and then the file to the
+     storage device. The pages of the previous regions are only forced
+     with the file, as the operating system does for shared mappings on
+     the usual platforms.
+   */
+  public
+  void force(boolean metaData) throws IOException {
+    ensureOpen();
+    ((MappedByteBuffer) getBuffer()).force();
+    channel.force(metaData);
+  }
+
+  /**
+     Map the region following the bytes written, a character which did
+     not fit at the end of the current region starts the next one.
+   */
+  protected
+  void drain() throws IOException {
+    regionStart += getBuffer().position();
+    map();
+  }
+
+  /**
+     Truncate the file to the bytes written and close the channel.
+   */
+  protected
+  void closeChannel() throws IOException {
+    try {
+      channel.truncate(getCount());
+    } finally {
+      channel.close();
+    }
+  }
+
+  private
+  void map() throws IOException {
+    MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_WRITE,
+                                          regionStart, regionSize);
+    setBuffer(region);
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.log4j.helpers;
+
+/**
+   Formats the messages of parameterized logging requests, replacing
+   each <code>{}</code> of the pattern by the next argument. A brace
+   preceded by a backslash is not a placeholder, the backslash is
+   dropped. Placeholders left without argument are kept as is. This is
+   the syntax used by {@link org.apache.log4j.LogSF}.
+
+   @since 1.3.6
+ */
+public final class ParameterFormatter {
+
+  private ParameterFormatter() {
+  }
+
+  /**
+     Format <code>pattern</code> with <code>arguments</code>.
+
+     @param pattern pattern, may be null.
+     @param arguments arguments, may be null or mismatched.
+     @return formatted message, null if the pattern is null.
+   */
+  public static String format(final String pattern, final Object[] arguments) {
+    if(pattern == null) {
+      return null;
+    }
+    if(pattern.indexOf('{') < 0) {
+      return pattern;
+    }
+    StringBuilder buf = new StringBuilder(pattern.length() + 32);
+    format(pattern, arguments, buf);
+    return buf.toString();
+  }
+
+  /**
+     Append <code>pattern</code> formatted with <code>arguments</code> to
+     <code>buf</code>, so that a buffer may be reused.
+
+     @param pattern pattern, may not be null.
+     @param arguments arguments, may be null or mismatched.
+     @param buf buffer appended to.
+   */
+  public static void format(final String pattern, final Object[] arguments,
+                            final StringBuilder buf) {
+    int count = 0;
+    int prev = 0;
+    int pos = pattern.indexOf('{');
+    while(pos >= 0) {
+      if(pos > 0 && pattern.charAt(pos - 1) == '\\') {
+        buf.append(pattern, prev, pos - 1).append('{');
+        prev = pos + 1;
+      } else if(pos + 1 < pattern.length() && pattern.charAt(pos + 1) == '}') {
+        buf.append(pattern, prev, pos);
+        if(arguments != null && count < arguments.length) {
+          buf.append(arguments[count++]);
+        } else {
+          buf.append("{}");
+        }
+        prev = pos + 2;
+      } else {
+        buf.append(pattern, prev, pos + 1);
+        prev = pos + 1;
+      }
+      pos = pattern.indexOf('{', prev);
+    }
+    buf.append(pattern, prev, pattern.length());
+  }
+}
@@ -17,6 +17,7 @@
 
 package org.apache.log4j.helpers;
 
+import org.apache.log4j.spi.EventFieldConsumer;
 import org.apache.log4j.spi.LoggingEvent;
 
 /**
@@ -57,6 +58,17 @@ public abstract class PatternConverter {
   protected
   String convert(LoggingEvent event);
 
+  /**
+     Returns the fields of the events read by this converter, see
+     {@link EventFieldConsumer}. The base class returns {@link
+     EventFieldConsumer#ALL}, derived converters should narrow it.
+
+     @since 1.3.6 */
+  public
+  int getRequiredFields() {
+    return EventFieldConsumer.ALL;
+  }
+
   /**
      A template method for formatting in a converter specific way.
    */
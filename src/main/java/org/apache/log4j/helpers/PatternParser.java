@@ -17,6 +17,7 @@
 package org.apache.log4j.helpers;
 
 import org.apache.log4j.Layout;
+import org.apache.log4j.spi.EventFieldConsumer;
 import org.apache.log4j.spi.LoggingEvent;
 import org.apache.log4j.spi.LocationInfo;
 import java.text.DateFormat;
@@ -391,7 +392,7 @@ public class PatternParser {
     String convert(LoggingEvent event) {
       switch(type) {
       case RELATIVE_TIME_CONVERTER:
-	return (Long.toString(event.timeStamp - LoggingEvent.getStartTime()));
+	return (Long.toString(event.getTimeStamp() - LoggingEvent.getStartTime()));
       case THREAD_CONVERTER:
 	return event.getThreadName();
       case LEVEL_CONVERTER:
@@ -404,6 +405,19 @@ public class PatternParser {
       default: return null;
       }
     }
+
+    public
+    int getRequiredFields() {
+      switch(type) {
+      case THREAD_CONVERTER:
+	return EventFieldConsumer.THREAD_NAME;
+      case NDC_CONVERTER:
+	return EventFieldConsumer.NDC;
+      case MESSAGE_CONVERTER:
+	return EventFieldConsumer.MESSAGE;
+      default: return 0;
+      }
+    }
   }
 
   private static class LiteralPatternConverter extends PatternConverter {
@@ -423,6 +437,11 @@ public class PatternParser {
     String convert(LoggingEvent event) {
       return literal;
     }
+
+    public
+    int getRequiredFields() {
+      return 0;
+    }
   }
 
   private static class DatePatternConverter extends PatternConverter {
@@ -435,9 +454,11 @@ public class PatternParser {
       this.df = df;
     }
 
+    // The date and the date format are shared by the formatting threads.
     public
+    synchronized
     String convert(LoggingEvent event) {
-      date.setTime(event.timeStamp);
+      date.setTime(event.getTimeStamp());
       String converted = null;
       try {
         converted = df.format(date);
@@ -447,6 +468,11 @@ public class PatternParser {
       }
       return converted;
     }
+
+    public
+    int getRequiredFields() {
+      return 0;
+    }
   }
 
   private static class MDCPatternConverter extends PatternConverter {
@@ -484,6 +510,11 @@ public class PatternParser {
         }
       }
     }
+
+    public
+    int getRequiredFields() {
+      return EventFieldConsumer.MDC;
+    }
   }
 
 
@@ -510,6 +541,11 @@ public class PatternParser {
       default: return null;
       }
     }
+
+    public
+    int getRequiredFields() {
+      return EventFieldConsumer.LOCATION;
+    }
   }
 
   private static abstract class NamedPatternConverter extends PatternConverter {
@@ -554,6 +590,11 @@ public class PatternParser {
     String getFullyQualifiedName(LoggingEvent event) {
       return event.getLocationInformation().getClassName();
     }
+
+    public
+    int getRequiredFields() {
+      return EventFieldConsumer.LOCATION;
+    }
   }
 
   private class CategoryPatternConverter extends NamedPatternConverter {
@@ -565,6 +606,11 @@ public class PatternParser {
     String getFullyQualifiedName(LoggingEvent event) {
       return event.getLoggerName();
     }
+
+    public
+    int getRequiredFields() {
+      return 0;
+    }
   }
 }
 
@@ -53,6 +53,21 @@ public class QuietWriter extends FilterWriter {
     }
   }
 
+  /**
+     Write a portion of an array of characters, failures are handed to
+     the error handler.
+
+     @since 1.3.6 */
+  public
+  void write(char[] cbuf, int off, int len) {
+    try {
+      out.write(cbuf, off, len);
+    } catch(Exception e) {
+      errorHandler.error("Failed to write ["+new String(cbuf, off, len)+"].", e,
+			 ErrorCode.WRITE_FAILURE);
+    }
+  }
+
   public
   void flush() {
     try {
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.log4j.helpers;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.log4j.spi.LoggingEvent;
+
+/**
+   <code>RingBuffer</code> is a bounded, lock-free, multiple producer
+   and single consumer queue of {@link LoggingEvent LoggingEvents}
+   used by the {@link org.apache.log4j.AsyncAppender}.
+
+   <p>The slots are preallocated and their number is a power of two.
+   Producers claim a slot by incrementing the tail sequence with a
+   compare-and-set, then publish the event in the slot. The consumer
+   takes events in sequence order, clears their slots and then
+   advances the head sequence, releasing the slots to the producers.
+
+   <p>{@link #offer} may be called by any thread, {@link #drainTo}
+   must only be called by a single consumer thread.
+
+   @since 1.3.6 */
+public class RingBuffer {
+
+  private final AtomicReferenceArray slots;
+  private final int mask;
+
+  /** Sequence of the next slot to claim. */
+  private final AtomicLong tail = new AtomicLong();
+
+  /** Sequence of the next slot to consume, only written by the consumer. */
+  private final AtomicLong head = new AtomicLong();
+
+  private volatile boolean closed;
+
+  /**
+     Instantiate a new RingBuffer holding at least
+     <code>minCapacity</code> events. The capacity is rounded up to the
+     next power of two.
+   */
+  public
+  RingBuffer(int minCapacity) {
+    if(minCapacity < 1) {
+      throw new IllegalArgumentException("The minCapacity argument ("+minCapacity+
+			    ") is not a positive integer.");
+    }
+    int capacity = 1;
+    while(capacity < minCapacity) {
+      capacity <<= 1;
+    }
+    slots = new AtomicReferenceArray(capacity);
+    mask = capacity - 1;
+  }
+
+  /**
+     Get the number of events the buffer can hold.
+   */
+  public
+  int getCapacity() {
+    return mask + 1;
+  }
+
+  /**
+     Add an event at the end of the buffer. Returns <code>false</code>
+     if the buffer is full.
+   */
+  public
+  boolean offer(LoggingEvent event) {
+    long t;
+    do {
+      t = tail.get();
+      if(t - head.get() > mask) {
+	return false;
+      }
+    } while(!tail.compareAndSet(t, t + 1));
+    slots.set((int) t & mask, event);
+    return true;
+  }
+
+  /**
+     Move at most <code>dest.length</code> events from the head of the
+     buffer to <code>dest</code>, in order, and return their number.
+     Stops at the first claimed slot whose event is not yet published.
+     Must only be called by the consumer thread.
+   */
+  public
+  int drainTo(LoggingEvent[] dest) {
+    long h = head.get();
+    int count = 0;
+    while(count < dest.length) {
+      int index = (int) (h + count) & mask;
+      LoggingEvent event = (LoggingEvent) slots.get(index);
+      if(event == null) {
+	break;
+      }
+      dest[count++] = event;
+      slots.lazySet(index, null);
+    }
+    if(count > 0) {
+      // The cleared slots are visible to a producer reading the new head.
+      head.lazySet(h + count);
+    }
+    return count;
+  }
+
+  /**
+     Returns <code>true</code> if no slot is claimed, including slots
+     claimed but not yet published.
+   */
+  public
+  boolean isEmpty() {
+    return head.get() == tail.get();
+  }
+
+  /**
+     Get the number of claimed slots.
+   */
+  public
+  int size() {
+    return (int) (tail.get() - head.get());
+  }
+
+  /**
+     Mark the buffer as closed. Events may still be offered and drained,
+     the flag only tells the consumer to stop once the buffer is empty.
+   */
+  public
+  void close() {
+    closed = true;
+  }
+
+  /**
+     Returns <code>true</code> if {@link #close} was called.
+   */
+  public
+  boolean isClosed() {
+    return closed;
+  }
+}
@@ -110,4 +110,35 @@ public class Transform {
           }
       }
   }
+
+  /**
+  * Ensures that embeded CDEnd strings (]]>) are handled properly
+  * within message, NDC and throwable tag text.
+  *
+  * @param buf StringBuilder holding the XML data to this point.
+  * @param str The String that is inserted into an existing CDATA Section within buf.
+  * @since 1.3.6
+  * */
+  static public void appendEscapingCDATA(final StringBuilder buf,
+                                         final String str) {
+      if (str != null) {
+          int end = str.indexOf(CDATA_END);
+          if (end < 0) {
+              buf.append(str);
+          } else {
+              int start = 0;
+              while (end > -1) {
+                  buf.append(str, start, end);
+                  buf.append(CDATA_EMBEDED_END);
+                  start = end + CDATA_END_LEN;
+                  if (start < str.length()) {
+                      end = str.indexOf(CDATA_END, start);
+                  } else {
+                      return;
+                  }
+              }
+              buf.append(str, start, str.length());
+          }
+      }
+  }
 }
@@ -24,8 +24,10 @@ import java.util.ArrayList;
 import java.util.Iterator;
 
 import org.apache.log4j.PatternLayout;
+import org.apache.log4j.spi.BatchAppender;
 import org.apache.log4j.spi.ErrorCode;
 import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.RetainingAppender;
 
 
 /**
@@ -76,7 +78,7 @@ import org.apache.log4j.spi.LoggingEvent;
 
 */
 public class JDBCAppender extends org.apache.log4j.AppenderSkeleton
-    implements org.apache.log4j.Appender {
+    implements org.apache.log4j.Appender, RetainingAppender, BatchAppender {
 
   /**
    * URL of the DB for default connection handling
@@ -171,6 +173,33 @@ public class JDBCAppender extends org.apache.log4j.AppenderSkeleton
    * Adds the event to the buffer.  When full the buffer is flushed.
    */
   public void append(LoggingEvent event) {
+    bufferEvent(event);
+
+    if (buffer.size() >= bufferSize)
+      flushBuffer();
+  }
+
+  /**
+   * Adds the events accepted by the threshold and filters to the buffer
+   * and flushes it once if it is full.
+   * @since 1.3.6
+   */
+  public synchronized void doAppend(LoggingEvent[] events, int count) {
+    for (int i = 0; i < count; i++) {
+      if (isAppendable(events[i])) {
+        bufferEvent(events[i]);
+      }
+    }
+
+    if (buffer.size() >= bufferSize)
+      flushBuffer();
+  }
+
+  /**
+   * Adds the event to the buffer after fixing the fields which depend on
+   * the logging thread.
+   */
+  private void bufferEvent(LoggingEvent event) {
     event.getNDC();
     event.getThreadName();
     // Get a copy of this thread's MDC.
@@ -181,9 +210,6 @@ public class JDBCAppender extends org.apache.log4j.AppenderSkeleton
     event.getRenderedMessage();
     event.getThrowableStrRep();
     buffer.add(event);
-
-    if (buffer.size() >= bufferSize)
-      flushBuffer();
   }
 
   /**
@@ -317,6 +343,15 @@ public class JDBCAppender extends org.apache.log4j.AppenderSkeleton
     return true;
   }
 
+  /**
+   * Events are buffered until the buffer size is reached.
+   * @return true.
+   * @since 1.3.6
+   */
+  public boolean retainsEvents() {
+    return true;
+  }
+
 
   /**
    *
@@ -26,6 +26,7 @@ import org.apache.log4j.helpers.OptionConverter;
 import org.apache.log4j.spi.ErrorCode;
 import org.apache.log4j.spi.LoggingEvent;
 import org.apache.log4j.spi.OptionHandler;
+import org.apache.log4j.spi.RetainingAppender;
 import org.apache.log4j.spi.TriggeringEventEvaluator;
 import org.apache.log4j.xml.UnrecognizedElementHandler;
 import org.w3c.dom.Element;
@@ -77,7 +78,7 @@ import java.util.Properties;
    @author Ceki G&uuml;lc&uuml;
    @since 1.0 */
 public class SMTPAppender extends AppenderSkeleton
-        implements UnrecognizedElementHandler {
+        implements UnrecognizedElementHandler, RetainingAppender {
   private String to;
   /**
    * Comma separated list of cc recipients.
@@ -331,6 +332,15 @@ public class SMTPAppender extends AppenderSkeleton
     return true;
   }
 
+  /**
+     Events are kept in a cyclic buffer until an event triggers the
+     sending of an e-mail.
+     @since 1.3.6 */
+  public
+  boolean retainsEvents() {
+    return true;
+  }
+
   /**
    * Layout body of email message.
    * @since 1.2.16  
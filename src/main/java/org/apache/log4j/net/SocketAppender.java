@@ -27,6 +27,7 @@ import java.net.Socket;
 
 import org.apache.log4j.AppenderSkeleton;
 import org.apache.log4j.helpers.LogLog;
+import org.apache.log4j.spi.BatchAppender;
 import org.apache.log4j.spi.ErrorCode;
 import org.apache.log4j.spi.LoggingEvent;
 
@@ -99,7 +100,7 @@ import org.apache.log4j.spi.LoggingEvent;
     @author  Ceki G&uuml;lc&uuml;
     @since 0.8.4 */
 
-public class SocketAppender extends AppenderSkeleton {
+public class SocketAppender extends AppenderSkeleton implements BatchAppender {
 
   /**
      The default port number of remote logging server (4560).
@@ -252,42 +253,89 @@ public class SocketAppender extends AppenderSkeleton {
 
     if(oos != null) {
       try {
-    	 
-	if(locationInfo) {
-	   event.getLocationInformation();
+	writeEvent(event);
+	//LogLog.debug("=========Flushing.");
+	oos.flush();
+      } catch(IOException e) {
+	connectionFailed(e);
+      }
+    }
+  }
+
+  /**
+     Write the events accepted by the threshold and filters and flush
+     the stream once.
+     @since 1.3.6 */
+  public
+  synchronized
+  void doAppend(LoggingEvent[] events, int count) {
+    if(address==null) {
+      errorHandler.error("No remote host is set for SocketAppender named \""+
+			this.name+"\".");
+      return;
+    }
+
+    if(oos != null) {
+      try {
+	boolean written = false;
+	for(int i = 0; i < count; i++) {
+	  if(isAppendable(events[i])) {
+	    writeEvent(events[i]);
+	    written = true;
+	  }
+	}
+	if(written) {
+	  oos.flush();
 	}
+      } catch(IOException e) {
+	connectionFailed(e);
+      }
+    }
+  }
+
+  /**
+     Serialize the event to the stream, without flushing it.
+   */
+  private
+  void writeEvent(LoggingEvent event) throws IOException {
+    if(locationInfo) {
+      event.getLocationInformation();
+    }
     if (application != null) {
-        event.setProperty("application", application);
+      event.setProperty("application", application);
     }
     event.getNDC();
     event.getThreadName();
     event.getMDCCopy();
     event.getRenderedMessage();
     event.getThrowableStrRep();
-    
-	oos.writeObject(event);
-	//LogLog.debug("=========Flushing.");
-	oos.flush();
-	if(++counter >= RESET_FREQUENCY) {
-	  counter = 0;
-	  // Failing to reset the object output stream every now and
-	  // then creates a serious memory leak.
-	  //System.err.println("Doing oos.reset()");
-	  oos.reset();
-	}
-      } catch(IOException e) {
-          if (e instanceof InterruptedIOException) {
-              Thread.currentThread().interrupt();
-          }
-	      oos = null;
-	      LogLog.warn("Detected problem with connection: "+e);
-	      if(reconnectionDelay > 0) {
-	         fireConnector();
-	      } else {
-	         errorHandler.error("Detected problem with connection, not reconnecting.", e,
-	               ErrorCode.GENERIC_FAILURE);
-	      }
-      }
+
+    oos.writeObject(event);
+    if(++counter >= RESET_FREQUENCY) {
+      counter = 0;
+      // Failing to reset the object output stream every now and
+      // then creates a serious memory leak.
+      //System.err.println("Doing oos.reset()");
+      oos.reset();
+    }
+  }
+
+  /**
+     Drop the connection after a write failure and reconnect if a
+     reconnection delay is set.
+   */
+  private
+  void connectionFailed(IOException e) {
+    if (e instanceof InterruptedIOException) {
+      Thread.currentThread().interrupt();
+    }
+    oos = null;
+    LogLog.warn("Detected problem with connection: "+e);
+    if(reconnectionDelay > 0) {
+      fireConnector();
+    } else {
+      errorHandler.error("Detected problem with connection, not reconnecting.", e,
+			 ErrorCode.GENERIC_FAILURE);
     }
   }
 
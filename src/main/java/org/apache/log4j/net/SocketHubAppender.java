@@ -30,6 +30,7 @@ import org.apache.log4j.AppenderSkeleton;
 import org.apache.log4j.helpers.CyclicBuffer;
 import org.apache.log4j.helpers.LogLog;
 import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.RetainingAppender;
 
 /**
   Sends {@link LoggingEvent} objects to a set of remote log servers,
@@ -105,7 +106,8 @@ import org.apache.log4j.spi.LoggingEvent;
      
   @author Mark Womack */
 
-public class SocketHubAppender extends AppenderSkeleton {
+public class SocketHubAppender extends AppenderSkeleton
+    implements RetainingAppender {
 
   /**
      The default port number of the ServerSocket will be created on. */
@@ -271,6 +273,15 @@ public class SocketHubAppender extends AppenderSkeleton {
   boolean requiresLayout() {
     return false;
   }
+
+  /**
+     Events are kept for newly connected clients when the
+     <b>BufferSize</b> option is set.
+     @since 1.3.6 */
+  public
+  boolean retainsEvents() {
+    return buffer != null;
+  }
   
   /**
      The <b>Port</b> option takes a positive integer representing
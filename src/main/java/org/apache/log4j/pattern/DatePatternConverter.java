@@ -177,7 +177,7 @@ public final class DatePatternConverter extends LoggingEventPatternConverter {
    */
   public void format(final LoggingEvent event, final StringBuffer output) {
     synchronized(this) {
-    	df.format(event.timeStamp, output);
+    	df.format(event.getTimeStamp(), output);
     }
   }
 
@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.log4j.spi;
+
+/**
+ * Implemented by appenders which can append several logging events at
+ * once, typically under a single lock acquisition, with a single write
+ * and a single flush.
+ *
+ * <p>Appending a batch has the same outcome as passing each event to
+ * <code>Appender.doAppend</code> in turn: the threshold and the filters
+ * apply to each event. {@link org.apache.log4j.AsyncAppender} hands the
+ * events it dispatches to such appenders in bulk.
+ *
+ * @since 1.3.6
+ */
+public interface BatchAppender {
+    /**
+     * Append the first <code>count</code> events of <code>events</code>.
+     * The array belongs to the caller and may be reused once this method
+     * returns, the events themselves may be retained.
+     *
+     * @param events events, none of the first <code>count</code> is null.
+     * @param count number of events to append.
+     */
+    void doAppend(LoggingEvent[] events, int count);
+}
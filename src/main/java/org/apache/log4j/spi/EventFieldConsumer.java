@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.log4j.spi;
+
+/**
+ * Implemented by layouts and appenders which can tell which fields of
+ * the {@link LoggingEvent LoggingEvents} they read.
+ *
+ * <p>The fields listed here depend on the thread which issued the
+ * logging request, or are expensive to compute. Asynchronous appenders
+ * and loggers only copy the fields required by their appenders before
+ * handing the event over to another thread, the other fields of the
+ * event must then not be read. Appenders which do not implement this
+ * interface are assumed to read every field.
+ *
+ * @since 1.3.6
+ */
+public interface EventFieldConsumer {
+    /**
+     * The nested diagnostic context.
+     */
+    int NDC = 0x01;
+
+    /**
+     * The mapped diagnostic context and the properties of the event.
+     */
+    int MDC = 0x02;
+
+    /**
+     * The name of the thread which issued the request.
+     */
+    int THREAD_NAME = 0x04;
+
+    /**
+     * The rendered message.
+     */
+    int MESSAGE = 0x08;
+
+    /**
+     * The string representation of the throwable.
+     */
+    int THROWABLE = 0x10;
+
+    /**
+     * The location information, only extracted when enabled.
+     */
+    int LOCATION = 0x20;
+
+    /**
+     * Every field.
+     */
+    int ALL = NDC | MDC | THREAD_NAME | MESSAGE | THROWABLE | LOCATION;
+
+    /**
+     * Determines the fields of the events which are read. The value may
+     * change with the configuration and is read for each event.
+     *
+     * @return a combination of the field constants of this interface.
+     */
+    int getRequiredFields();
+}
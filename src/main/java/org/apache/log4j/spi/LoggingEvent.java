@@ -35,6 +35,7 @@ import org.apache.log4j.NDC;
 import org.apache.log4j.Priority;
 import org.apache.log4j.helpers.Loader;
 import org.apache.log4j.helpers.LogLog;
+import org.apache.log4j.helpers.ParameterFormatter;
 
 // Contributors:   Nelson Minar <nelson@monkey.org>
 //                 Wolf Siberski
@@ -115,7 +116,11 @@ public class LoggingEvent implements java.io.Serializable {
   private boolean mdcCopyLookupRequired = true;
 
   /** The application supplied message of logging event. */
-  transient private Object message;
+  transient Object message;
+
+  /** Arguments of a parameterized message, formatted into the
+      rendered message when it is first requested. */
+  transient Object[] parameters;
 
   /** The application supplied message rendered through the log4j
       objet rendering mechanism.*/
@@ -167,6 +172,25 @@ public class LoggingEvent implements java.io.Serializable {
     timeStamp = System.currentTimeMillis();
   }
 
+  /**
+     Instantiate a LoggingEvent for a parameterized message. The
+     arguments are only formatted into the message, see {@link
+     org.apache.log4j.helpers.ParameterFormatter}, when the rendered
+     message is first requested.
+
+     @param logger The logger generating this event.
+     @param level The level of this event.
+     @param message  The message pattern of this event.
+     @param parameters The arguments of the message, may be null.
+     @param throwable The throwable of this event.
+     @since 1.3.6 */
+  public LoggingEvent(String fqnOfCategoryClass, Category logger,
+                      Priority level, Object message, Object[] parameters,
+                      Throwable throwable) {
+    this(fqnOfCategoryClass, logger, level, message, throwable);
+    this.parameters = parameters;
+  }
+
   /**
      Instantiate a LoggingEvent from the supplied parameters.
 
@@ -243,6 +267,52 @@ public class LoggingEvent implements java.io.Serializable {
       }
     }
 
+  /**
+     Create an event of another thread as {@link
+     #LoggingEvent(String, Category, long, Level, Object, String,
+     ThrowableInformation, String, LocationInfo, Map)}, without location
+     information. The <code>mdc</code> table becomes the MDC copy of the
+     event rather than being copied, the caller must not modify it
+     afterwards.
+
+     @param mdc MDC properties, may be null.
+     @since 1.3.6 */
+  public static
+  LoggingEvent createEvent(String fqnOfCategoryClass, Category logger,
+                           long timeStamp, Level level, Object message,
+                           String threadName, ThrowableInformation throwable,
+                           String ndc, Hashtable mdc) {
+    LoggingEvent event = new LoggingEvent(fqnOfCategoryClass, logger,
+                                          timeStamp, level, message,
+                                          threadName, throwable, ndc, null,
+                                          null);
+    event.mdcCopy = mdc;
+    return event;
+  }
+
+
+  /**
+     Reinitialize the fields of this event which are not final for a
+     new logging request, discarding the information cached for the
+     previous one. Only used by {@link ReusableLoggingEvent}, which
+     keeps the values of the final fields itself.
+   */
+  void reinitialize(Category logger, Priority level, Object message,
+                    Object[] parameters, Throwable throwable) {
+    this.logger = logger;
+    this.level = level;
+    this.message = message;
+    this.parameters = parameters;
+    this.throwableInfo = (throwable == null) ? null
+                          : new ThrowableInformation(throwable, logger);
+    this.renderedMessage = null;
+    this.threadName = null;
+    this.ndc = null;
+    this.ndcLookupRequired = true;
+    this.mdcCopy = null;
+    this.mdcCopyLookupRequired = true;
+    this.locationInfo = null;
+  }
 
   /**
      Set the location information for this logging event. The collected
@@ -250,7 +320,7 @@ public class LoggingEvent implements java.io.Serializable {
    */
   public LocationInfo getLocationInformation() {
     if(locationInfo == null) {
-      locationInfo = new LocationInfo(new Throwable(), fqnOfCategoryClass);
+      locationInfo = new LocationInfo(new Throwable(), getFQNOfLoggerClass());
     }
     return locationInfo;
   }
@@ -287,10 +357,13 @@ public class LoggingEvent implements java.io.Serializable {
      serialization, the returned value equals the String form of the
      message possibly after object rendering.
 
+     <p>The message of a parameterized logging request is returned
+     formatted with its arguments.
+
      @since 1.1 */
   public
   Object getMessage() {
-    if(message != null) {
+    if(message != null && parameters == null) {
       return message;
     } else {
       return getRenderedMessage();
@@ -370,10 +443,42 @@ public class LoggingEvent implements java.io.Serializable {
 	   renderedMessage = message.toString();
 	 }
        }
+       if(parameters != null) {
+	 renderedMessage = formatParameters(renderedMessage);
+       }
      }
      return renderedMessage;
   }
 
+  /**
+     Format the arguments into the message pattern, see {@link
+     ParameterFormatter}.
+   */
+  String formatParameters(String pattern) {
+    return ParameterFormatter.format(pattern, parameters);
+  }
+
+  /**
+     Return the arguments of a parameterized logging request, null
+     for other requests. The returned array must not be modified.
+
+     @since 1.3.6 */
+  public
+  Object[] getParameters() {
+    return parameters;
+  }
+
+  /**
+     Return the message of the logging request as supplied by the
+     application, before the arguments of a parameterized request are
+     formatted into it.
+
+     @since 1.3.6 */
+  public
+  Object getMessagePattern() {
+    return message;
+  }
+
   /**
      Returns the time when the application started, in milliseconds
      elapsed since 01.01.1970.  */
@@ -566,7 +671,7 @@ public class LoggingEvent implements java.io.Serializable {
      *
      * @since 1.2.15
      */
-    public final long getTimeStamp() {
+    public long getTimeStamp() {
       return timeStamp;
     }
 
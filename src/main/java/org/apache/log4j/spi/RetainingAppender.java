@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.log4j.spi;
+
+/**
+ * Implemented by appenders which may keep a reference to the logging
+ * events they receive after <code>doAppend</code> returns, for example to
+ * buffer or dispatch them later.
+ *
+ * <p>Such appenders never receive a {@link ReusableLoggingEvent}, they are
+ * handed an immutable copy instead. Appenders which do not implement this
+ * interface are assumed to be done with the event once
+ * <code>doAppend</code> returns, unless they have appenders attached.
+ *
+ * @since 1.3.6
+ */
+public interface RetainingAppender {
+    /**
+     * Determines whether events are kept after <code>doAppend</code>
+     * returns. The value is read when the appender chains of the loggers
+     * are computed, that is after configuration changes.
+     *
+     * @return true if events may be kept.
+     */
+    boolean retainsEvents();
+}
@@ -0,0 +1,204 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.log4j.spi;
+
+import org.apache.log4j.Category;
+import org.apache.log4j.Priority;
+import org.apache.log4j.helpers.ParameterFormatter;
+
+/**
+ * A {@link LoggingEvent} reused by the logging requests of one thread,
+ * sparing the allocation of an event per request.
+ *
+ * <p>An instance is only valid for the duration of the
+ * <code>doAppend</code> call it is passed to, its fields are overwritten by
+ * the next request of the same thread. Appenders which keep events
+ * implement {@link RetainingAppender} and are given an immutable copy, see
+ * {@link #toImmutable}.
+ *
+ * <p>The final public fields {@link #fqnOfCategoryClass},
+ * {@link #categoryName} and {@link #timeStamp} of a reused event are not
+ * set, the values of the current request are returned by
+ * {@link #getFQNOfLoggerClass}, {@link #getLoggerName} and
+ * {@link #getTimeStamp}.
+ *
+ * <p>Reusable events are enabled through
+ * {@link org.apache.log4j.Hierarchy#setReusableEvents}.
+ *
+ * @since 1.3.6
+ */
+public final class ReusableLoggingEvent extends LoggingEvent {
+
+    private static final long serialVersionUID = 6414720562217587380L;
+
+    /**
+     * Event of each thread.
+     */
+    private static final ThreadLocal EVENTS = new ThreadLocal();
+
+    /**
+     * Largest message buffer kept between requests.
+     */
+    private static final int MAX_BUFFER_SIZE = 4096;
+
+    /**
+     * Is the event being dispatched?
+     */
+    private transient boolean inUse;
+
+    /**
+     * Buffer the parameterized messages are formatted into.
+     */
+    private transient StringBuilder buffer;
+
+    /**
+     * Fully qualified name of the logger class of the current request.
+     */
+    private transient String fqcn;
+
+    /**
+     * Name of the logger of the current request.
+     */
+    private transient String loggerName;
+
+    /**
+     * Time stamp of the current request.
+     */
+    private transient long time;
+
+    /**
+     * Create new instance.
+     */
+    private ReusableLoggingEvent() {
+        super(null, null, 0, null, null, null, null, null, null, null);
+    }
+
+    /**
+     * Get the event of the current thread, initialized for a new logging
+     * request. Returns <code>null</code> if the event of the current thread
+     * is already in use, that is when an appender logs while appending.
+     *
+     * @param fqnOfCategoryClass fully qualified name of the logger class.
+     * @param logger logger, may not be null.
+     * @param level level of the request.
+     * @param message message of the request.
+     * @param parameters arguments of a parameterized message, may be null.
+     * @param throwable throwable of the request, may be null.
+     * @return event to be released after dispatch, or null.
+     */
+    public static ReusableLoggingEvent acquire(
+            final String fqnOfCategoryClass,
+            final Category logger,
+            final Priority level,
+            final Object message,
+            final Object[] parameters,
+            final Throwable throwable) {
+        ReusableLoggingEvent event = (ReusableLoggingEvent) EVENTS.get();
+        if (event == null) {
+            event = new ReusableLoggingEvent();
+            EVENTS.set(event);
+        } else if (event.inUse) {
+            return null;
+        }
+        event.fqcn = fqnOfCategoryClass;
+        event.loggerName = logger.getName();
+        event.time = System.currentTimeMillis();
+        event.reinitialize(logger, level, message, parameters, throwable);
+        event.inUse = true;
+        return event;
+    }
+
+    /**
+     * Release the event once dispatched, dropping its references to the
+     * message, throwable and logger of the request.
+     */
+    public void release() {
+        fqcn = null;
+        loggerName = null;
+        time = 0;
+        reinitialize(null, null, null, null, null);
+        inUse = false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getFQNOfLoggerClass() {
+        return fqcn;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getLoggerName() {
+        return loggerName;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getTimeStamp() {
+        return time;
+    }
+
+    /**
+     * Format the arguments into the message pattern with the buffer of this
+     * event.
+     *
+     * @param pattern message pattern.
+     * @return formatted message.
+     */
+    String formatParameters(final String pattern) {
+        if (pattern == null || pattern.indexOf('{') < 0) {
+            return pattern;
+        }
+        if (buffer == null || buffer.capacity() > MAX_BUFFER_SIZE) {
+            buffer = new StringBuilder(pattern.length() + 32);
+        } else {
+            buffer.setLength(0);
+        }
+        ParameterFormatter.format(pattern, getParameters(), buffer);
+        return buffer.toString();
+    }
+
+    /**
+     * Create an immutable copy of this event, capturing the thread name,
+     * NDC and MDC of the current thread. The arguments of a parameterized
+     * message are carried over unformatted.
+     *
+     * @return new event.
+     */
+    public LoggingEvent toImmutable() {
+        LoggingEvent copy = new LoggingEvent(fqcn, getLogger(),
+                time, getLevel(), message, getThreadName(),
+                getThrowableInformation(), getNDC(),
+                locationInformationExists() ? getLocationInformation() : null,
+                getProperties());
+        copy.parameters = parameters;
+        return copy;
+    }
+
+    /**
+     * Serialize an immutable copy instead of this event.
+     *
+     * @return immutable copy.
+     */
+    private Object writeReplace() {
+        return toImmutable();
+    }
+}
@@ -19,6 +19,7 @@ package org.apache.log4j.xml;
 
 import org.apache.log4j.Appender;
 import org.apache.log4j.Layout;
+import org.apache.log4j.Hierarchy;
 import org.apache.log4j.Level;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
@@ -118,10 +119,12 @@ public class DOMConfigurator implements Configurator {
 	static final String ERROR_HANDLER_TAG = "errorHandler";
 	static final String REF_ATTR = "ref";
 	static final String ADDITIVITY_ATTR = "additivity";
+	private static final String ASYNC_ATTR = "async";
 	static final String THRESHOLD_ATTR = "threshold";
 	static final String CONFIG_DEBUG_ATTR = "configDebug";
 	static final String INTERNAL_DEBUG_ATTR = "debug";
 	private static final String RESET_ATTR = "reset";
+	private static final String REUSABLE_EVENTS_ATTR = "reusableEvents";
 	static final String RENDERING_CLASS_ATTR = "renderingClass";
 	static final String RENDERED_CLASS_ATTR = "renderedClass";
 
@@ -451,6 +454,7 @@ public class DOMConfigurator implements Configurator {
 			LogLog.debug("Setting [" + cat.getName() + "] additivity to ["
 					+ additivity + "].");
 			cat.setAdditivity(additivity);
+			parseAsync(loggerElement, cat);
 			parseChildrenOfLoggerElement(loggerElement, cat, false);
 		}
 	}
@@ -504,10 +508,34 @@ public class DOMConfigurator implements Configurator {
 		Logger root = repository.getRootLogger();
 		// category configuration needs to be atomic
 		synchronized (root) {
+			parseAsync(rootElement, root);
 			parseChildrenOfLoggerElement(rootElement, root, true);
 		}
 	}
 
+	/**
+	 * Used internally to parse the async attribute of a category or root
+	 * element.
+	 */
+	private void parseAsync(Element loggerElement, Logger cat) {
+		String asyncStr = subst(loggerElement.getAttribute(ASYNC_ATTR));
+		if (EMPTY_STR.equals(asyncStr)) {
+			return;
+		}
+		if (!(repository instanceof Hierarchy)) {
+			LogLog.warn("Asynchronous loggers are only supported by Hierarchy.");
+			return;
+		}
+		Boolean async = null;
+		if (!NULL.equalsIgnoreCase(asyncStr)) {
+			async = OptionConverter.toBoolean(asyncStr, false) ? Boolean.TRUE
+					: Boolean.FALSE;
+		}
+		LogLog.debug("Setting [" + cat.getName() + "] async to [" + async
+				+ "].");
+		cat.setAsync(async);
+	}
+
 	/**
 	 * Used internally to parse the children of a category element.
 	 */
@@ -978,6 +1006,17 @@ public class DOMConfigurator implements Configurator {
 			repository.setThreshold(thresholdStr);
 		}
 
+		String reusableStr = subst(element.getAttribute(REUSABLE_EVENTS_ATTR));
+		LogLog.debug("Reusable events =\"" + reusableStr + "\".");
+		if (!"".equals(reusableStr) && !"null".equals(reusableStr)) {
+			if (repository instanceof Hierarchy) {
+				((Hierarchy) repository).setReusableEvents(OptionConverter
+						.toBoolean(reusableStr, false));
+			} else {
+				LogLog.warn("Reusable events are only supported by Hierarchy.");
+			}
+		}
+
 		// Hashtable appenderBag = new Hashtable(11);
 
 		/*
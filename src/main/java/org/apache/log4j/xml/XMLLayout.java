@@ -70,7 +70,7 @@ public class XMLLayout extends Layout {
   private  final int DEFAULT_SIZE = 256;
   private final int UPPER_LIMIT = 2048;
 
-  private StringBuffer buf = new StringBuffer(DEFAULT_SIZE);
+  private StringBuilder buf = new StringBuilder(DEFAULT_SIZE);
   private boolean locationInfo = false;
   private boolean properties = false;
  
@@ -127,17 +127,26 @@ public class XMLLayout extends Layout {
     // Reset working buffer. If the buffer is too large, then we need a new
     // one in order to avoid the penalty of creating a large array.
     if(buf.capacity() > UPPER_LIMIT) {
-      buf = new StringBuffer(DEFAULT_SIZE);
+      buf = new StringBuilder(DEFAULT_SIZE);
     } else {
       buf.setLength(0);
     }
-    
+
+    format(event, buf);
+    return buf.toString();
+  }
+
+  /**
+   * Appends a {@link org.apache.log4j.spi.LoggingEvent} in conformance with the log4j.dtd to buf.
+   * @since 1.3.6
+   * */
+  public void format(final LoggingEvent event, final StringBuilder buf) {
     // We yield to the \r\n heresy.
 
     buf.append("<log4j:event logger=\"");
     buf.append(Transform.escapeTags(event.getLoggerName()));
     buf.append("\" timestamp=\"");
-    buf.append(event.timeStamp);
+    buf.append(event.getTimeStamp());
     buf.append("\" level=\"");
     buf.append(Transform.escapeTags(String.valueOf(event.getLevel())));
     buf.append("\" thread=\"");
@@ -202,8 +211,6 @@ public class XMLLayout extends Layout {
     }
     
     buf.append("</log4j:event>\r\n\r\n");
-    
-    return buf.toString();
   }
   
   /**
@@ -0,0 +1,239 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.log4j.performance;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Category;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.helpers.AppenderAttachableImpl;
+import org.apache.log4j.spi.LoggingEvent;
+
+/**
+   Measures how {@link Category#callAppenders} scales with the number
+   of logging threads.
+
+   <p>Two traversals of the same logger chain are compared. The
+   <em>locked</em> traversal takes a read lock on each ancestor before
+   looping on its appenders, as <code>callAppenders</code> used to. The
+   <em>snapshot</em> traversal calls <code>callAppenders</code> which
+   loops on the logger's precomputed appender chain without locking.
+
+   <p>Usage: <code>java org.apache.log4j.performance.CallAppendersScaling
+   [threads] [millis]</code> where <code>threads</code> is a comma
+   separated list of thread counts, "1,2,4,8,16,32,64" by default, and
+   <code>millis</code> is the duration of each run, 2000 by default.
+
+   <p>The appenders used do no work so that the figures reflect the cost
+   of the traversal only.
+*/
+public class CallAppendersScaling {
+
+  static final String LOGGER_NAME = "a.b.c.d.e.f.g.h";
+
+  static
+  public
+  void main(String[] args) throws Exception {
+    String threadList = (args.length > 0) ? args[0] : "1,2,4,8,16,32,64";
+    long duration = (args.length > 1) ? Long.parseLong(args[1]) : 2000;
+
+    // Every second level of the chain holds an appender, the root holds
+    // three, as is common with inherited configurations.
+    Logger root = Logger.getRootLogger();
+    root.setLevel(Level.ALL);
+    for(int i = 0; i < 3; i++) {
+      root.addAppender(new NopAppender());
+    }
+    String name = LOGGER_NAME;
+    for(int i = name.length(); i > 0; i = name.lastIndexOf('.', i - 1)) {
+      Logger l = Logger.getLogger(name.substring(0, i));
+      if(((name.length() - i) & 2) == 0) {
+        l.addAppender(new NopAppender());
+      }
+    }
+
+    Logger logger = Logger.getLogger(LOGGER_NAME);
+    LoggingEvent event = new LoggingEvent(CallAppendersScaling.class.getName(),
+                                          logger, Level.INFO, "message", null);
+    LockedChain locked = new LockedChain(logger);
+
+    System.out.println("threads\tlocked (ops/ms)\tsnapshot (ops/ms)");
+    String[] counts = threadList.split(",");
+    for(int i = 0; i < counts.length; i++) {
+      int threads = Integer.parseInt(counts[i].trim());
+      double before = run(threads, duration, locked, event);
+      double after = run(threads, duration, new SnapshotChain(logger), event);
+      System.out.println(threads + "\t" + (long) before + "\t" + (long) after);
+    }
+  }
+
+  /**
+     Runs <code>threads</code> threads traversing <code>chain</code> for
+     <code>duration</code> milliseconds and returns the aggregated number
+     of traversals per millisecond.
+  */
+  static
+  double run(int threads, long duration, Chain chain, LoggingEvent event)
+                                                     throws InterruptedException {
+    CountDownLatch start = new CountDownLatch(1);
+    Worker[] workers = new Worker[threads];
+    for(int i = 0; i < threads; i++) {
+      workers[i] = new Worker(chain, event, start);
+      workers[i].start();
+    }
+    start.countDown();
+    Thread.sleep(duration);
+    long total = 0;
+    for(int i = 0; i < threads; i++) {
+      workers[i].running = false;
+    }
+    for(int i = 0; i < threads; i++) {
+      workers[i].join();
+      total += workers[i].count;
+    }
+    return ((double) total) / duration;
+  }
+
+  interface Chain {
+    void callAppenders(LoggingEvent event);
+  }
+
+  /**
+     The lock free traversal of Category.callAppenders.
+  */
+  static class SnapshotChain implements Chain {
+    final Category category;
+
+    SnapshotChain(Category category) {
+      this.category = category;
+    }
+
+    public
+    void callAppenders(LoggingEvent event) {
+      category.callAppenders(event);
+    }
+  }
+
+  /**
+     Replica of the former traversal, one read lock per ancestor.
+  */
+  static class LockedChain implements Chain {
+    final ReadWriteLock[] locks;
+    final AppenderAttachableImpl[] aais;
+    final boolean[] additive;
+
+    LockedChain(Category category) {
+      int depth = 0;
+      for(Category c = category; c != null; c = c.getParent()) {
+        depth++;
+      }
+      locks = new ReadWriteLock[depth];
+      aais = new AppenderAttachableImpl[depth];
+      additive = new boolean[depth];
+      int i = 0;
+      for(Category c = category; c != null; c = c.getParent(), i++) {
+        locks[i] = new ReentrantReadWriteLock();
+        additive[i] = c.getAdditivity();
+        java.util.Enumeration e = c.getAllAppenders();
+        while(e.hasMoreElements()) {
+          if(aais[i] == null) {
+            aais[i] = new AppenderAttachableImpl();
+          }
+          aais[i].addAppender((org.apache.log4j.Appender) e.nextElement());
+        }
+      }
+    }
+
+    public
+    void callAppenders(LoggingEvent event) {
+      int writes = 0;
+      for(int i = 0; i < locks.length; i++) {
+        locks[i].readLock().lock();
+        try {
+          if(aais[i] != null) {
+            writes += aais[i].appendLoopOnAppenders(event);
+          }
+          if(!additive[i]) {
+            break;
+          }
+        } finally {
+          locks[i].readLock().unlock();
+        }
+      }
+      if(writes == 0) {
+        throw new IllegalStateException("no appenders");
+      }
+    }
+  }
+
+  static class Worker extends Thread {
+    final Chain chain;
+    final LoggingEvent event;
+    final CountDownLatch start;
+    volatile boolean running = true;
+    long count;
+
+    Worker(Chain chain, LoggingEvent event, CountDownLatch start) {
+      this.chain = chain;
+      this.event = event;
+      this.start = start;
+      setDaemon(true);
+    }
+
+    public
+    void run() {
+      try {
+        start.await();
+      } catch(InterruptedException e) {
+        return;
+      }
+      long n = 0;
+      while(running) {
+        chain.callAppenders(event);
+        n++;
+      }
+      count = n;
+    }
+  }
+
+  /**
+     An appender which does nothing, not even synchronize.
+  */
+  static class NopAppender extends AppenderSkeleton {
+    public
+    void doAppend(LoggingEvent event) {
+    }
+
+    protected
+    void append(LoggingEvent event) {
+    }
+
+    public
+    void close() {
+    }
+
+    public
+    boolean requiresLayout() {
+      return false;
+    }
+  }
+}
@@ -19,8 +19,12 @@ package org.apache.log4j;
 
 import junit.framework.TestCase;
 
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
 import java.util.Vector;
 
+import org.apache.log4j.spi.EventFieldConsumer;
 import org.apache.log4j.spi.LoggingEvent;
 
 /**
@@ -213,6 +217,398 @@ public class AsyncAppenderTestCase extends TestCase {
         assertEquals("?:? ", discardStr.substring(0, 4));
     }
 
+    /**
+     * Tests that the ring buffer delivers all events, in order for
+     * each thread, with each wait strategy.
+     * @throws InterruptedException if interrupted.
+     */
+    public void testRingBuffer() throws InterruptedException {
+        String[] strategies = new String[] {
+            AsyncAppender.WAIT_BLOCK, AsyncAppender.WAIT_PARK,
+            AsyncAppender.WAIT_YIELD, AsyncAppender.WAIT_SPIN };
+        for (int s = 0; s < strategies.length; s++) {
+            CollectingAppender collecting = new CollectingAppender();
+            AsyncAppender async = new AsyncAppender();
+            async.addAppender(collecting);
+            async.setBufferSize(16);
+            async.setRingBuffer(true);
+            async.setWaitStrategy(strategies[s]);
+            async.activateOptions();
+            Logger logger = Logger.getLogger("org.apache.log4j.ring." + s);
+            logger.setAdditivity(false);
+            logger.addAppender(async);
+
+            final int count = 2000;
+            Thread[] threads = new Thread[4];
+            for (int i = 0; i < threads.length; i++) {
+                final Logger l = logger;
+                final String prefix = i + ":";
+                threads[i] = new Thread() {
+                    public void run() {
+                        for (int j = 0; j < count; j++) {
+                            l.info(prefix + j);
+                        }
+                    }
+                };
+                threads[i].start();
+            }
+            for (int i = 0; i < threads.length; i++) {
+                threads[i].join();
+            }
+            async.close();
+
+            Vector events = collecting.events;
+            assertEquals(strategies[s], threads.length * count, events.size());
+            int[] next = new int[threads.length];
+            for (int i = 0; i < events.size(); i++) {
+                String msg = ((LoggingEvent) events.get(i)).getRenderedMessage();
+                int thread = Integer.parseInt(msg.substring(0, msg.indexOf(':')));
+                assertEquals(strategies[s], next[thread]++,
+                    Integer.parseInt(msg.substring(msg.indexOf(':') + 1)));
+            }
+        }
+    }
+
+    /**
+     * Tests that the ring buffer summarizes discarded events when
+     * not blocking.
+     */
+    public void testRingBufferDiscard() {
+        BlockableVectorAppender blockableAppender = new BlockableVectorAppender();
+        AsyncAppender async = new AsyncAppender();
+        async.addAppender(blockableAppender);
+        async.setBufferSize(5);
+        async.setBlocking(false);
+        async.setRingBuffer(true);
+        async.activateOptions();
+        Logger rootLogger = Logger.getRootLogger();
+        rootLogger.addAppender(async);
+        Greeter greeter = new Greeter(rootLogger, 100);
+        synchronized(blockableAppender.getMonitor()) {
+            greeter.run();
+            rootLogger.error("That's all folks.");
+        }
+        async.close();
+        Vector events = blockableAppender.getVector();
+        assertTrue(events.size() < 100);
+        LoggingEvent discardEvent = (LoggingEvent) events.get(events.size() - 1);
+        assertEquals(Level.ERROR, discardEvent.getLevel());
+        assertTrue(discardEvent.getRenderedMessage().startsWith("Discarded "));
+    }
+
+    /**
+     * Tests that events which do not fit in the buffer are spooled
+     * and replayed in order, with the list and the ring buffer.
+     */
+    public void testSpool() {
+        for (int mode = 0; mode < 2; mode++) {
+            BlockableVectorAppender blockableAppender = new BlockableVectorAppender();
+            AsyncAppender async = new AsyncAppender();
+            async.addAppender(blockableAppender);
+            async.setBufferSize(5);
+            async.setBlocking(false);
+            async.setRingBuffer(mode == 1);
+            async.setSpoolFile("output/async.spool." + mode);
+            async.activateOptions();
+            Logger logger = Logger.getLogger("org.apache.log4j.spool." + mode);
+            logger.setAdditivity(false);
+            logger.addAppender(async);
+            MDC.put("spool", "mdc");
+            synchronized(blockableAppender.getMonitor()) {
+                for (int i = 0; i < 100; i++) {
+                    logger.warn(Integer.toString(i), (i == 50) ? new Exception() : null);
+                }
+            }
+            MDC.remove("spool");
+            async.close();
+
+            Vector events = blockableAppender.getVector();
+            assertEquals(100, events.size());
+            for (int i = 0; i < 100; i++) {
+                LoggingEvent event = (LoggingEvent) events.get(i);
+                assertEquals(Integer.toString(i), event.getRenderedMessage());
+                assertEquals(Level.WARN, event.getLevel());
+                assertEquals(logger.getName(), event.getLoggerName());
+                assertEquals("mdc", event.getMDC("spool"));
+                assertEquals(i == 50, event.getThrowableStrRep() != null);
+            }
+            assertTrue(async.getSpilledCount() > 0);
+            assertEquals(async.getSpilledCount(), async.getReplayedCount());
+            assertFalse(new java.io.File("output/async.spool." + mode).exists());
+        }
+    }
+
+    /**
+     * Tests that events are discarded once the spool is full.
+     */
+    public void testSpoolFull() {
+        BlockableVectorAppender blockableAppender = new BlockableVectorAppender();
+        AsyncAppender async = new AsyncAppender();
+        async.addAppender(blockableAppender);
+        async.setBufferSize(5);
+        async.setBlocking(false);
+        async.setSpoolFile("output/async.spool.full");
+        async.setMaxSpoolSize("1KB");
+        async.activateOptions();
+        Logger logger = Logger.getLogger("org.apache.log4j.spool.full");
+        logger.setAdditivity(false);
+        logger.addAppender(async);
+        synchronized(blockableAppender.getMonitor()) {
+            for (int i = 0; i < 100; i++) {
+                logger.error("Hello, World");
+            }
+        }
+        async.close();
+        Vector events = blockableAppender.getVector();
+        assertTrue(events.size() < 100);
+        assertTrue(async.getSpilledCount() > 0);
+        assertEquals(async.getSpilledCount(), async.getReplayedCount());
+        LoggingEvent discardEvent = (LoggingEvent) events.get(events.size() - 1);
+        assertTrue(discardEvent.getRenderedMessage().startsWith("Discarded "));
+    }
+
+    /**
+     * Tests that less severe events are evicted for more severe ones
+     * and that discarded events are counted.
+     */
+    public void testShedding() {
+        BlockableVectorAppender blockableAppender = new BlockableVectorAppender();
+        AsyncAppender async = new AsyncAppender();
+        async.addAppender(blockableAppender);
+        async.setBufferSize(5);
+        async.setBlocking(false);
+        async.setShedding(true);
+        async.activateOptions();
+        Logger logger = Logger.getLogger("org.apache.log4j.shedding");
+        logger.setAdditivity(false);
+        logger.addAppender(async);
+        synchronized(blockableAppender.getMonitor()) {
+            //
+            //   the dispatcher takes the first event and waits for
+            //      the monitor, so that the buffer then fills up.
+            //
+            logger.debug("debug");
+            waitForBlockedDispatcher();
+            for (int i = 1; i < 20; i++) {
+                logger.debug("debug");
+            }
+            for (int i = 0; i < 3; i++) {
+                logger.error("error");
+            }
+        }
+        async.close();
+
+        Vector events = blockableAppender.getVector();
+        int errors = 0;
+        int debugs = 0;
+        for (int i = 0; i < events.size(); i++) {
+            LoggingEvent event = (LoggingEvent) events.get(i);
+            if (event.getRenderedMessage().startsWith("Discarded ")) {
+                continue;
+            }
+            if (event.getLevel() == Level.ERROR) {
+                errors++;
+            } else {
+                debugs++;
+            }
+        }
+        assertEquals(3, errors);
+        assertEquals(20 - debugs, async.getDiscardedCount());
+        assertEquals(20 - debugs, async.getLevelDiscardedCount(Level.DEBUG));
+        assertEquals(0, async.getLevelDiscardedCount(Level.ERROR));
+        assertEquals(20 - debugs, async.getLoggerDiscardedCount(logger.getName()));
+        LoggingEvent discardEvent = (LoggingEvent) events.get(events.size() - 1);
+        assertEquals(Level.DEBUG, discardEvent.getLevel());
+        assertTrue(discardEvent.getRenderedMessage().startsWith("Discarded "));
+    }
+
+    /**
+     * Tests that the arguments of a parameterized message which may
+     * change are formatted by the calling thread.
+     */
+    public void testMutableParameters() {
+        BlockableVectorAppender blockableAppender = new BlockableVectorAppender();
+        AsyncAppender async = new AsyncAppender();
+        async.addAppender(blockableAppender);
+        async.activateOptions();
+        Logger logger = Logger.getLogger("org.apache.log4j.parameters");
+        logger.setAdditivity(false);
+        logger.addAppender(async);
+        StringBuffer mutable = new StringBuffer("before");
+        synchronized(blockableAppender.getMonitor()) {
+            logger.info("{} {}", "value", mutable);
+            mutable.setLength(0);
+            mutable.append("after");
+        }
+        async.close();
+
+        Vector events = blockableAppender.getVector();
+        assertEquals(1, events.size());
+        assertEquals("value before",
+            ((LoggingEvent) events.get(0)).getRenderedMessage());
+    }
+
+    /**
+     * Wait until a dispatcher thread is blocked on a monitor.
+     */
+    private static void waitForBlockedDispatcher() {
+        for (int i = 0; i < 500; i++) {
+            Iterator iter = Thread.getAllStackTraces().keySet().iterator();
+            while (iter.hasNext()) {
+                Thread thread = (Thread) iter.next();
+                if (thread.getName().startsWith("AsyncAppender-Dispatcher-")
+                        && thread.getState() == Thread.State.BLOCKED) {
+                    return;
+                }
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        fail("the dispatcher did not block");
+    }
+
+    /**
+     * Tests that each appender is driven by the single dispatcher of its
+     * partition and receives every event in order.
+     * @throws InterruptedException if interrupted.
+     */
+    public void testPartitions() throws InterruptedException {
+        CollectingAppender[] collecting = new CollectingAppender[4];
+        AsyncAppender async = new AsyncAppender();
+        async.setName("partitioned");
+        for (int i = 0; i < collecting.length; i++) {
+            collecting[i] = new CollectingAppender();
+            async.addAppender(collecting[i]);
+        }
+        async.setBufferSize(16);
+        async.setPartitions(4);
+        async.activateOptions();
+        Logger logger = Logger.getLogger("org.apache.log4j.partitions");
+        logger.setAdditivity(false);
+        logger.addAppender(async);
+
+        final int count = 500;
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            final Logger l = logger;
+            final String partition = Integer.toString(i);
+            threads[i] = new Thread() {
+                public void run() {
+                    for (int j = 0; j < count; j++) {
+                        l.info(partition + ":" + j);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        }
+        async.close();
+
+        Set dispatchers = new HashSet();
+        for (int c = 0; c < collecting.length; c++) {
+            Vector events = collecting[c].events;
+            assertEquals(threads.length * count, events.size());
+            int[] next = new int[threads.length];
+            for (int i = 0; i < events.size(); i++) {
+                String msg = ((LoggingEvent) events.get(i)).getRenderedMessage();
+                int thread = Integer.parseInt(msg.substring(0, msg.indexOf(':')));
+                assertEquals(next[thread]++,
+                    Integer.parseInt(msg.substring(msg.indexOf(':') + 1)));
+            }
+            assertEquals(1, collecting[c].threads.size());
+            dispatchers.addAll(collecting[c].threads);
+            assertTrue(collecting[c].closed);
+        }
+        assertEquals(collecting.length, dispatchers.size());
+    }
+
+    /**
+     * Tests that only the fields read by the attached appenders are
+     * taken from the calling thread.
+     */
+    public void testRequiredFields() {
+        CollectingAppender messages = new CollectingAppender();
+        messages.fields = EventFieldConsumer.MESSAGE;
+        AsyncAppender async = new AsyncAppender();
+        async.setName("fields");
+        async.addAppender(messages);
+        async.activateOptions();
+        Logger logger = Logger.getLogger("org.apache.log4j.fields");
+        logger.setAdditivity(false);
+        logger.addAppender(async);
+
+        NDC.push("context");
+        logger.info("message only");
+        CollectingAppender all = new CollectingAppender();
+        async.addAppender(all);
+        logger.info("every field");
+        NDC.pop();
+        async.close();
+
+        assertEquals(2, messages.events.size());
+        LoggingEvent first = (LoggingEvent) messages.events.get(0);
+        assertEquals("message only", first.getRenderedMessage());
+        assertNull(first.getNDC());
+        LoggingEvent second = (LoggingEvent) messages.events.get(1);
+        assertEquals("context", second.getNDC());
+        assertEquals(Thread.currentThread().getName(), second.getThreadName());
+    }
+
+    /**
+     * Appender collecting events without delay.
+     */
+    private static final class CollectingAppender extends AppenderSkeleton {
+      /**
+       * Events.
+       */
+      final Vector events = new Vector();
+
+      /**
+       * Names of the threads which appended events.
+       */
+      final Set threads = new HashSet();
+
+      /**
+       * Fields read.
+       */
+      int fields = EventFieldConsumer.ALL;
+
+      /**
+       * {@inheritDoc}
+       */
+      protected void append(final LoggingEvent event) {
+        events.add(event);
+        threads.add(Thread.currentThread().getName());
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public void close() {
+        closed = true;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public boolean requiresLayout() {
+        return false;
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      public int getRequiredFields() {
+        return fields;
+      }
+    }
+
     /**
      *  Logging request runnable.
      */
@@ -18,8 +18,12 @@
 package org.apache.log4j;
 
 import junit.framework.TestCase;
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.RetainingAppender;
+import org.apache.log4j.spi.ReusableLoggingEvent;
 
 import java.lang.reflect.Method;
+import java.util.Vector;
 
 
 /**
@@ -47,6 +51,202 @@ public class CategoryTest extends TestCase {
     category.info("Hello, World");
   }
 
+  /**
+   * Tests that callAppenders sees appenders added and removed
+   * after the category was first used.
+   */
+  public void testCallAppendersAfterAppenderChange() {
+    MockCategory category = new MockCategory("org.example.bar");
+    category.setAdditivity(false);
+    VectorAppender first = new VectorAppender();
+    VectorAppender second = new VectorAppender();
+    category.addAppender(first);
+    category.info("one");
+    category.addAppender(second);
+    category.info("two");
+    category.removeAppender(first);
+    category.info("three");
+    assertEquals(2, first.getVector().size());
+    assertEquals(2, second.getVector().size());
+    category.removeAllAppenders();
+    category.info("four");
+    assertEquals(2, second.getVector().size());
+  }
+
+  /**
+   * Tests that callAppenders reaches each inherited appender once
+   * and follows additivity changes.
+   */
+  public void testCallAppendersChain() {
+    Hierarchy h = new Hierarchy(new org.apache.log4j.spi.RootLogger(Level.DEBUG));
+    VectorAppender shared = new VectorAppender();
+    VectorAppender parentOnly = new VectorAppender();
+    h.getRootLogger().addAppender(shared);
+    Logger parent = h.getLogger("org.example");
+    parent.addAppender(shared);
+    parent.addAppender(parentOnly);
+    Logger child = h.getLogger("org.example.child");
+    child.info("one");
+    assertEquals(1, shared.getVector().size());
+    assertEquals(1, parentOnly.getVector().size());
+
+    parent.setAdditivity(false);
+    parent.removeAppender(shared);
+    child.info("two");
+    assertEquals(1, shared.getVector().size());
+    assertEquals(2, parentOnly.getVector().size());
+
+    parent.setAdditivity(true);
+    child.info("three");
+    assertEquals(2, shared.getVector().size());
+    assertEquals(3, parentOnly.getVector().size());
+  }
+
+  /**
+   * Tests that reusable events are reused across requests while
+   * retaining appenders receive immutable copies.
+   */
+  public void testReusableEvents() {
+    Hierarchy h = new Hierarchy(new org.apache.log4j.spi.RootLogger(Level.DEBUG));
+    h.setReusableEvents(true);
+    final Vector seen = new Vector();
+    final Vector messages = new Vector();
+    h.getRootLogger().addAppender(new AppenderSkeleton() {
+      protected void append(final LoggingEvent event) {
+        seen.addElement(event);
+        messages.addElement(event.getRenderedMessage());
+      }
+      public void close() {
+      }
+      public boolean requiresLayout() {
+        return false;
+      }
+    });
+    RetainingVectorAppender retaining = new RetainingVectorAppender();
+    h.getRootLogger().addAppender(retaining);
+    Logger logger = h.getLogger("org.example.reuse");
+    logger.info("one");
+    logger.warn("two");
+
+    assertEquals(2, seen.size());
+    assertSame(seen.elementAt(0), seen.elementAt(1));
+    assertTrue(seen.elementAt(0) instanceof ReusableLoggingEvent);
+    assertNull(((LoggingEvent) seen.elementAt(0)).getMessage());
+    assertEquals("one", messages.elementAt(0));
+    assertEquals("two", messages.elementAt(1));
+
+    Vector kept = retaining.getVector();
+    assertEquals(2, kept.size());
+    LoggingEvent first = (LoggingEvent) kept.elementAt(0);
+    LoggingEvent second = (LoggingEvent) kept.elementAt(1);
+    assertFalse(first instanceof ReusableLoggingEvent);
+    assertEquals("one", first.getMessage());
+    assertEquals(Level.INFO, first.getLevel());
+    assertEquals("org.example.reuse", first.getLoggerName());
+    assertEquals("two", second.getMessage());
+    assertEquals(Level.WARN, second.getLevel());
+  }
+
+  /**
+   * Tests that the requests of asynchronous loggers are dispatched by
+   * another thread with the context of the calling thread.
+   */
+  public void testAsync() {
+    Hierarchy h = new Hierarchy(new org.apache.log4j.spi.RootLogger(Level.DEBUG));
+    final Vector events = new Vector();
+    final Vector threads = new Vector();
+    h.getRootLogger().addAppender(new AppenderSkeleton() {
+      protected void append(final LoggingEvent event) {
+        events.addElement(event);
+        threads.addElement(Thread.currentThread());
+      }
+      public void close() {
+      }
+      public boolean requiresLayout() {
+        return false;
+      }
+    });
+    Logger async = h.getLogger("org.example.async");
+    async.setAsync(Boolean.TRUE);
+    Logger child = h.getLogger("org.example.async.child");
+    Logger sync = h.getLogger("org.example.async.sync");
+    sync.setAsync(Boolean.FALSE);
+    assertTrue(child.isAsync());
+    assertFalse(sync.isAsync());
+    assertFalse(h.getLogger("org.example").isAsync());
+
+    MDC.put("key", "value");
+    StringBuffer mutable = new StringBuffer("one");
+    child.info(mutable);
+    mutable.append(" changed");
+    child.debug("{} {}", "two", new Integer(2));
+    sync.info("three");
+    MDC.remove("key");
+    h.shutdown();
+
+    assertEquals(3, events.size());
+    LoggingEvent[] byMessage = new LoggingEvent[3];
+    Thread[] byThread = new Thread[3];
+    String[] messages = new String[] { "one", "two 2", "three" };
+    for (int i = 0; i < events.size(); i++) {
+      LoggingEvent event = (LoggingEvent) events.elementAt(i);
+      int index = java.util.Arrays.asList(messages).indexOf(event.getRenderedMessage());
+      assertTrue(event.getRenderedMessage(), index >= 0);
+      byMessage[index] = event;
+      byThread[index] = (Thread) threads.elementAt(i);
+    }
+    for (int i = 0; i < 2; i++) {
+      assertEquals(Thread.currentThread().getName(), byMessage[i].getThreadName());
+      assertEquals("value", byMessage[i].getMDC("key"));
+      assertNotSame(Thread.currentThread(), byThread[i]);
+    }
+    assertEquals(Level.DEBUG, byMessage[1].getLevel());
+    assertEquals("org.example.async.child", byMessage[1].getLoggerName());
+    assertSame(Thread.currentThread(), byThread[2]);
+  }
+
+  /**
+   * Tests that no request is lost when the dispatcher of the
+   * asynchronous loggers stops while other threads log.
+   * @throws InterruptedException if interrupted.
+   */
+  public void testAsyncStop() throws InterruptedException {
+    Hierarchy h = new Hierarchy(new org.apache.log4j.spi.RootLogger(Level.DEBUG));
+    final Vector events = new Vector();
+    h.getRootLogger().addAppender(new AppenderSkeleton() {
+      protected void append(final LoggingEvent event) {
+        events.addElement(event);
+      }
+      public void close() {
+      }
+      public boolean requiresLayout() {
+        return false;
+      }
+    });
+    final Logger logger = h.getLogger("org.example.stop");
+    logger.setAsync(Boolean.TRUE);
+    final int count = 2000;
+    Thread[] threads = new Thread[4];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread() {
+        public void run() {
+          for (int j = 0; j < count; j++) {
+            logger.info("message");
+          }
+        }
+      };
+      threads[i].start();
+    }
+    while (events.size() < count) {
+      Thread.sleep(1);
+    }
+    h.stopAsyncDispatcher();
+    for (int i = 0; i < threads.length; i++) {
+      threads[i].join();
+    }
+    assertEquals(count * threads.length, events.size());
+  }
+
   /**
    * Tests that the return type of getChainedPriority is Priority.
    * @throws Exception thrown if Category.getChainedPriority can not be found.
@@ -86,6 +286,16 @@ public class CategoryTest extends TestCase {
     logger.setPriority(debug);
   }
 
+  /**
+   * Vector appender declaring that it keeps events.
+   */
+  private static class RetainingVectorAppender extends VectorAppender
+      implements RetainingAppender {
+    public boolean retainsEvents() {
+      return true;
+    }
+  }
+
   /**
    * Derived category to check method signature of forcedLog.
    */
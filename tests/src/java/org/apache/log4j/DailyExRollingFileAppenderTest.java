@@ -0,0 +1,226 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.log4j;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import org.apache.log4j.helpers.CompressionExecutor;
+import org.apache.log4j.helpers.GZipUtils;
+import org.apache.log4j.spi.LoggingEvent;
+
+/**
+ * Tests of DailyExRollingFileAppender.
+ */
+public class DailyExRollingFileAppenderTest extends TestCase {
+
+  private static final long DAY = 24L * 60 * 60 * 1000;
+
+  /**
+   * Constructs new instance of test.
+   * @param name test name.
+   */
+  public DailyExRollingFileAppenderTest(final String name) {
+    super(name);
+  }
+
+  /**
+   * Tests that an asynchronous rollover reopens the file and deletes the
+   * history files in excess in the background.
+   * @throws IOException if IOException during test.
+   */
+  public void testAsyncRollover() throws IOException {
+    File file = new File("output/dexrfa-async.log");
+    deleteHistory(file);
+    DailyExRollingFileAppender appender = create(file);
+    appender.setAsyncRollover(true);
+    appender.setRolloverQueueSize(1);
+    appender.activateOptions();
+
+    String[] names = new String[3];
+    long time = file.lastModified();
+    for (int i = 0; i < names.length; i++) {
+      names[i] = file.getName() + format(time);
+      appender.doAppend(createEvent("day " + i));
+      time += DAY;
+      appender.now.setTime(time);
+      appender.rollOver();
+    }
+    appender.doAppend(createEvent("last"));
+    appender.close();
+
+    assertEquals("last" + Layout.LINE_SEP, read(file));
+    assertFalse(new File("output", names[0]).exists());
+    assertEquals("day 1" + Layout.LINE_SEP, read(new File("output", names[1])));
+    assertEquals("day 2" + Layout.LINE_SEP, read(new File("output", names[2])));
+  }
+
+  /**
+   * Tests that the history files present at activation, compressed or
+   * not, are deleted oldest first as files are rolled over.
+   * @throws IOException if IOException during test.
+   */
+  public void testHistoryIndex() throws IOException {
+    File file = new File("output/dexrfa-index.log");
+    deleteHistory(file);
+    File oldest = new File("output/dexrfa-index.log.2000-01-01");
+    File older = new File("output/dexrfa-index.log.2000-01-02.gz");
+    new java.io.FileOutputStream(oldest).close();
+    new java.io.FileOutputStream(older).close();
+    DailyExRollingFileAppender appender = create(file);
+    appender.activateOptions();
+
+    long time = file.lastModified();
+    File first = new File("output", file.getName() + format(time));
+    appender.doAppend(createEvent("first"));
+    time += DAY;
+    appender.now.setTime(time);
+    appender.rollOver();
+    assertFalse(oldest.exists());
+    assertTrue(older.exists());
+    assertTrue(first.exists());
+
+    appender.doAppend(createEvent("second"));
+    time += DAY;
+    appender.now.setTime(time);
+    appender.rollOver();
+    appender.close();
+    assertFalse(older.exists());
+    assertTrue(first.exists());
+  }
+
+  /**
+   * Tests that rolled over files are compressed by the shared executor
+   * and that its metrics account for them.
+   * @throws IOException if IOException during test.
+   */
+  public void testCompression() throws IOException {
+    File file = new File("output/dexrfa-compress.log");
+    deleteHistory(file);
+    DailyExRollingFileAppender appender = create(file);
+    appender.setFileCompress(true);
+    appender.setCompressionPoolSize(1);
+    appender.activateOptions();
+    CompressionExecutor executor = CompressionExecutor.getInstance();
+    long completed = executor.getCompletedCount();
+    long saved = executor.getBytesSaved();
+
+    long time = file.lastModified();
+    File[] names = new File[2];
+    for (int i = 0; i < names.length; i++) {
+      names[i] = new File("output", file.getName() + format(time));
+      for (int j = 0; j < 100; j++) {
+        appender.doAppend(createEvent("day " + i + " message " + j));
+      }
+      time += DAY;
+      appender.now.setTime(time);
+      appender.rollOver();
+    }
+    appender.close();
+    assertTrue(executor.drain(10000));
+
+    for (int i = 0; i < names.length; i++) {
+      assertFalse(names[i].exists());
+      assertTrue(new File(names[i].getPath() + GZipUtils.EXT).exists());
+    }
+    assertEquals(0, executor.getPendingCount());
+    assertEquals(completed + 2, executor.getCompletedCount());
+    assertTrue(executor.getBytesSaved() > saved);
+  }
+
+  /**
+   * Tests that files beyond the queue size are left uncompressed and
+   * that a file which can not be compressed is counted as failed.
+   */
+  public void testCompressionBounds() {
+    CompressionExecutor executor = new CompressionExecutor(1, 0);
+    File dir = new File("output");
+    assertFalse(executor.compress(dir));
+    assertEquals(1, executor.getRejectedCount());
+
+    executor.setQueueSize(1);
+    assertTrue(executor.compress(dir));
+    assertTrue(executor.drain(10000));
+    assertEquals(1, executor.getFailedCount());
+    assertEquals(0, executor.getCompletedCount());
+  }
+
+  /**
+   * Tests that the compression options of an appender are kept by the
+   * appender and applied to the shared executor on activation.
+   */
+  public void testCompressionOptions() {
+    CompressionExecutor executor = CompressionExecutor.getInstance();
+    DailyExRollingFileAppender appender = create(new File("output/dexrfa-options.log"));
+    appender.setName("options");
+    appender.setFileCompress(true);
+    appender.setCompressionQueueSize(8);
+    assertEquals(8, appender.getCompressionQueueSize());
+    assertEquals(CompressionExecutor.DEFAULT_QUEUE_SIZE, executor.getQueueSize());
+    appender.activateOptions();
+    assertEquals(8, executor.getQueueSize());
+    appender.close();
+
+    executor.setOption("other", "QueueSize", CompressionExecutor.DEFAULT_QUEUE_SIZE);
+    assertEquals(CompressionExecutor.DEFAULT_QUEUE_SIZE, executor.getQueueSize());
+    assertEquals(8, appender.getCompressionQueueSize());
+  }
+
+  static DailyExRollingFileAppender create(final File file) {
+    DailyExRollingFileAppender appender = new DailyExRollingFileAppender();
+    appender.setLayout(new PatternLayout("%m%n"));
+    appender.setAppend(false);
+    appender.setFile(file.getPath());
+    appender.setDatePattern("'.'yyyy-MM-dd");
+    appender.setMaxBackupIndex(2);
+    return appender;
+  }
+
+  static LoggingEvent createEvent(final String msg) {
+    Logger logger = Logger.getLogger(DailyExRollingFileAppenderTest.class);
+    return new LoggingEvent(Logger.class.getName(), logger, Level.INFO, msg, null);
+  }
+
+  static String format(final long time) {
+    return new SimpleDateFormat("'.'yyyy-MM-dd").format(new Date(time));
+  }
+
+  static void deleteHistory(final File file) {
+    File[] files = file.getAbsoluteFile().getParentFile().listFiles();
+    for (int i = 0; i < files.length; i++) {
+      if (files[i].getName().startsWith(file.getName())) {
+        files[i].delete();
+      }
+    }
+  }
+
+  static String read(final File file) throws IOException {
+    byte[] content = new byte[(int) file.length()];
+    java.io.FileInputStream is = new java.io.FileInputStream(file);
+    try {
+      assertEquals(content.length, is.read(content));
+    } finally {
+      is.close();
+    }
+    return new String(content);
+  }
+}
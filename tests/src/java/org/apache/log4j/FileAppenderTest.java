@@ -20,9 +20,13 @@ package org.apache.log4j;
 import junit.framework.TestCase;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 
 import java.lang.reflect.Method;
 
+import org.apache.log4j.spi.LoggingEvent;
+
 
 /**
  *
@@ -55,6 +59,212 @@ public class FileAppenderTest extends TestCase {
     }
   }
 
+  /**
+   * Tests that the ChannelIO option writes the encoded output,
+   * including strings larger than the buffer.
+   * @throws IOException if IOException during test.
+   */
+  public void testChannelIO() throws IOException {
+    File file = new File("output/channel.log");
+    file.delete();
+
+    FileAppender appender = new FileAppender();
+    appender.setFile(file.getPath());
+    appender.setLayout(new PatternLayout("%m%n"));
+    appender.setEncoding("UTF-8");
+    appender.setChannelIO(true);
+    appender.setBufferSize(16);
+    appender.activateOptions();
+
+    Logger logger = Logger.getLogger("org.apache.log4j.FileAppenderTest");
+    StringBuffer expected = new StringBuffer();
+    for (int i = 0; i < 10; i++) {
+      String msg = "h\u00e9llo \u20ac " + i + " \ud834\udd1e";
+      if (i == 5) {
+        msg += " and a message larger than the buffer";
+      }
+      appender.doAppend(
+        new LoggingEvent(Logger.class.getName(), logger, Level.INFO, msg, null));
+      expected.append(msg).append(Layout.LINE_SEP);
+    }
+    appender.close();
+
+    byte[] content = new byte[(int) file.length()];
+    FileInputStream is = new FileInputStream(file);
+    try {
+      assertEquals(content.length, is.read(content));
+    } finally {
+      is.close();
+    }
+    assertEquals(expected.toString(), new String(content, "UTF-8"));
+  }
+
+  /**
+   * Tests that the MappedIO option maps further regions as needed and
+   * truncates the file to its content when closed.
+   * @throws IOException if IOException during test.
+   */
+  public void testMappedIO() throws IOException {
+    File file = new File("output/mapped.log");
+    file.delete();
+
+    FileAppender appender = new FileAppender();
+    appender.setFile(file.getPath());
+    appender.setLayout(new PatternLayout("%m%n"));
+    appender.setEncoding("UTF-8");
+    appender.setMappedIO(true);
+    appender.setMapRegionSize("64");
+    appender.activateOptions();
+
+    Logger logger = Logger.getLogger("org.apache.log4j.FileAppenderTest");
+    StringBuffer expected = new StringBuffer();
+    for (int i = 0; i < 20; i++) {
+      String msg = "mapped \u20ac " + i;
+      appender.doAppend(
+        new LoggingEvent(Logger.class.getName(), logger, Level.INFO, msg, null));
+      expected.append(msg).append(Layout.LINE_SEP);
+    }
+    appender.close();
+
+    appender = new FileAppender();
+    appender.setFile(file.getPath());
+    appender.setLayout(new PatternLayout("%m%n"));
+    appender.setEncoding("UTF-8");
+    appender.setMappedIO(true);
+    appender.activateOptions();
+    appender.doAppend(
+      new LoggingEvent(Logger.class.getName(), logger, Level.INFO, "appended", null));
+    appender.close();
+    expected.append("appended").append(Layout.LINE_SEP);
+
+    byte[] content = new byte[(int) file.length()];
+    FileInputStream is = new FileInputStream(file);
+    try {
+      assertEquals(content.length, is.read(content));
+    } finally {
+      is.close();
+    }
+    assertEquals(expected.toString(), new String(content, "UTF-8"));
+  }
+
+  /**
+   * Tests that events committed in groups by concurrent threads are all
+   * written, before append returns unless only enqueued.
+   * @throws Exception if exception during test.
+   */
+  public void testGroupCommit() throws Exception {
+    String[] durabilities = new String[] { "ENQUEUED", "WRITTEN", "FORCED" };
+    for (int d = 0; d < durabilities.length; d++) {
+      File file = new File("output/groupcommit.log");
+      file.delete();
+
+      final FileAppender appender = new FileAppender();
+      appender.setFile(file.getPath());
+      appender.setLayout(new PatternLayout("%m%n"));
+      appender.setGroupCommit(true);
+      appender.setDurability(durabilities[d]);
+      appender.activateOptions();
+      assertEquals(durabilities[d], appender.getDurability());
+      assertEquals(d == 0, appender.retainsEvents());
+
+      final Logger logger = Logger.getLogger("org.apache.log4j.FileAppenderTest");
+      final int count = 200;
+      Thread[] threads = new Thread[4];
+      for (int i = 0; i < threads.length; i++) {
+        final String msg = "thread " + i;
+        threads[i] = new Thread() {
+          public void run() {
+            for (int j = 0; j < count; j++) {
+              appender.doAppend(new LoggingEvent(Logger.class.getName(),
+                logger, Level.INFO, msg, null));
+            }
+          }
+        };
+        threads[i].start();
+      }
+      for (int i = 0; i < threads.length; i++) {
+        threads[i].join();
+      }
+      if (d == 0) {
+        appender.close();
+      }
+
+      String[] lines = read(file).split(Layout.LINE_SEP);
+      assertEquals(threads.length * count, lines.length);
+      for (int i = 0; i < lines.length; i++) {
+        assertTrue(lines[i], lines[i].matches("thread [0-3]"));
+      }
+      appender.close();
+    }
+  }
+
+  /**
+   * Tests that the file is forced by the background thread once
+   * SyncSize bytes are written, at the SyncInterval and when closed.
+   * @throws Exception if exception during test.
+   */
+  public void testSync() throws Exception {
+    File file = new File("output/sync.log");
+    file.delete();
+
+    FileAppender appender = new FileAppender();
+    appender.setFile(file.getPath());
+    appender.setLayout(new PatternLayout("%m%n"));
+    appender.setSyncSize("100");
+    appender.activateOptions();
+    assertEquals(100, appender.getSyncThreshold());
+
+    Logger logger = Logger.getLogger("org.apache.log4j.FileAppenderTest");
+    for (int i = 0; i < 20; i++) {
+      appender.doAppend(new LoggingEvent(Logger.class.getName(), logger,
+        Level.INFO, "message " + i, null));
+    }
+    for (int i = 0; i < 100 && appender.getSyncedOffset() < 100; i++) {
+      Thread.sleep(20);
+    }
+    assertTrue(appender.getSyncedOffset() >= 100);
+    assertTrue(appender.getSyncCount() >= 1);
+    assertTrue(appender.getMaxSyncNanos() >= appender.getLastSyncNanos());
+    assertTrue(appender.getTotalSyncNanos() >= appender.getMaxSyncNanos());
+    appender.close();
+    assertEquals(file.length(), appender.getSyncedOffset());
+
+    appender = new FileAppender();
+    appender.setFile(file.getPath());
+    appender.setLayout(new PatternLayout("%m%n"));
+    appender.setSyncInterval(20);
+    appender.activateOptions();
+    appender.doAppend(new LoggingEvent(Logger.class.getName(), logger,
+      Level.INFO, "interval", null));
+    for (int i = 0; i < 100 && appender.getSyncedOffset() < file.length(); i++) {
+      Thread.sleep(20);
+    }
+    assertEquals(file.length(), appender.getSyncedOffset());
+    appender.close();
+
+    // the bytes appended are counted from the end of the file
+    appender = new FileAppender();
+    appender.setFile(file.getPath());
+    appender.setLayout(new PatternLayout("%m%n"));
+    appender.setSyncSize("10");
+    appender.activateOptions();
+    appender.doAppend(new LoggingEvent(Logger.class.getName(), logger,
+      Level.INFO, "appended message", null));
+    appender.close();
+    assertEquals(file.length(), appender.getSyncedOffset());
+  }
+
+  private static String read(final File file) throws IOException {
+    byte[] content = new byte[(int) file.length()];
+    FileInputStream is = new FileInputStream(file);
+    try {
+      assertEquals(content.length, is.read(content));
+    } finally {
+      is.close();
+    }
+    return new String(content);
+  }
+
   /**
    * Tests that the return type of getThreshold is Priority.
    * @throws Exception
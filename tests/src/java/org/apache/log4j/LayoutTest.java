@@ -141,6 +141,24 @@ public class LayoutTest extends TestCase {
     assertEquals("Mock", result);
   }
 
+  /**
+   * Tests that formatting into a buffer appends what format returns.
+   */
+  public void testFormatToBuilder() {
+    Logger logger = Logger.getLogger("org.apache.log4j.LayoutTest");
+    NDC.push("context");
+    LoggingEvent event =
+      new LoggingEvent(
+        "org.apache.log4j.Logger", logger, Level.WARN, "Hello, <World>",
+        new Exception("]]> failure"));
+    NDC.pop();
+    Layout layout = createLayout();
+    String expected = layout.format(event);
+    StringBuilder buf = new StringBuilder("prefix");
+    layout.format(event, buf);
+    assertEquals("prefix" + expected, buf.toString());
+  }
+
   /**
    * Concrete Layout class for tests.
    */
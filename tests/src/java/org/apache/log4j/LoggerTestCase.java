@@ -329,6 +329,79 @@ public class LoggerTestCase extends TestCase {
     assertSame(a0, a1);
   }
 
+  /**
+   * Tests that loggers retrieved concurrently are unique per name,
+   * linked to their closest ancestor and enumerated without provision nodes.
+   */
+  public
+  void testConcurrentGetLogger() throws InterruptedException {
+    final Hierarchy h = new Hierarchy(new RootLogger((Level) Level.DEBUG));
+    final String[] names = { "x.y.z", "x", "x.y.w", "x.y" };
+    final Logger[][] found = new Logger[8][];
+    Thread[] threads = new Thread[found.length];
+    for (int i = 0; i < threads.length; i++) {
+      final int index = i;
+      threads[i] = new Thread() {
+        public void run() {
+          Logger[] loggers = new Logger[names.length];
+          for (int j = 0; j < names.length; j++) {
+            loggers[(j + index) % names.length] =
+              h.getLogger(names[(j + index) % names.length]);
+          }
+          found[index] = loggers;
+        }
+      };
+      threads[i].start();
+    }
+    for (int i = 0; i < threads.length; i++) {
+      threads[i].join();
+    }
+    for (int i = 1; i < found.length; i++) {
+      for (int j = 0; j < names.length; j++) {
+        assertSame(found[0][j], found[i][j]);
+      }
+    }
+    assertSame(found[0][3], found[0][0].getParent());
+    assertSame(found[0][3], found[0][2].getParent());
+    assertSame(found[0][1], found[0][3].getParent());
+    assertSame(h.getRootLogger(), found[0][1].getParent());
+
+    int count = 0;
+    for (Enumeration e = h.getCurrentLoggers(); e.hasMoreElements();) {
+      assertTrue(e.nextElement() instanceof Logger);
+      count++;
+    }
+    assertEquals(names.length, count);
+  }
+
+  /**
+   * Tests that the enabled level cached by a logger follows changes
+   * of ancestor levels and of the hierarchy threshold.
+   */
+  public
+  void testEnabledLevelCache() {
+    Hierarchy h = new Hierarchy(new RootLogger((Level) Level.DEBUG));
+    Logger abc = h.getLogger("a.b.c");
+    assertTrue(abc.isDebugEnabled());
+
+    h.getRootLogger().setLevel(Level.INFO);
+    assertFalse(abc.isDebugEnabled());
+    assertTrue(abc.isInfoEnabled());
+
+    Logger a = h.getLogger("a");
+    a.setLevel(Level.DEBUG);
+    assertTrue(abc.isDebugEnabled());
+
+    h.setThreshold(Level.WARN);
+    assertFalse(abc.isInfoEnabled());
+    assertTrue(abc.isEnabledFor(Level.WARN));
+
+    h.setThreshold(Level.ALL);
+    a.setLevel(null);
+    assertFalse(abc.isDebugEnabled());
+    assertTrue(abc.isInfoEnabled());
+  }
+
   /**
    * Tests logger.trace(Object).
    * @since 1.2.12
@@ -398,6 +471,69 @@ public class LoggerTestCase extends TestCase {
         assertFalse(root.isTraceEnabled());
     }
 
+  /**
+   * Tests parameterized logging methods.
+   */
+  public void testParameterized() {
+      VectorAppender appender = new VectorAppender();
+      appender.activateOptions();
+      Logger root = Logger.getRootLogger();
+      root.addAppender(appender);
+      root.setLevel(Level.INFO);
+      Logger logger = Logger.getLogger("com.example.Params");
+
+      logger.info("Hello, {}", "World");
+      logger.warn("{}+{}={}", new Integer(1), new Integer(2), new Integer(3));
+      logger.error("{} {} {} {} {}", "a", "b", "c", "d", "e");
+      logger.info("Escaped \\{}, {} and missing {}", "x");
+
+      Vector msgs = appender.getVector();
+      assertEquals(4, msgs.size());
+      LoggingEvent event = (LoggingEvent) msgs.elementAt(0);
+      assertEquals(Level.INFO, event.getLevel());
+      assertEquals(1, event.getParameters().length);
+      assertEquals("Hello, World", event.getRenderedMessage());
+      assertEquals("Hello, World", event.getMessage());
+      assertEquals("1+2=3",
+          ((LoggingEvent) msgs.elementAt(1)).getRenderedMessage());
+      assertEquals("a b c d e",
+          ((LoggingEvent) msgs.elementAt(2)).getRenderedMessage());
+      assertEquals("Escaped {}, x and missing {}",
+          ((LoggingEvent) msgs.elementAt(3)).getRenderedMessage());
+  }
+
+  /**
+   * Tests that parameterized requests check the level before
+   * formatting and that a String message with an exception is
+   * not taken as a parameterized request.
+   */
+  public void testParameterizedDisabledAndThrowable() {
+      VectorAppender appender = new VectorAppender();
+      appender.activateOptions();
+      Logger root = Logger.getRootLogger();
+      root.addAppender(appender);
+      root.setLevel(Level.INFO);
+      Logger logger = Logger.getLogger("com.example.Params");
+
+      Object failing = new Object() {
+          public String toString() {
+              throw new IllegalStateException("formatted");
+          }
+      };
+      logger.debug("Discarded {}", failing);
+      logger.trace("Discarded {} {}", failing, failing);
+
+      NullPointerException ex = new NullPointerException();
+      logger.error("Message 1", ex);
+
+      Vector msgs = appender.getVector();
+      assertEquals(1, msgs.size());
+      LoggingEvent event = (LoggingEvent) msgs.elementAt(0);
+      assertNull(event.getParameters());
+      assertSame(ex, event.getThrowableInformation().getThrowable());
+      assertEquals("Message 1", event.getMessage());
+  }
+
   private static final class CountingHierarchyEventListener implements HierarchyEventListener {
       private int addEventCount;
       private int removeEventCount;
@@ -17,6 +17,7 @@
 
 package org.apache.log4j;
 
+import org.apache.log4j.spi.EventFieldConsumer;
 import org.apache.log4j.spi.LoggingEvent;
 
 
@@ -65,6 +66,31 @@ public class PatternLayoutTest extends LayoutTest {
     assertEquals(buf.toString(), result);
   }
 
+  /**
+   * Tests getRequiredFields().
+   */
+  public void testRequiredFields() {
+    PatternLayout layout = new PatternLayout("%d %-5p [%t] %c{2} %x - %m%n");
+    assertEquals(
+      EventFieldConsumer.THREAD_NAME | EventFieldConsumer.NDC
+      | EventFieldConsumer.MESSAGE, layout.getRequiredFields());
+    layout.setConversionPattern("%r %X{key} %L");
+    assertEquals(EventFieldConsumer.MDC | EventFieldConsumer.LOCATION,
+      layout.getRequiredFields());
+    layout.setConversionPattern("%p %c%n");
+    assertEquals(0, layout.getRequiredFields());
+  }
+
+  /**
+   * Tests that subclasses, which may create stateful converters, are not
+   * thread safe unless they say so.
+   */
+  public void testThreadSafe() {
+    assertTrue(new PatternLayout().isThreadSafe());
+    assertFalse(new MyPatternLayout().isThreadSafe());
+    assertFalse(new DerivedPatternLayout().isThreadSafe());
+  }
+
   /**
    * Tests getPatternFormat().
    */
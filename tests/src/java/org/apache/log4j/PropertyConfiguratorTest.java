@@ -164,6 +164,23 @@ public class PropertyConfiguratorTest extends TestCase {
         LogManager.resetConfiguration();
     }
 
+    /**
+     * Test processing of log4j.async properties.
+     */
+    public void testAsync() {
+        Properties props = new Properties();
+        props.put("log4j.async.root", "true");
+        props.put("log4j.async.org.example.sync", "false");
+        PropertyConfigurator.configure(props);
+        assertTrue(Logger.getRootLogger().isAsync());
+        assertNull(Logger.getLogger("org.example").getAsync());
+        assertTrue(Logger.getLogger("org.example").isAsync());
+        assertFalse(Logger.getLogger("org.example.sync.child").isAsync());
+        LogManager.resetConfiguration();
+        assertFalse(Logger.getLogger("org.example").isAsync());
+        assertNull(Logger.getLogger("org.example.sync").getAsync());
+    }
+
 
     /**
      * Mock definition of org.apache.log4j.rolling.RollingPolicy
@@ -22,6 +22,10 @@ import junit.framework.TestCase;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.spi.LoggingEvent;
 
 /**
  *  Test of RollingFileAppender.
@@ -92,6 +96,242 @@ public class RFATestCase extends TestCase {
       assertFalse(new File("output/RFA-test2.log.4").exists());
     }
 
+    /**
+     * Test that the ChannelIO option rolls over on the exact number
+     * of bytes written rather than characters.
+     */
+    public void testChannelIOByteCount() throws Exception {
+      Logger logger = Logger.getLogger(RFATestCase.class);
+      Logger root = Logger.getRootLogger();
+      PatternLayout layout = new PatternLayout("%m\n");
+      org.apache.log4j.RollingFileAppender rfa =
+        new org.apache.log4j.RollingFileAppender();
+      rfa.setName("ROLLING");
+      rfa.setLayout(layout);
+      rfa.setAppend(false);
+      rfa.setEncoding("UTF-8");
+      rfa.setChannelIO(true);
+      rfa.setMaxBackupIndex(1);
+      rfa.setMaximumFileSize(100);
+      rfa.setFile("output/RFA-channel.log");
+      rfa.activateOptions();
+      root.addAppender(rfa);
+
+      // Write 5 characters, 9 bytes, with each log
+      for (int i = 0; i < 11; i++) {
+        logger.debug("\u00e9\u00e9\u00e9\u00e9");
+      }
+      assertEquals(99, new File("output/RFA-channel.log").length());
+      logger.debug("\u00e9\u00e9\u00e9\u00e9");
+      rfa.close();
+
+      assertEquals(0, new File("output/RFA-channel.log").length());
+      assertEquals(108, new File("output/RFA-channel.log.1").length());
+    }
+
+    /**
+     * Test that the MappedIO option rolls over on the bytes written
+     * and leaves no mapped padding in the backup.
+     */
+    public void testMappedIO() throws Exception {
+      Logger logger = Logger.getLogger(RFATestCase.class);
+      Logger root = Logger.getRootLogger();
+      PatternLayout layout = new PatternLayout("%m\n");
+      org.apache.log4j.RollingFileAppender rfa =
+        new org.apache.log4j.RollingFileAppender();
+      rfa.setName("ROLLING");
+      rfa.setLayout(layout);
+      rfa.setAppend(false);
+      rfa.setMappedIO(true);
+      rfa.setMapRegionSize("1KB");
+      rfa.setMaxBackupIndex(1);
+      rfa.setMaximumFileSize(100);
+      rfa.setFile("output/RFA-mapped.log");
+      rfa.activateOptions();
+      root.addAppender(rfa);
+
+      // Write exactly 10 bytes with each log
+      for (int i = 10; i < 25; i++) {
+        logger.debug("Hello--" + i);
+      }
+      rfa.close();
+
+      assertEquals(100, new File("output/RFA-mapped.log.1").length());
+      assertEquals(50, new File("output/RFA-mapped.log").length());
+    }
+
+    /**
+     * Test that the counter naming continues after the existing backups
+     * and deletes the oldest ones.
+     */
+    public void testCounterNaming() throws Exception {
+      deleteBackups("RFA-counter.log");
+      new FileWriter("output/RFA-counter.log.7").close();
+      RollingFileAppender rfa = createUnshifted("RFA-counter.log", "Counter");
+
+      // Write exactly 10 bytes with each log
+      for (int i = 10; i < 45; i++) {
+        rfa.doAppend(createEvent("Hello--" + i));
+      }
+      rfa.close();
+
+      assertEquals(50, new File("output/RFA-counter.log").length());
+      assertEquals(100, new File("output/RFA-counter.log.10").length());
+      assertEquals(100, new File("output/RFA-counter.log.9").length());
+      for (int i = 0; i < 100 && new File("output/RFA-counter.log.8").exists(); i++) {
+        Thread.sleep(20);
+      }
+      assertFalse(new File("output/RFA-counter.log.8").exists());
+      assertFalse(new File("output/RFA-counter.log.7").exists());
+    }
+
+    /**
+     * Test that the time stamp naming keeps MaxBackupIndex backups.
+     */
+    public void testTimestampNaming() throws Exception {
+      deleteBackups("RFA-stamp.log");
+      RollingFileAppender rfa = createUnshifted("RFA-stamp.log", "timestamp");
+      assertEquals("TIMESTAMP", rfa.getBackupNaming());
+
+      for (int i = 10; i < 45; i++) {
+        rfa.doAppend(createEvent("Hello--" + i));
+      }
+      rfa.close();
+
+      assertEquals(50, new File("output/RFA-stamp.log").length());
+      String pattern = "RFA-stamp\\.log\\.\\d{8}-\\d{6}-\\d{3}(-\\d+)?";
+      for (int i = 0; i < 100 && listBackups(pattern).length > 2; i++) {
+        Thread.sleep(20);
+      }
+      String[] backups = listBackups(pattern);
+      assertEquals(2, backups.length);
+      for (int i = 0; i < backups.length; i++) {
+        assertEquals(100, new File("output", backups[i]).length());
+      }
+    }
+
+    /**
+     * Test that the asynchronous rollover shifts the backups in the
+     * background and leaves no temporary file once closed.
+     */
+    public void testAsyncRollover() throws Exception {
+      deleteBackups("RFA-async.log");
+      RollingFileAppender rfa = new RollingFileAppender();
+      rfa.setLayout(new PatternLayout("%m\n"));
+      rfa.setAppend(false);
+      rfa.setAsyncRollover(true);
+      rfa.setRolloverQueueSize(1);
+      rfa.setMaxBackupIndex(3);
+      rfa.setMaximumFileSize(100);
+      rfa.setFile("output/RFA-async.log");
+      rfa.activateOptions();
+
+      // Write exactly 10 bytes with each log
+      for (int i = 10; i < 55; i++) {
+        rfa.doAppend(createEvent("Hello--" + i));
+      }
+      rfa.close();
+
+      assertEquals(50, new File("output/RFA-async.log").length());
+      assertEquals(100, new File("output/RFA-async.log.1").length());
+      assertEquals(100, new File("output/RFA-async.log.2").length());
+      assertEquals(100, new File("output/RFA-async.log.3").length());
+      assertFalse(new File("output/RFA-async.log.4").exists());
+      assertEquals(0, listBackups("RFA-async\\.log\\.rolling-.*").length);
+    }
+
+    /**
+     * Test that the backups of the same millisecond are deleted in the
+     * order of their sequence number.
+     */
+    public void testTimestampSequenceOrder() throws Exception {
+      deleteBackups("RFA-sequence.log");
+      File first = new File("output/RFA-sequence.log.20000101-000000-000");
+      File second = new File("output/RFA-sequence.log.20000101-000000-000-2");
+      File tenth = new File("output/RFA-sequence.log.20000101-000000-000-10");
+      new FileWriter(first).close();
+      new FileWriter(second).close();
+      new FileWriter(tenth).close();
+      RollingFileAppender rfa = createUnshifted("RFA-sequence.log", "TIMESTAMP");
+
+      for (int i = 10; i < 25; i++) {
+        rfa.doAppend(createEvent("Hello--" + i));
+      }
+      rfa.close();
+
+      for (int i = 0; i < 100 && second.exists(); i++) {
+        Thread.sleep(20);
+      }
+      assertFalse(first.exists());
+      assertFalse(second.exists());
+      assertTrue(tenth.exists());
+      tenth.delete();
+    }
+
+    /**
+     * Test that a temporary file left by an asynchronous rollover which
+     * did not complete is shifted into the backups.
+     */
+    public void testRecoverPending() throws Exception {
+      deleteBackups("RFA-recover.log");
+      FileWriter leftover = new FileWriter("output/RFA-recover.log.rolling-3");
+      leftover.write("leftover\n");
+      leftover.close();
+      RollingFileAppender rfa = new RollingFileAppender();
+      rfa.setLayout(new PatternLayout("%m\n"));
+      rfa.setAppend(false);
+      rfa.setMaxBackupIndex(3);
+      rfa.setMaximumFileSize(100);
+      rfa.setFile("output/RFA-recover.log");
+      rfa.activateOptions();
+
+      for (int i = 10; i < 25; i++) {
+        rfa.doAppend(createEvent("Hello--" + i));
+      }
+      rfa.close();
+
+      assertEquals(50, new File("output/RFA-recover.log").length());
+      assertEquals(100, new File("output/RFA-recover.log.1").length());
+      assertEquals(9, new File("output/RFA-recover.log.2").length());
+      assertEquals(0, listBackups("RFA-recover\\.log\\.rolling-.*").length);
+    }
+
+    private static RollingFileAppender createUnshifted(final String name,
+                                                       final String naming) {
+      RollingFileAppender rfa = new RollingFileAppender();
+      rfa.setLayout(new PatternLayout("%m\n"));
+      rfa.setAppend(false);
+      rfa.setBackupNaming(naming);
+      rfa.setMaxBackupIndex(2);
+      rfa.setMaximumFileSize(100);
+      rfa.setFile("output/" + name);
+      rfa.activateOptions();
+      return rfa;
+    }
+
+    private static LoggingEvent createEvent(final String msg) {
+      Logger logger = Logger.getLogger(RFATestCase.class);
+      return new LoggingEvent(Logger.class.getName(), logger, Level.DEBUG, msg, null);
+    }
+
+    private static String[] listBackups(final String pattern) {
+      List matches = new ArrayList();
+      String[] names = new File("output").list();
+      for (int i = 0; i < names.length; i++) {
+        if (names[i].matches(pattern)) {
+          matches.add(names[i]);
+        }
+      }
+      return (String[]) matches.toArray(new String[matches.size()]);
+    }
+
+    private static void deleteBackups(final String name) {
+      String[] backups = listBackups(name.replaceAll("\\.", "\\\\.") + "\\..*");
+      for (int i = 0; i < backups.length; i++) {
+        new File("output", backups[i]).delete();
+      }
+    }
+
     /**
      * Tests 2 parameter constructor.
      * @throws IOException if IOException during test.
@@ -0,0 +1,270 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.log4j;
+
+import junit.framework.TestCase;
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.varia.DenyAllFilter;
+
+import java.io.StringWriter;
+
+
+/**
+ * WriterAppender tests.
+ */
+public class WriterAppenderTest extends TestCase {
+  /**
+   * Constructs new instance of test.
+   * @param name test name.
+   */
+  public WriterAppenderTest(final String name) {
+    super(name);
+  }
+
+  /**
+   * Creates an event for the given message.
+   * @param msg message.
+   * @return new event.
+   */
+  private static LoggingEvent createEvent(final String msg) {
+    Logger logger = Logger.getLogger(WriterAppenderTest.class);
+    return new LoggingEvent(Logger.class.getName(), logger, Level.INFO, msg, null);
+  }
+
+  /**
+   * Tests that a thread safe layout formats events without the
+   * appender's lock.
+   */
+  public void testFormatOutsideLock() {
+    LockCheckingLayout layout = new LockCheckingLayout(true);
+    WriterAppender appender = new WriterAppender(layout, new StringWriter());
+    layout.appender = appender;
+    appender.doAppend(createEvent("Hello, World"));
+    assertEquals(1, layout.calls);
+    assertFalse(layout.locked);
+  }
+
+  /**
+   * Tests that other layouts still format events with the
+   * appender's lock held.
+   */
+  public void testFormatUnderLock() {
+    LockCheckingLayout layout = new LockCheckingLayout(false);
+    WriterAppender appender = new WriterAppender(layout, new StringWriter());
+    layout.appender = appender;
+    appender.doAppend(createEvent("Hello, World"));
+    assertEquals(1, layout.calls);
+    assertTrue(layout.locked);
+  }
+
+  /**
+   * Tests that layouts formatting into a buffer are used so, with and
+   * without the lock, and that subclasses overriding only
+   * format(LoggingEvent) keep their output.
+   */
+  public void testFormatToBuilder() {
+    StringWriter writer = new StringWriter();
+    WriterAppender appender = new WriterAppender(new BuilderOnlyLayout(true), writer);
+    appender.doAppend(createEvent("one"));
+    appender.setLayout(new BuilderOnlyLayout(false));
+    appender.doAppend(createEvent("two"));
+    appender.setLayout(new PatternLayout("%m%n") {
+      public String format(final LoggingEvent event) {
+        return "overridden" + Layout.LINE_SEP;
+      }
+    });
+    appender.doAppend(createEvent("three"));
+    assertEquals("one" + Layout.LINE_SEP + "two" + Layout.LINE_SEP
+      + "overridden" + Layout.LINE_SEP, writer.toString());
+  }
+
+  /**
+   * Tests that the threshold and filters still apply.
+   */
+  public void testThresholdAndFilters() {
+    StringWriter writer = new StringWriter();
+    WriterAppender appender = new WriterAppender(new PatternLayout("%m%n"), writer);
+    appender.setThreshold(Level.WARN);
+    appender.doAppend(createEvent("Discarded"));
+    assertEquals("", writer.toString());
+    appender.setThreshold(null);
+    appender.addFilter(new DenyAllFilter());
+    appender.doAppend(createEvent("Discarded"));
+    assertEquals("", writer.toString());
+  }
+
+  /**
+   * Tests that a batch is filtered per event and flushed once.
+   */
+  public void testBatchAppend() {
+    FlushCountingWriter writer = new FlushCountingWriter();
+    WriterAppender appender = new WriterAppender(new PatternLayout("%m%n"), writer);
+    appender.setThreshold(Level.WARN);
+    Logger logger = Logger.getLogger(WriterAppenderTest.class);
+    LoggingEvent[] events = new LoggingEvent[] {
+      new LoggingEvent(Logger.class.getName(), logger, Level.WARN, "one", null),
+      new LoggingEvent(Logger.class.getName(), logger, Level.INFO, "discarded", null),
+      new LoggingEvent(Logger.class.getName(), logger, Level.ERROR, "two", null),
+      null
+    };
+    appender.doAppend(events, 3);
+    assertEquals("one" + Layout.LINE_SEP + "two" + Layout.LINE_SEP, writer.toString());
+    assertEquals(1, writer.flushes);
+  }
+
+  /**
+   * Tests the size, level and interval flush policies.
+   * @throws InterruptedException if interrupted.
+   */
+  public void testFlushPolicy() throws InterruptedException {
+    FlushCountingWriter writer = new FlushCountingWriter();
+    WriterAppender appender = new WriterAppender(new PatternLayout("%m"), writer);
+    appender.setImmediateFlush(false);
+    appender.setFlushSize(10);
+    appender.setFlushLevel(Level.ERROR);
+    Logger logger = Logger.getLogger(WriterAppenderTest.class);
+    appender.doAppend(new LoggingEvent(Logger.class.getName(), logger, Level.INFO, "12345", null));
+    assertEquals(0, writer.flushes);
+    appender.doAppend(new LoggingEvent(Logger.class.getName(), logger, Level.INFO, "67890", null));
+    assertEquals(1, writer.flushes);
+    appender.doAppend(new LoggingEvent(Logger.class.getName(), logger, Level.INFO, "1", null));
+    assertEquals(1, writer.flushes);
+    appender.doAppend(new LoggingEvent(Logger.class.getName(), logger, Level.ERROR, "2", null));
+    assertEquals(2, writer.flushes);
+
+    appender.setFlushInterval(50);
+    appender.doAppend(new LoggingEvent(Logger.class.getName(), logger, Level.INFO, "3", null));
+    assertEquals(2, writer.flushes);
+    for (int i = 0; i < 100 && writer.flushes == 2; i++) {
+      Thread.sleep(20);
+    }
+    assertEquals(3, writer.flushes);
+    appender.close();
+  }
+
+  /**
+   * Tests that the flush size counts the bytes of the encoded characters.
+   */
+  public void testFlushSizeCountsBytes() {
+    FlushCountingWriter writer = new FlushCountingWriter();
+    WriterAppender appender = new WriterAppender();
+    appender.setLayout(new PatternLayout("%m"));
+    appender.setEncoding("UTF-8");
+    appender.setWriter(writer);
+    appender.setImmediateFlush(false);
+    appender.setFlushSize(4);
+    Logger logger = Logger.getLogger(WriterAppenderTest.class);
+    appender.doAppend(new LoggingEvent(Logger.class.getName(), logger, Level.INFO, "\u00e9", null));
+    assertEquals(0, writer.flushes);
+    appender.doAppend(new LoggingEvent(Logger.class.getName(), logger, Level.INFO, "\u00e9", null));
+    assertEquals(1, writer.flushes);
+    appender.close();
+  }
+
+  /**
+   * Tests that lines written concurrently are not interleaved.
+   * @throws InterruptedException if interrupted.
+   */
+  public void testConcurrentAppend() throws InterruptedException {
+    StringWriter writer = new StringWriter();
+    final WriterAppender appender =
+      new WriterAppender(new PatternLayout("%m%n"), writer);
+    final int count = 500;
+    Thread[] threads = new Thread[4];
+    for (int i = 0; i < threads.length; i++) {
+      final String msg = "thread " + i;
+      threads[i] = new Thread() {
+        public void run() {
+          for (int j = 0; j < count; j++) {
+            appender.doAppend(createEvent(msg));
+          }
+        }
+      };
+      threads[i].start();
+    }
+    for (int i = 0; i < threads.length; i++) {
+      threads[i].join();
+    }
+    String[] lines = writer.toString().split(Layout.LINE_SEP);
+    assertEquals(threads.length * count, lines.length);
+    for (int i = 0; i < lines.length; i++) {
+      assertTrue(lines[i], lines[i].matches("thread [0-3]"));
+    }
+  }
+
+  /**
+   * Writer counting calls to flush.
+   */
+  private static final class FlushCountingWriter extends StringWriter {
+    volatile int flushes;
+
+    public void flush() {
+      flushes++;
+      super.flush();
+    }
+  }
+
+  /**
+   * Layout recording whether the appender's lock is held while formatting.
+   */
+  private static final class LockCheckingLayout extends PatternLayout {
+    private final boolean threadSafe;
+    Object appender;
+    boolean locked;
+    int calls;
+
+    public LockCheckingLayout(final boolean threadSafe) {
+      super("%m%n");
+      this.threadSafe = threadSafe;
+    }
+
+    public String format(final LoggingEvent event) {
+      calls++;
+      locked = Thread.holdsLock(appender);
+      return super.format(event);
+    }
+
+    public boolean isThreadSafe() {
+      return threadSafe;
+    }
+  }
+
+  /**
+   * Layout which only supports formatting into a buffer.
+   */
+  private static final class BuilderOnlyLayout extends PatternLayout {
+    private final boolean threadSafe;
+
+    public BuilderOnlyLayout(final boolean threadSafe) {
+      super("%m%n");
+      this.threadSafe = threadSafe;
+    }
+
+    public String format(final LoggingEvent event) {
+      throw new UnsupportedOperationException();
+    }
+
+    public void format(final LoggingEvent event, final StringBuilder buf) {
+      super.format(event, buf);
+    }
+
+    public boolean isThreadSafe() {
+      return threadSafe;
+    }
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.log4j.helpers;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.log4j.Hierarchy;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.RootLogger;
+
+
+/**
+ *    Tests for EventSpool.
+ */
+public class EventSpoolTest extends TestCase {
+  /**
+   * Create new instance of EventSpoolTest.
+   * @param testName test name
+   */
+  public EventSpoolTest(final String testName) {
+    super(testName);
+  }
+
+  /**
+   *  Check that the events read back are bound to the loggers of the
+   *  repository of the events written.
+   */
+  public void testRepository() throws IOException {
+    Hierarchy h = new Hierarchy(new RootLogger(Level.DEBUG));
+    Logger other = h.getLogger("org.example.spool");
+    Logger main = Logger.getLogger("org.example.spool");
+    EventSpool spool = new EventSpool(new File("output/eventspool.spool"), 4096);
+    try {
+      assertTrue(spool.write(new LoggingEvent(Logger.class.getName(), other,
+        Level.INFO, "other", null), false));
+      assertTrue(spool.write(new LoggingEvent(Logger.class.getName(), main,
+        Level.WARN, "main", null), false));
+
+      LoggingEvent[] events = new LoggingEvent[2];
+      assertEquals(2, spool.read(events, 0, 2));
+      assertSame(other, events[0].getLogger());
+      assertEquals("other", events[0].getRenderedMessage());
+      assertSame(main, events[1].getLogger());
+      assertEquals(Level.WARN, events[1].getLevel());
+    } finally {
+      spool.close();
+    }
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.log4j.helpers;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
+
+
+/**
+ *    Tests for GZipUtils.
+ */
+public class GZipUtilsTest extends TestCase {
+  /**
+   * Create new instance of GZipUtilsTest.
+   * @param testName test name
+   */
+  public GZipUtilsTest(final String testName) {
+    super(testName);
+  }
+
+  /**
+   *  Check that blocks deflated concurrently decompress to the input,
+   *  whether the input is empty, smaller than a block, a multiple of
+   *  the block size or not.
+   */
+  public void testParallelCompress() throws IOException {
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      int[] sizes = new int[] { 0, 100, 4096, 10000 };
+      for (int i = 0; i < sizes.length; i++) {
+        byte[] data = createData(sizes[i]);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        GZipUtils.compressParallel(new ByteArrayInputStream(data), baos, 1024,
+          512, Deflater.BEST_SPEED, executor);
+        assertTrue(Arrays.equals(data, GZipUtils.decompress(baos.toByteArray())));
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   *  Check that a file compressed in blocks replaces the original.
+   */
+  public void testParallelCompressFile() throws IOException {
+    File file = new File("output/gziputils.log");
+    File gz = new File("output/gziputils.log" + GZipUtils.EXT);
+    gz.delete();
+    byte[] data = createData(100000);
+    FileOutputStream fos = new FileOutputStream(file);
+    fos.write(data);
+    fos.close();
+
+    GZipUtils.compressParallel(file, true, 8192, 1024, Deflater.BEST_COMPRESSION);
+    assertFalse(file.exists());
+    assertTrue(gz.length() < data.length);
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    FileInputStream fis = new FileInputStream(gz);
+    GZipUtils.decompress(fis, baos);
+    fis.close();
+    assertTrue(Arrays.equals(data, baos.toByteArray()));
+    gz.delete();
+  }
+
+  /**
+   *  Check that the level applies to the single thread compression.
+   */
+  public void testCompressLevel() throws IOException {
+    byte[] data = createData(100000);
+    ByteArrayOutputStream stored = new ByteArrayOutputStream();
+    GZipUtils.compress(new ByteArrayInputStream(data), stored, 1024,
+      Deflater.NO_COMPRESSION);
+    ByteArrayOutputStream best = new ByteArrayOutputStream();
+    GZipUtils.compress(new ByteArrayInputStream(data), best, 1024,
+      Deflater.BEST_COMPRESSION);
+    assertTrue(stored.size() > data.length);
+    assertTrue(best.size() < data.length / 10);
+    assertTrue(Arrays.equals(data, GZipUtils.decompress(best.toByteArray())));
+  }
+
+  /**
+   *  Check that the compressed file is deleted when the compression fails.
+   */
+  public void testFailedCompressDeletesTarget() throws IOException {
+    File file = new File("output/gziputils-failed.log");
+    File gz = new File("output/gziputils-failed.log" + GZipUtils.EXT);
+    FileOutputStream fos = new FileOutputStream(file);
+    fos.write(createData(10000));
+    fos.close();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    executor.shutdown();
+    try {
+      GZipUtils.compressParallel(file, true, 1024, 1024, -1, executor);
+      fail("the executor should reject the blocks");
+    } catch (java.util.concurrent.RejectedExecutionException e) {
+    }
+    assertTrue(file.exists());
+    assertFalse(gz.exists());
+    file.delete();
+  }
+
+  private static byte[] createData(final int size) {
+    byte[] data = new byte[size];
+    for (int i = 0; i < size; i++) {
+      data[i] = (byte) ('a' + (i * 7 + i / 13) % 26);
+    }
+    return data;
+  }
+}
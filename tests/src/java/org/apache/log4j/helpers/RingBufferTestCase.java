@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.log4j.helpers;
+
+import junit.framework.TestCase;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+
+
+/**
+   Unit test the {@link RingBuffer}.
+ */
+public class RingBufferTestCase extends TestCase {
+  static Logger cat = Logger.getLogger("x");
+
+  public RingBufferTestCase(String name) {
+    super(name);
+  }
+
+  static LoggingEvent event(String msg) {
+    return new LoggingEvent("", cat, Level.DEBUG, msg, null);
+  }
+
+  /**
+     The capacity is rounded up to a power of two.
+   */
+  public void testCapacity() {
+    assertEquals(1, new RingBuffer(1).getCapacity());
+    assertEquals(8, new RingBuffer(5).getCapacity());
+    assertEquals(128, new RingBuffer(128).getCapacity());
+    try {
+      new RingBuffer(0);
+      fail("Expected IllegalArgumentException");
+    } catch(IllegalArgumentException expected) {
+    }
+  }
+
+  /**
+     Offer until full, drain in order, wrap around.
+   */
+  public void testOfferDrain() {
+    RingBuffer rb = new RingBuffer(4);
+    LoggingEvent[] dest = new LoggingEvent[3];
+    for(int lap = 0; lap < 3; lap++) {
+      assertTrue(rb.isEmpty());
+      for(int i = 0; i < 4; i++) {
+        assertTrue(rb.offer(event("e" + i)));
+      }
+      assertFalse(rb.offer(event("full")));
+      assertEquals(4, rb.size());
+
+      assertEquals(3, rb.drainTo(dest));
+      for(int i = 0; i < 3; i++) {
+        assertEquals("e" + i, dest[i].getMessage());
+      }
+      assertTrue(rb.offer(event("e4")));
+      assertEquals(2, rb.drainTo(dest));
+      assertEquals("e3", dest[0].getMessage());
+      assertEquals("e4", dest[1].getMessage());
+      assertEquals(0, rb.drainTo(dest));
+    }
+  }
+
+  /**
+     Events of several producers are all received, in order for
+     each producer.
+   */
+  public void testProducers() throws InterruptedException {
+    final RingBuffer rb = new RingBuffer(8);
+    final int count = 5000;
+    Thread[] producers = new Thread[4];
+    for(int i = 0; i < producers.length; i++) {
+      final String prefix = i + ":";
+      producers[i] = new Thread() {
+        public void run() {
+          for(int j = 0; j < count; j++) {
+            LoggingEvent e = event(prefix + j);
+            while(!rb.offer(e)) {
+              Thread.yield();
+            }
+          }
+        }
+      };
+      producers[i].start();
+    }
+
+    int[] next = new int[producers.length];
+    LoggingEvent[] dest = new LoggingEvent[8];
+    int received = 0;
+    while(received < producers.length * count) {
+      int n = rb.drainTo(dest);
+      for(int i = 0; i < n; i++) {
+        String msg = (String) dest[i].getMessage();
+        int p = Integer.parseInt(msg.substring(0, msg.indexOf(':')));
+        assertEquals(next[p]++, Integer.parseInt(msg.substring(msg.indexOf(':') + 1)));
+      }
+      received += n;
+      if(n == 0) {
+        Thread.yield();
+      }
+    }
+    for(int i = 0; i < producers.length; i++) {
+      producers[i].join();
+    }
+    assertTrue(rb.isEmpty());
+  }
+}
@@ -197,6 +197,46 @@ public class LoggingEventTest extends TestCase {
       assertEquals(catName, event.fqnOfCategoryClass);
   }
 
+    /**
+     * Tests that a reused event returns the values of each request through
+     * its getters, leaving the final public fields unset, and formats
+     * parameterized messages.
+     */
+  public void testReusableEvent() throws Exception {
+      String[] names = { "fqnOfCategoryClass", "categoryName", "timeStamp" };
+      for (int i = 0; i < names.length; i++) {
+        assertTrue(java.lang.reflect.Modifier.isFinal(
+          LoggingEvent.class.getField(names[i]).getModifiers()));
+      }
+
+      ReusableLoggingEvent event = ReusableLoggingEvent.acquire("first",
+        Logger.getLogger("org.example.first"), Level.INFO, "a {} b {}",
+        new Object[] { "1", new Integer(2) }, null);
+      assertEquals("a 1 b 2", event.getRenderedMessage());
+      long timeStamp = event.getTimeStamp();
+      assertTrue(timeStamp > 0);
+      event.release();
+
+      assertSame(event, ReusableLoggingEvent.acquire("second",
+        Logger.getLogger("org.example.second"), Level.WARN, "{}",
+        new Object[] { "c" }, new Exception("test")));
+      assertEquals("second", event.getFQNOfLoggerClass());
+      assertEquals("org.example.second", event.getLoggerName());
+      assertTrue(event.getTimeStamp() >= timeStamp);
+      assertNull(event.categoryName);
+      assertEquals(0, event.timeStamp);
+      LoggingEvent copy = event.toImmutable();
+      assertEquals("second", copy.fqnOfCategoryClass);
+      assertEquals("org.example.second", copy.categoryName);
+      assertEquals(event.getTimeStamp(), copy.timeStamp);
+      assertEquals("c", event.getRenderedMessage());
+      String[] rep = event.getThrowableStrRep();
+      assertEquals("java.lang.Exception: test", rep[0]);
+      assertTrue(rep[1].startsWith("\tat "));
+      event.release();
+      assertNull(event.getLoggerName());
+  }
+
     /**
      * Tests LoggingEvent.level.
      * @deprecated